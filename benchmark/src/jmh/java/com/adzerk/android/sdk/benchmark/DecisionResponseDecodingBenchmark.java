@@ -0,0 +1,50 @@
+package com.adzerk.android.sdk.benchmark;
+
+import com.adzerk.android.sdk.SdkGson;
+import com.adzerk.android.sdk.benchmark.Payloads.CustomDataSize;
+import com.adzerk.android.sdk.rest.DecisionResponse;
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes a {@link DecisionResponse} body the way Retrofit's GsonConverter does: Gson reading from an
+ * InputStreamReader over the response bytes. Each Decision runs the SDK's ContentData deserializer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DecisionResponseDecodingBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    int placements;
+
+    @Param({"TINY", "SMALL", "LARGE", "HUGE"})
+    CustomDataSize customData;
+
+    Gson gson;
+    byte[] decisionResponse;
+
+    @Setup
+    public void setup() {
+        gson = SdkGson.create();
+        decisionResponse = Payloads.decisionResponse(placements, customData);
+    }
+
+    @Benchmark
+    public DecisionResponse decodeDecisionResponse() {
+        return gson.fromJson(new InputStreamReader(new ByteArrayInputStream(decisionResponse), Payloads.UTF_8),
+                DecisionResponse.class);
+    }
+}
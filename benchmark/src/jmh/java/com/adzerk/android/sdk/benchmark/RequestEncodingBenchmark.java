@@ -0,0 +1,47 @@
+package com.adzerk.android.sdk.benchmark;
+
+import com.adzerk.android.sdk.SdkGson;
+import com.adzerk.android.sdk.benchmark.Payloads.CustomDataSize;
+import com.adzerk.android.sdk.rest.Request;
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes a {@link Request} the way Retrofit's GsonConverter does: Gson to a String, then to UTF-8 bytes. The SDK
+ * adds the user's flight view times and blocked creatives to it (see {@link SdkGson}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RequestEncodingBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    int placements;
+
+    @Param({"TINY", "SMALL", "LARGE", "HUGE"})
+    CustomDataSize customData;
+
+    Gson gson;
+    Request request;
+
+    @Setup
+    public void setup() {
+        gson = SdkGson.create();
+        request = Payloads.request(placements, customData);
+    }
+
+    @Benchmark
+    public byte[] encodeRequest() {
+        return gson.toJson(request).getBytes(Payloads.UTF_8);
+    }
+}
@@ -0,0 +1,46 @@
+package com.adzerk.android.sdk.benchmark;
+
+import com.adzerk.android.sdk.SdkGson;
+import com.adzerk.android.sdk.benchmark.Payloads.CustomDataSize;
+import com.adzerk.android.sdk.rest.User;
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes a UserDB {@link User} body the way Retrofit's GsonConverter does. The 'custom' properties run the
+ * SDK's UserProperties deserializer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UserDecodingBenchmark {
+
+    @Param({"TINY", "SMALL", "LARGE", "HUGE"})
+    CustomDataSize customData;
+
+    Gson gson;
+    byte[] user;
+
+    @Setup
+    public void setup() {
+        gson = SdkGson.create();
+        user = Payloads.user(customData);
+    }
+
+    @Benchmark
+    public User decodeUser() {
+        return gson.fromJson(new InputStreamReader(new ByteArrayInputStream(user), Payloads.UTF_8), User.class);
+    }
+}
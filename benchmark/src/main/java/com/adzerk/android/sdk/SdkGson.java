@@ -0,0 +1,41 @@
+package com.adzerk.android.sdk;
+
+import com.adzerk.android.sdk.rest.Decision;
+import com.adzerk.android.sdk.rest.EventTracker;
+import com.adzerk.android.sdk.rest.GsonFactory;
+import com.google.gson.Gson;
+
+/**
+ * Creates the {@link Gson} the way {@link AdzerkSdk} does, with the SDK's request decorator and event tracker, so
+ * that the JSON benchmarks measure the SDK's real encoding path. Lives in the SDK's package to reach its internal
+ * classes.
+ * <p>
+ * The decorator holds the state of a user who has seen ads of {@link #FLIGHTS} flights {@link #VIEWS} times each
+ * over the last days, and blocked {@link #BLOCKED_CREATIVES} creatives; it is written into every Request.
+ */
+public class SdkGson {
+    public static final int FLIGHTS = 20;
+    public static final int VIEWS = 5;
+    public static final int BLOCKED_CREATIVES = 10;
+
+    public static Gson create() {
+        FlightViewTimes flightViews = new FlightViewTimes();
+        long now = System.currentTimeMillis() / 1000;
+        for (int flight = 0; flight < FLIGHTS; flight++) {
+            for (int view = 0; view < VIEWS; view++) {
+                flightViews.record(1000 + flight, now - (VIEWS - view) * 3600L);
+            }
+        }
+        BlockedCreatives blockedCreatives = new BlockedCreatives();
+        for (int i = 0; i < BLOCKED_CREATIVES; i++) {
+            blockedCreatives.add(5000 + i);
+        }
+
+        return GsonFactory.create(new SdkRequestDecorator(blockedCreatives, flightViews), new EventTracker() {
+            @Override
+            public boolean event(Decision decision, int eventId) {
+                return false;
+            }
+        });
+    }
+}
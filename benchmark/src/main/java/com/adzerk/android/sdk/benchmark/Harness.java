@@ -0,0 +1,295 @@
+package com.adzerk.android.sdk.benchmark;
+
+import com.adzerk.android.sdk.AdzerkMetrics;
+import com.adzerk.android.sdk.AdzerkSdk;
+import com.adzerk.android.sdk.AdzerkSdk.AdzerkError;
+import com.adzerk.android.sdk.AdzerkSdk.DecisionListener;
+import com.adzerk.android.sdk.MockClient;
+import com.adzerk.android.sdk.benchmark.Payloads.CustomDataSize;
+import com.adzerk.android.sdk.rest.DecisionResponse;
+import com.adzerk.android.sdk.rest.Placement;
+import com.adzerk.android.sdk.rest.Request;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end throughput and latency harness. Starts a {@link StubEngine} on the loopback interface and drives
+ * {@link AdzerkSdk#requestPlacement}, {@link AdzerkSdk#requestPlacementSynchronous} or {@link AdzerkSdk#impression}
+ * at a fixed concurrency, then reports throughput, latency percentiles, thread count and allocation.
+ * <p>
+ * Latencies are taken from the SDK's own {@link AdzerkMetrics}, so they are measured the same way in every mode.
+ * With {@code --transport=mock} the stub engine is replaced by an in-process {@link MockClient}, which takes the
+ * same latency options and can inject faults into a fraction of the calls.
+ * <pre>
+ * ./gradlew :benchmark:harness -PharnessArgs="--mode=async --concurrency=16 --latency=20 --jitter=5"
+ *
+ *   --mode=async|sync|impression   SDK call to drive (default async)
+ *   --concurrency=N                calls in flight (default 8)
+ *   --warmup=S --duration=S        seconds (default 5 and 20)
+ *   --latency=MS --jitter=MS       engine response delay (default 20 and 5); reported latencies are this delay
+ *                                  plus the SDK's and the loopback's own time
+ *   --error-rate=R                 fraction of 500 responses (default 0)
+ *   --placements=N                 placements per Request (default 1)
+ *   --custom-data=SIZE             TINY, SMALL, LARGE or HUGE (default SMALL)
+ *   --callback=main|direct         listeners on a single 'main' thread or on the http thread (default main)
+ *   --transport=http|mock          loopback stub engine or in-process MockClient (default http)
+ *   --faults=FAULT:R,...           mock transport only; reset, truncated, malformed, slow or an HTTP status
+ *                                  such as 503, each injected into fraction R of the calls
+ * </pre>
+ */
+public class Harness {
+
+    enum Mode { ASYNC, SYNC, IMPRESSION }
+
+    Mode mode = Mode.ASYNC;
+    int concurrency = 8;
+    int warmupSeconds = 5;
+    int durationSeconds = 20;
+    int placements = 1;
+    boolean directCallbacks;
+    boolean mockTransport;
+    String faults = "";
+    StubEngine.Config engineConfig = new StubEngine.Config();
+
+    StubEngine engine;
+    AdzerkSdk sdk;
+    Request request;
+    ExecutorService syncWorkers;
+
+    public static void main(String[] args) throws Exception {
+        Harness harness = new Harness();
+        harness.parse(args);
+        harness.run();
+        System.exit(0);
+    }
+
+    void parse(String[] args) {
+        int latency = engineConfig.latencyMillis;
+        int jitter = engineConfig.jitterMillis;
+        for (String arg : args) {
+            String[] kv = arg.split("=", 2);
+            String value = kv.length > 1 ? kv[1] : "";
+            switch (kv[0]) {
+                case "--mode": mode = Mode.valueOf(value.toUpperCase(Locale.US)); break;
+                case "--concurrency": concurrency = Integer.parseInt(value); break;
+                case "--warmup": warmupSeconds = Integer.parseInt(value); break;
+                case "--duration": durationSeconds = Integer.parseInt(value); break;
+                case "--latency": latency = Integer.parseInt(value); break;
+                case "--jitter": jitter = Integer.parseInt(value); break;
+                case "--error-rate": engineConfig.setErrorRate(Double.parseDouble(value)); break;
+                case "--placements": placements = Integer.parseInt(value); break;
+                case "--custom-data": engineConfig.setCustomData(CustomDataSize.valueOf(value.toUpperCase(Locale.US))); break;
+                case "--callback": directCallbacks = "direct".equals(value); break;
+                case "--transport": mockTransport = "mock".equals(value); break;
+                case "--faults": faults = value; break;
+                default: throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        engineConfig.setLatency(latency, jitter);
+        if (mockTransport && mode == Mode.IMPRESSION) {
+            throw new IllegalArgumentException("Impressions bypass the transport, use --transport=http");
+        }
+    }
+
+    void run() throws Exception {
+        engine = new StubEngine(engineConfig);
+        Executor callbackExecutor = directCallbacks ? new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        } : Executors.newSingleThreadExecutor();
+
+        AdzerkSdk.Builder sdkBuilder = new AdzerkSdk.Builder()
+                .setEndpoint(engine.getEndpoint())
+                .setCallbackExecutor(callbackExecutor);
+        if (mockTransport) {
+            sdkBuilder.setClient(mockClient());
+        }
+        sdk = sdkBuilder.build();
+
+        Request.Builder builder = new Request.Builder();
+        for (int i = 0; i < placements; i++) {
+            builder.addPlacement(new Placement("div" + i, 9792L, 306998L, 5));
+        }
+        request = builder.build();
+
+        System.out.println(String.format(Locale.US, "mode=%s concurrency=%d placements=%d callbacks=%s transport=%s %s%s",
+                mode, concurrency, placements, directCallbacks ? "direct" : "main", mockTransport ? "mock" : "http",
+                engineConfig, faults.isEmpty() ? "" : " faults=" + faults));
+
+        drive(warmupSeconds);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        sdk.getMetrics().reset();
+        engine.resetCounters();
+        threads.resetPeakThreadCount();
+        long allocatedBefore = allocatedBytes(threads);
+        long start = System.nanoTime();
+
+        drive(durationSeconds);
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long allocated = allocatedBytes(threads) - allocatedBefore;
+        report(seconds, allocated, threads);
+        engine.stop();
+    }
+
+    // in-process transport answering every call with the decisions the stub engine would return
+    MockClient mockClient() {
+        String body = new String(Payloads.decisionResponse(placements, engineConfig.customData), Payloads.UTF_8);
+        MockClient client = new MockClient(body);
+        int jitter = engineConfig.jitterMillis;
+        client.setLatency(MockClient.Latency.uniform(engineConfig.latencyMillis - jitter,
+                engineConfig.latencyMillis + jitter));
+        if (engineConfig.errorRate > 0) {
+            client.addFault(MockClient.Fault.httpStatus(500, "Internal Server Error", 0), engineConfig.errorRate);
+        }
+        for (String fault : faults.split(",")) {
+            if (fault.isEmpty()) {
+                continue;
+            }
+            String[] kv = fault.split(":", 2);
+            double rate = Double.parseDouble(kv[1]);
+            switch (kv[0]) {
+                case "reset": client.addFault(MockClient.Fault.connectionReset(), rate); break;
+                case "truncated": client.addFault(MockClient.Fault.truncatedBody(body.length() / 2), rate); break;
+                case "malformed": client.addFault(MockClient.Fault.malformedJson(), rate); break;
+                case "slow": client.addFault(MockClient.Fault.slowBody(1024, 5), rate); break;
+                default:
+                    int status = Integer.parseInt(kv[0]);
+                    client.addFault(MockClient.Fault.httpStatus(status, "Injected", status == 503 ? 30 : 0), rate);
+            }
+        }
+        return client;
+    }
+
+    void drive(int seconds) throws InterruptedException, ExecutionException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        switch (mode) {
+            case ASYNC:
+                driveAsync(deadline);
+                break;
+            case SYNC:
+                driveSync(deadline);
+                break;
+            case IMPRESSION:
+                driveImpressions(deadline);
+                break;
+        }
+    }
+
+    // keeps 'concurrency' requests in flight; each completion frees a slot
+    void driveAsync(long deadline) throws InterruptedException {
+        final Semaphore inFlight = new Semaphore(concurrency);
+        DecisionListener listener = new DecisionListener() {
+            @Override
+            public void success(DecisionResponse response) {
+                inFlight.release();
+            }
+
+            @Override
+            public void error(AdzerkError error) {
+                inFlight.release();
+            }
+        };
+
+        while (System.nanoTime() < deadline) {
+            inFlight.acquire();
+            sdk.requestPlacement(request, listener);
+        }
+        inFlight.acquire(concurrency);
+    }
+
+    // 'concurrency' threads each making back-to-back synchronous calls. The threads are kept for the whole run so
+    // that their allocations are still counted at the end.
+    void driveSync(final long deadline) throws InterruptedException, ExecutionException {
+        if (syncWorkers == null) {
+            syncWorkers = Executors.newFixedThreadPool(concurrency);
+        }
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            workers.add(syncWorkers.submit(new Runnable() {
+                @Override
+                public void run() {
+                    while (System.nanoTime() < deadline) {
+                        try {
+                            sdk.requestPlacementSynchronous(request);
+                        } catch (RuntimeException e) {
+                            // counted as an error by the SDK metrics
+                        }
+                    }
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+    }
+
+    // impressions are fire-and-forget, so the engine's hit count is used to bound the number in flight
+    void driveImpressions(long deadline) {
+        String url = engine.getImpressionUrl();
+        long issued = 0;
+        long base = engine.getImpressionCount();
+        while (System.nanoTime() < deadline) {
+            if (issued - (engine.getImpressionCount() - base) >= concurrency) {
+                LockSupport.parkNanos(50000);
+                continue;
+            }
+            sdk.impression(url);
+            issued++;
+        }
+        while (issued > engine.getImpressionCount() - base) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    void report(double seconds, long allocated, ThreadMXBean threads) {
+        String timerName = mode == Mode.IMPRESSION ? AdzerkMetrics.IMPRESSION : AdzerkMetrics.REQUEST;
+        AdzerkMetrics.TimerSnapshot timer = sdk.getMetrics().snapshot().getTimer(timerName);
+        long count = timer.getCount();
+
+        System.out.println(String.format(Locale.US, "throughput  %10.1f ops/s  (ok %d, errors %d)",
+                count / seconds, timer.getSuccessCount(), timer.getErrorCount()));
+        System.out.println(String.format(Locale.US, "latency     p50 %.2f ms  p99 %.2f ms  p999 %.2f ms  max %.2f ms",
+                timer.getPercentileMicros(0.5) / 1000.0, timer.getPercentileMicros(0.99) / 1000.0,
+                timer.getPercentileMicros(0.999) / 1000.0, timer.getMaxMicros() / 1000.0));
+        System.out.println(String.format(Locale.US, "threads     live %d  peak %d",
+                threads.getThreadCount(), threads.getPeakThreadCount()));
+        if (allocated >= 0 && count > 0) {
+            System.out.println(String.format(Locale.US, "allocation  %.1f KB/op  (%.1f MB total)",
+                    allocated / 1024.0 / count, allocated / 1024.0 / 1024.0));
+        }
+    }
+
+    // Sum of bytes allocated by live threads (HotSpot only); returns -1 if unsupported
+    static long allocatedBytes(ThreadMXBean threads) {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+        if (!hotspot.isThreadAllocatedMemorySupported() || !hotspot.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long total = 0;
+        for (long bytes : hotspot.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,160 @@
+package com.adzerk.android.sdk.benchmark;
+
+import com.adzerk.android.sdk.rest.Placement;
+import com.adzerk.android.sdk.rest.Request;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.nio.charset.Charset;
+
+/**
+ * Synthetic request and response payloads shaped like the Native Ads and UserDB APIs.
+ */
+public class Payloads {
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Approximate size of the creative 'customData' (and of User custom properties / Placement properties).
+     */
+    public enum CustomDataSize {
+        TINY(16),
+        SMALL(512),
+        LARGE(8 * 1024),
+        HUGE(64 * 1024);
+
+        final int bytes;
+
+        CustomDataSize(int bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Builds a Request with the given number of placements, each carrying custom targeting properties.
+     */
+    public static Request request(int placements, CustomDataSize size) {
+        Request.Builder builder = new Request.Builder();
+        for (int i = 0; i < placements; i++) {
+            Placement placement = new Placement("div" + i, 9792L, 306998L, 5)
+                    .addZoneIds(1, 2)
+                    .addEventIds(12, 13, 14);
+            int fields = Math.max(1, size.bytes / 48);
+            for (int f = 0; f < fields; f++) {
+                placement.addProperty("key" + f, "value-" + f + "-0123456789abcdefghijklmnopqrstuv");
+            }
+            builder.addPlacement(placement);
+        }
+        return builder
+                .addKeywords("sports", "cars")
+                .setUrl("http://adzerk.com")
+                .setFlightViewTimes(699801, 1433000000L, 1433000100L)
+                .build();
+    }
+
+    /**
+     * Builds a DecisionResponse JSON body with one image Decision per placement.
+     */
+    public static byte[] decisionResponse(int placements, CustomDataSize size) {
+        JsonObject decisions = new JsonObject();
+        for (int i = 0; i < placements; i++) {
+            decisions.add("div" + i, decision(i, size));
+        }
+
+        JsonObject user = new JsonObject();
+        user.addProperty("key", "ue1-d720342a233c4631a58dfb6b54f43480");
+
+        JsonObject response = new JsonObject();
+        response.add("user", user);
+        response.add("decisions", decisions);
+        return response.toString().getBytes(UTF_8);
+    }
+
+    /**
+     * Builds a UserDB User JSON body with custom properties of the given size.
+     */
+    public static byte[] user(CustomDataSize size) {
+        JsonArray interests = new JsonArray();
+        for (int i = 0; i < 20; i++) {
+            interests.add(new JsonPrimitive("interest" + i));
+        }
+
+        JsonArray creatives = new JsonArray();
+        creatives.add(new JsonPrimitive(222));
+
+        JsonObject blockedItems = new JsonObject();
+        blockedItems.add("creatives", creatives);
+
+        JsonArray times = new JsonArray();
+        times.add(new JsonPrimitive(1433000000L));
+        JsonObject flightViewTimes = new JsonObject();
+        flightViewTimes.add("699801", times);
+
+        JsonObject user = new JsonObject();
+        user.addProperty("key", "ue1-d720342a233c4631a58dfb6b54f43480");
+        user.addProperty("isNew", false);
+        user.add("interests", interests);
+        user.add("custom", customData(size));
+        user.addProperty("optOut", false);
+        user.add("blockedItems", blockedItems);
+        user.add("flightViewTimes", flightViewTimes);
+        return user.toString().getBytes(UTF_8);
+    }
+
+    static JsonObject decision(int i, CustomDataSize size) {
+        JsonObject data = new JsonObject();
+        data.addProperty("imageUrl", "http://static.adzerk.net/Advertisers/" + i + "/cat-eating-spaghetti.jpg");
+        data.addProperty("title", "ZOMG LOOK AT THIS FRICKING CAT");
+        data.addProperty("width", 300);
+        data.addProperty("height", 250);
+        data.add("customData", customData(size));
+
+        JsonObject content = new JsonObject();
+        content.addProperty("type", "html");
+        content.addProperty("template", "image");
+        content.add("data", data);
+        content.addProperty("body", "<a href='http://engine.adzerk.net/r?e=" + i + "'><img src='http://static.adzerk.net/"
+                + i + ".jpg' title='ZOMG LOOK AT THIS FRICKING CAT' width=300 height=250></a>");
+
+        JsonArray contents = new JsonArray();
+        contents.add(content);
+
+        JsonArray events = new JsonArray();
+        for (int id = 12; id <= 14; id++) {
+            JsonObject event = new JsonObject();
+            event.addProperty("id", id);
+            event.addProperty("url", "http://engine.adzerk.net/e.gif?e=eyJ2IjoiMS4xIiwiYXYiOjQ3NzQz" + i + "&s=" + id);
+            events.add(event);
+        }
+
+        JsonObject decision = new JsonObject();
+        decision.addProperty("adId", 1000 + i);
+        decision.addProperty("creativeId", 2000 + i);
+        decision.addProperty("flightId", 699801);
+        decision.addProperty("campaignId", 444);
+        decision.addProperty("clickUrl", "http://engine.adzerk.net/r?e=eyJ2IjoiMS4xIiwiYXYiOjQ3NzQz" + i);
+        decision.add("contents", contents);
+        decision.addProperty("impressionUrl", "http://engine.adzerk.net/i.gif?e=eyJ2IjoiMS4xIiwiYXYiOjQ3NzQz" + i);
+        decision.add("events", events);
+        return decision;
+    }
+
+    // Mix of strings, numbers and a nested object, roughly size.bytes of JSON
+    static JsonObject customData(CustomDataSize size) {
+        JsonObject customData = new JsonObject();
+        int fields = Math.max(1, size.bytes / 48);
+        for (int f = 0; f < fields; f++) {
+            if (f % 4 == 3) {
+                JsonObject nested = new JsonObject();
+                nested.addProperty("n", f);
+                nested.addProperty("flag", f % 2 == 0);
+                customData.add("obj" + f, nested);
+            } else if (f % 2 == 1) {
+                customData.addProperty("num" + f, f * 1.5);
+            } else {
+                customData.addProperty("str" + f, "value-" + f + "-0123456789abcdefghijklmnopqrstuv");
+            }
+        }
+        return customData;
+    }
+}
@@ -0,0 +1,250 @@
+package com.adzerk.android.sdk.benchmark;
+
+import com.adzerk.android.sdk.AdzerkSdk;
+import com.adzerk.android.sdk.AdzerkSdk.AdzerkError;
+import com.adzerk.android.sdk.AdzerkSdk.DecisionListener;
+import com.adzerk.android.sdk.AdzerkSdk.UserListener;
+import com.adzerk.android.sdk.TrafficRecorder;
+import com.adzerk.android.sdk.rest.DecisionResponse;
+import com.adzerk.android.sdk.rest.GsonFactory;
+import com.adzerk.android.sdk.rest.Request;
+import com.adzerk.android.sdk.rest.User;
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.SocketException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import retrofit.client.Client;
+import retrofit.client.Header;
+import retrofit.client.Response;
+import retrofit.mime.TypedByteArray;
+
+/**
+ * Replays a {@link TrafficRecorder} recording through {@link AdzerkSdk}. Each recorded request is re-issued with the
+ * matching SDK call at its recorded time, and answered by an in-process stub with the recorded response after the
+ * recorded duration, so the run has the payload shapes and arrival pattern of the recorded traffic.
+ * <pre>
+ * ./gradlew :benchmark:replay -PreplayArgs="--file=traffic.bin --speed=2"
+ *
+ *   --file=PATH       recording pulled from the device
+ *   --speed=X         replay X times faster than recorded (default 1)
+ *   --no-latency      answer immediately instead of after the recorded duration
+ * </pre>
+ * Prints the SDK metrics of the run as JSON.
+ */
+public class Replay {
+
+    File file;
+    double speed = 1.0;
+    boolean latency = true;
+
+    public static void main(String[] args) throws Exception {
+        Replay replay = new Replay();
+        replay.parse(args);
+        replay.run();
+        System.exit(0);
+    }
+
+    void parse(String[] args) {
+        for (String arg : args) {
+            String[] kv = arg.split("=", 2);
+            String value = kv.length > 1 ? kv[1] : "";
+            switch (kv[0]) {
+                case "--file": file = new File(value); break;
+                case "--speed": speed = Double.parseDouble(value); break;
+                case "--no-latency": latency = false; break;
+                default: throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (file == null) {
+            throw new IllegalArgumentException("Missing --file");
+        }
+    }
+
+    void run() throws IOException, InterruptedException {
+        List<TrafficRecorder.Entry> entries = read(file);
+        ReplayClient client = new ReplayClient(entries, latency ? speed : 0);
+        AdzerkSdk sdk = new AdzerkSdk.Builder()
+                .setEndpoint("http://replay")
+                .setClient(client)
+                .setCallbackExecutor(Executors.newSingleThreadExecutor())
+                .build();
+
+        System.out.println(String.format(Locale.US, "replaying %d exchanges from %s at %.1fx", entries.size(), file, speed));
+
+        final CountDownLatch done = new CountDownLatch(entries.size());
+        Listener listener = new Listener(done);
+        Gson gson = GsonFactory.create();
+        long start = System.nanoTime();
+        for (TrafficRecorder.Entry entry : entries) {
+            long due = start + (long) (TimeUnit.MICROSECONDS.toNanos(entry.getOffsetMicros()) / speed);
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            if (!issue(sdk, gson, entry, listener)) {
+                System.out.println("skipped " + entry.getMethod() + " " + entry.getPath());
+                done.countDown();
+            }
+        }
+        done.await();
+
+        System.out.println(String.format(Locale.US, "replayed in %.1f s", (System.nanoTime() - start) / 1e9));
+        System.out.println(sdk.getMetrics().export());
+    }
+
+    static List<TrafficRecorder.Entry> read(File file) throws IOException {
+        List<TrafficRecorder.Entry> entries = new ArrayList<>();
+        TrafficRecorder.Reader reader = new TrafficRecorder.Reader(file);
+        try {
+            TrafficRecorder.Entry entry;
+            while ((entry = reader.next()) != null) {
+                entries.add(entry);
+            }
+        } finally {
+            reader.close();
+        }
+        return entries;
+    }
+
+    /**
+     * Maps a recorded exchange back to the SDK call that made it.
+     *
+     * @return false if the path isn't an SDK endpoint
+     */
+    static boolean issue(AdzerkSdk sdk, Gson gson, TrafficRecorder.Entry entry, Listener listener)
+            throws UnsupportedEncodingException {
+        String path = entry.getPath();
+        int q = path.indexOf('?');
+        Map<String, String> query = query(q < 0 ? "" : path.substring(q + 1));
+        String[] segments = (q < 0 ? path : path.substring(0, q)).split("/");
+
+        if (path.startsWith("/api/v2")) {
+            Request request = gson.fromJson(new String(entry.getRequestBody(), Payloads.UTF_8), Request.class);
+            sdk.requestPlacement(request, listener);
+            return true;
+        }
+        if (segments.length < 4 || !"udb".equals(segments[1])) {
+            return false;
+        }
+
+        long networkId = Long.parseLong(segments[2]);
+        String userKey = query.get("userKey");
+        switch (segments[3]) {
+            case "custom":
+                sdk.setUserProperties(networkId, userKey, new String(entry.getRequestBody(), Payloads.UTF_8), listener);
+                return true;
+            case "read":
+                sdk.readUser(networkId, userKey, listener);
+                return true;
+            case "interest":
+                sdk.setUserInterest(networkId, userKey, query.get("interest"), listener);
+                return true;
+            case "optout":
+                sdk.setUserOptout(networkId, userKey, listener);
+                return true;
+            case "rt":
+                sdk.setUserRetargeting(networkId, Long.parseLong(segments[4]), URLDecoder.decode(segments[5], "UTF-8"),
+                        userKey, listener);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    static Map<String, String> query(String query) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        for (String param : query.split("&")) {
+            String[] kv = param.split("=", 2);
+            if (kv.length == 2) {
+                params.put(URLDecoder.decode(kv[0], "UTF-8"), URLDecoder.decode(kv[1], "UTF-8"));
+            }
+        }
+        return params;
+    }
+
+    static class Listener implements DecisionListener, UserListener {
+        final CountDownLatch done;
+
+        Listener(CountDownLatch done) {
+            this.done = done;
+        }
+
+        @Override
+        public void success(DecisionResponse response) {
+            done.countDown();
+        }
+
+        @Override
+        public void success(User user) {
+            done.countDown();
+        }
+
+        @Override
+        public void error(AdzerkError error) {
+            done.countDown();
+        }
+    }
+
+    /**
+     * Answers each request with the next recorded response for the same method and path, after the recorded
+     * duration divided by the replay speed (a speed of 0 answers immediately).
+     */
+    static class ReplayClient implements Client {
+        final Map<String, LinkedList<TrafficRecorder.Entry>> responses = new HashMap<>();
+        final double speed;
+
+        ReplayClient(List<TrafficRecorder.Entry> entries, double speed) {
+            this.speed = speed;
+            for (TrafficRecorder.Entry entry : entries) {
+                String key = entry.getMethod() + " " + entry.getPath();
+                LinkedList<TrafficRecorder.Entry> queue = responses.get(key);
+                if (queue == null) {
+                    queue = new LinkedList<>();
+                    responses.put(key, queue);
+                }
+                queue.add(entry);
+            }
+        }
+
+        @Override
+        public Response execute(retrofit.client.Request request) throws IOException {
+            String url = request.getUrl();
+            String path = url.substring(url.indexOf('/', "http://".length()));
+            TrafficRecorder.Entry entry;
+            synchronized (responses) {
+                LinkedList<TrafficRecorder.Entry> queue = responses.get(request.getMethod() + " " + path);
+                entry = (queue != null) ? queue.poll() : null;
+            }
+            if (entry == null) {
+                return new Response(url, 404, "Not recorded", Collections.<Header>emptyList(), null);
+            }
+
+            if (speed > 0) {
+                try {
+                    TimeUnit.MICROSECONDS.sleep((long) (entry.getDurationMicros() / speed));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (entry.getStatus() == TrafficRecorder.NO_RESPONSE) {
+                throw new SocketException("Recorded connection failure");
+            }
+            return new Response(url, entry.getStatus(), "", Collections.<Header>emptyList(),
+                    new TypedByteArray("application/json", entry.getResponseBody()));
+        }
+    }
+}
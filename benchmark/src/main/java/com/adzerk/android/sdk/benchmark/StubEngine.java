@@ -0,0 +1,245 @@
+package com.adzerk.android.sdk.benchmark;
+
+import com.adzerk.android.sdk.benchmark.Payloads.CustomDataSize;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded HTTP server on the loopback interface that emulates the Adzerk engine: {@code POST /api/v2}, the
+ * {@code /udb/*} endpoints and impression pixels at {@code /i.gif}.
+ * <p>
+ * Every response is delayed by the configured latency plus a uniformly distributed jitter, and fails with a 500
+ * at the configured error rate. Decisions are returned for every placement in the Request.
+ */
+public class StubEngine {
+
+    /**
+     * Stub engine behavior.
+     */
+    public static class Config {
+        int latencyMillis = 20;
+        int jitterMillis = 5;
+        double errorRate = 0.0;
+        CustomDataSize customData = CustomDataSize.SMALL;
+
+        public Config setLatency(int latencyMillis, int jitterMillis) {
+            this.latencyMillis = latencyMillis;
+            this.jitterMillis = jitterMillis;
+            return this;
+        }
+
+        public Config setErrorRate(double errorRate) {
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        public Config setCustomData(CustomDataSize customData) {
+            this.customData = customData;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return "latency=" + latencyMillis + "+/-" + jitterMillis + "ms errorRate=" + errorRate
+                    + " customData=" + customData;
+        }
+    }
+
+    static final byte[] EMPTY = new byte[0];
+
+    static {
+        // read once when the first HttpServer is created; without it Nagle's algorithm and delayed ACKs hold small
+        // responses back by tens of milliseconds, far more than the configured latency
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    final Config config;
+    final HttpServer server;
+    final ExecutorService executor;
+    final String decisionJson;
+    final byte[] userJson;
+
+    final AtomicLong decisionRequests = new AtomicLong();
+    final AtomicLong udbRequests = new AtomicLong();
+    final AtomicLong impressions = new AtomicLong();
+    final AtomicLong errors = new AtomicLong();
+
+    public StubEngine(Config config) throws IOException {
+        this.config = config;
+        this.decisionJson = Payloads.decision(0, config.customData).toString();
+        this.userJson = Payloads.user(config.customData);
+
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        server.setExecutor(executor);
+        server.createContext("/api/v2", new DecisionHandler());
+        server.createContext("/udb/", new UserDbHandler());
+        server.createContext("/i.gif", new PixelHandler());
+        server.start();
+    }
+
+    /**
+     * Returns the base URL to pass to {@link com.adzerk.android.sdk.AdzerkSdk.Builder#setEndpoint(String)}
+     */
+    public String getEndpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Returns an impression URL served by this engine
+     */
+    public String getImpressionUrl() {
+        return getEndpoint() + "/i.gif?e=eyJ2IjoiMS4xIiwiYXYiOjQ3NzQz";
+    }
+
+    public long getImpressionCount() {
+        return impressions.get();
+    }
+
+    public void resetCounters() {
+        decisionRequests.set(0);
+        udbRequests.set(0);
+        impressions.set(0);
+        errors.set(0);
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    abstract class StubHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                byte[] requestBody = readFully(exchange.getRequestBody());
+                delay();
+                if (config.errorRate > 0 && random().nextDouble() < config.errorRate) {
+                    errors.incrementAndGet();
+                    respond(exchange, 500, "text/plain", EMPTY);
+                    return;
+                }
+                respond(exchange, 200, contentType(), body(exchange, requestBody));
+            } finally {
+                exchange.close();
+            }
+        }
+
+        abstract String contentType();
+
+        abstract byte[] body(HttpExchange exchange, byte[] requestBody) throws IOException;
+    }
+
+    class DecisionHandler extends StubHandler {
+
+        @Override
+        String contentType() {
+            return "application/json; charset=UTF-8";
+        }
+
+        @Override
+        byte[] body(HttpExchange exchange, byte[] requestBody) {
+            decisionRequests.incrementAndGet();
+            JsonObject request = new JsonParser().parse(new String(requestBody, Payloads.UTF_8)).getAsJsonObject();
+            JsonArray placements = request.getAsJsonArray("placements");
+
+            StringBuilder json = new StringBuilder(64 + placements.size() * (decisionJson.length() + 16));
+            json.append("{\"user\":{\"key\":\"ue1-d720342a233c4631a58dfb6b54f43480\"},\"decisions\":{");
+            for (int i = 0; i < placements.size(); i++) {
+                JsonElement divName = placements.get(i).getAsJsonObject().get("divName");
+                if (i > 0) {
+                    json.append(',');
+                }
+                json.append('"').append(divName.getAsString()).append("\":").append(decisionJson);
+            }
+            json.append("}}");
+            return json.toString().getBytes(Payloads.UTF_8);
+        }
+    }
+
+    class UserDbHandler extends StubHandler {
+
+        @Override
+        String contentType() {
+            return "application/json; charset=UTF-8";
+        }
+
+        @Override
+        byte[] body(HttpExchange exchange, byte[] requestBody) {
+            udbRequests.incrementAndGet();
+            String path = exchange.getRequestURI().getPath();
+            return path.endsWith("/read") ? userJson : EMPTY;
+        }
+    }
+
+    class PixelHandler extends StubHandler {
+
+        @Override
+        String contentType() {
+            return "application/octet-stream";
+        }
+
+        @Override
+        byte[] body(HttpExchange exchange, byte[] requestBody) {
+            impressions.incrementAndGet();
+            return EMPTY;
+        }
+    }
+
+    void delay() {
+        long millis = config.latencyMillis;
+        if (config.jitterMillis > 0) {
+            millis += random().nextInt(2 * config.jitterMillis + 1) - config.jitterMillis;
+        }
+        if (millis > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    static void respond(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            OutputStream out = exchange.getResponseBody();
+            out.write(body);
+            out.close();
+        }
+    }
+
+    static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    static Random random() {
+        return ThreadLocalRandom.current();
+    }
+}
@@ -0,0 +1,11 @@
+package android.os;
+
+/**
+ * JVM stand-in for android.os.Process so the SDK can run in the benchmark harness. Thread priorities are ignored.
+ */
+public class Process {
+    public static final int THREAD_PRIORITY_BACKGROUND = 10;
+
+    public static void setThreadPriority(int priority) {
+    }
+}
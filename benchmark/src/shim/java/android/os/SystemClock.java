@@ -0,0 +1,15 @@
+package android.os;
+
+/**
+ * JVM stand-in for android.os.SystemClock so the SDK can run in the benchmark harness.
+ */
+public class SystemClock {
+
+    public static long elapsedRealtime() {
+        return System.nanoTime() / 1000000;
+    }
+
+    public static long uptimeMillis() {
+        return System.nanoTime() / 1000000;
+    }
+}
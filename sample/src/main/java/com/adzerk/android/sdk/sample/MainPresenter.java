@@ -15,8 +15,10 @@ import android.webkit.WebView;
 import android.widget.ImageView;
 import android.widget.TextView;
 
+import com.adzerk.android.sdk.AdPool;
 import com.adzerk.android.sdk.AdzerkSdk;
 import com.adzerk.android.sdk.AdzerkSdk.AdzerkError;
+import com.adzerk.android.sdk.AdzerkSdk.ClickListener;
 import com.adzerk.android.sdk.AdzerkSdk.DecisionListener;
 import com.adzerk.android.sdk.rest.Content;
 import com.adzerk.android.sdk.rest.Decision;
@@ -28,6 +30,8 @@ import com.squareup.otto.Subscribe;
 import com.squareup.picasso.Callback;
 import com.squareup.picasso.Picasso;
 
+import java.util.concurrent.TimeUnit;
+
 import butterknife.Bind;
 import butterknife.ButterKnife;
 import butterknife.OnClick;
@@ -49,6 +53,10 @@ public class MainPresenter {
     // display an add every nth item
     static final int AD_MODULUS = 5;
 
+    // decisions kept ready per ad placement, and how long they stay usable
+    static final int AD_POOL_DEPTH = 2;
+    static final long AD_POOL_MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
     MainModel model;
     MainView view;
 
@@ -64,12 +72,18 @@ public class MainPresenter {
 
     @Subscribe
     public void OnAdClick(AdClickEvent event) {
-        Activity activity = view.getActivity();
-        if (activity != null) {
-            Intent intent = new Intent(Intent.ACTION_VIEW);
-            intent.setData(Uri.parse(event.url));
-            activity.startActivity(intent);
-        }
+        // records the click, and opens the ad's landing page without the click tracking redirects
+        AdzerkSdk.getInstance().click(event.decision, new ClickListener() {
+            @Override
+            public void open(String url) {
+                Activity activity = view.getActivity();
+                if (activity != null) {
+                    Intent intent = new Intent(Intent.ACTION_VIEW);
+                    intent.setData(Uri.parse(url));
+                    activity.startActivity(intent);
+                }
+            }
+        });
     }
 
     public static class QuotesAdapter extends RecyclerView.Adapter<QuotesAdapter.ViewHolder> {
@@ -79,14 +93,27 @@ public class MainPresenter {
         static final int AD_CARD_IMG_VIEW_TYPE = 2;
         static final int AD_CARD_HTML_VIEW_TYPE = 3;
 
+        static final String IMG_PLACEMENT = "img";
+        static final String HTML_PLACEMENT = "html";
+
         VikingGenerator generator;
         int adModulus;
         AdzerkSdk sdk;
+        AdPool pool;
 
         public QuotesAdapter(VikingGenerator generator, int adModulus, AdzerkSdk sdk) {
             this.generator = generator;
             this.adModulus = adModulus;
             this.sdk = sdk;
+
+            // connect to the click server of ads once they are visible, so that clicks open faster
+            sdk.setClickPreresolution(true);
+
+            // fetch ads ahead of time so that ad cards bind as fast as content cards
+            this.pool = new AdPool(sdk, AD_POOL_DEPTH, AD_POOL_MAX_AGE_MILLIS)
+                    .addPlacement(new Placement(IMG_PLACEMENT, NETWORK_ID, SITE_ID, 5).setFlightId(IMG_FLIGHT_ID))
+                    .addPlacement(new Placement(HTML_PLACEMENT, NETWORK_ID, SITE_ID, 5).setFlightId(HTML_FLIGHT_ID));
+            pool.fill();
         }
 
         @Override
@@ -123,6 +150,12 @@ public class MainPresenter {
                 case AD_CARD_IMG_VIEW_TYPE:
                     final AdViewHolder adViewHolder = (AdViewHolder) vh;
 
+                    Decision readyAd = pool.poll(IMG_PLACEMENT);
+                    if (readyAd != null) {
+                        loadAdContent(adViewHolder, readyAd);
+                        break;
+                    }
+
                     sdk.requestPlacement(
                             new Request.Builder()
                                     .addPlacement(new Placement("div1", NETWORK_ID, SITE_ID, 5).setFlightId(IMG_FLIGHT_ID))
@@ -146,6 +179,12 @@ public class MainPresenter {
                 case AD_CARD_HTML_VIEW_TYPE:
                     final AdWebViewHolder adWebViewHolder = (AdWebViewHolder) vh;
 
+                    Decision readyHtmlAd = pool.poll(HTML_PLACEMENT);
+                    if (readyHtmlAd != null) {
+                        loadHtmlAdContent(adWebViewHolder, readyHtmlAd);
+                        break;
+                    }
+
                     sdk.requestPlacement(
                             new Request.Builder()
                                     .addPlacement(new Placement("div1", NETWORK_ID, SITE_ID, 5).setFlightId(HTML_FLIGHT_ID))
@@ -159,12 +198,7 @@ public class MainPresenter {
                                         return;
                                     }
 
-                                    Content content = decision.getContents().get(0);
-                                    String body = content.getBody();
-                                    String html = "<html>" + body + "</html>";
-                                    adWebViewHolder.webView.loadData(html, "text/html", "UTF-8");
-                                    adWebViewHolder.setClickUrl(decision.getClickUrl());
-                                    sdk.impression(decision.getImpressionUrl());
+                                    loadHtmlAdContent(adWebViewHolder, decision);
                                 }
 
                                 @Override
@@ -188,7 +222,8 @@ public class MainPresenter {
             Content content = decision.getContents().get(0);
 
             // set the click through url:
-            vh.setClickUrl(decision.getClickUrl());
+            vh.setDecision(decision);
+            sdk.trackVisibility(vh.itemView, decision);
 
             // display 'title' in name field
             vh.txtName.setText(content.getTitle());
@@ -210,7 +245,7 @@ public class MainPresenter {
                             @Override
                             public void onSuccess() {
                                 // when the image loads successfully, the ad impression is triggered
-                                sdk.impression(decision.getImpressionUrl());
+                                sdk.impression(decision);
                             }
 
                             @Override
@@ -221,6 +256,19 @@ public class MainPresenter {
             }
         }
 
+        /*
+         * Displays the html body of the ad.
+         */
+        private void loadHtmlAdContent(AdWebViewHolder vh, Decision decision) {
+            Content content = decision.getContents().get(0);
+            String body = content.getBody();
+            String html = "<html>" + body + "</html>";
+            vh.webView.loadData(html, "text/html", "UTF-8");
+            vh.setDecision(decision);
+            sdk.trackVisibility(vh.itemView, decision);
+            sdk.impression(decision);
+        }
+
         private void setHeadShot(ImageView imgView, String url) {
             Log.d(TAG, "Loading headshot from url: " + url);
             Picasso.with(imgView.getContext())
@@ -293,30 +341,30 @@ public class MainPresenter {
          * click-through functionality and display an indicator that the content is 'sponsored'.
          *
          * When a User clicks anywhere on the card, an AdClickEvent is fired. The result will start
-         * an Intent to open the click-through URL provided by the ad.
+         * an Intent to open the landing page of the ad's click-through URL.
          */
         public static class AdViewHolder extends ContentViewHolder {
 
             @Bind(R.id.sponsored) TextView txtSponsored;
 
-            String clickUrl;
+            Decision decision;
 
             public AdViewHolder(View itemView) {
                 super(itemView);
 
                 txtSponsored.setVisibility(View.VISIBLE);
 
-                this.clickUrl = null;
+                this.decision = null;
             }
 
-            public void setClickUrl(String clickUrl) {
-                this.clickUrl = clickUrl;
+            public void setDecision(Decision decision) {
+                this.decision = decision;
             }
 
             @OnClick(R.id.card_view)
             public void onClick() {
-                if (clickUrl != null) {
-                    BusProvider.post(new AdClickEvent(clickUrl));
+                if (decision != null) {
+                    BusProvider.post(new AdClickEvent(decision));
                 }
             }
         }
@@ -326,7 +374,7 @@ public class MainPresenter {
             @Bind(R.id.webView) WebView webView;
             @Bind(R.id.sponsored) TextView txtSponsored;
 
-            String clickUrl;
+            Decision decision;
 
             public AdWebViewHolder(View itemView) {
                 super(itemView);
@@ -336,24 +384,24 @@ public class MainPresenter {
                 webView.getSettings().setJavaScriptEnabled(true);
                 txtSponsored.setVisibility(View.VISIBLE);
 
-                this.clickUrl = null;
+                this.decision = null;
             }
 
-            public void setClickUrl(String clickUrl) {
-                this.clickUrl = clickUrl;
+            public void setDecision(Decision decision) {
+                this.decision = decision;
             }
 
             @OnClick(R.id.card_view)
             public void onClick() {
-                if (clickUrl != null) {
-                    BusProvider.post(new AdClickEvent(clickUrl));
+                if (decision != null) {
+                    BusProvider.post(new AdClickEvent(decision));
                 }
             }
 
             @OnTouch(R.id.webView)
             public boolean onTouch(View v, MotionEvent event) {
-                if (event.getAction() == MotionEvent.ACTION_UP) {
-                    BusProvider.post(new AdClickEvent(clickUrl));
+                if (event.getAction() == MotionEvent.ACTION_UP && decision != null) {
+                    BusProvider.post(new AdClickEvent(decision));
                 }
                 return true;
             }
@@ -361,10 +409,10 @@ public class MainPresenter {
     }
 
     public static class AdClickEvent {
-        String url;
+        Decision decision;
 
-        public AdClickEvent(String url) {
-            this.url = url;
+        public AdClickEvent(Decision decision) {
+            this.decision = decision;
         }
     }
 }
@@ -0,0 +1,224 @@
+package com.adzerk.android.sdk;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.adzerk.android.sdk.AdzerkSdk.AdzerkError;
+import com.adzerk.android.sdk.AdzerkSdk.DecisionListener;
+import com.adzerk.android.sdk.rest.Decision;
+import com.adzerk.android.sdk.rest.DecisionResponse;
+import com.adzerk.android.sdk.rest.Placement;
+import com.adzerk.android.sdk.rest.Request;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps Decisions fetched ahead of time for a set of Placements, so that an ad can be shown as soon as its slot
+ * appears (ie. when a feed binds an ad row) instead of after a request.
+ * <p>
+ * Each Placement keeps up to depth Decisions, each usable for maxAgeMillis after it was fetched. Taking one with
+ * {@link #poll(String)} refills the pool in the background; the Decisions missing for all Placements are requested
+ * together in a single Request.
+ * <p>
+ * <pre>
+ * {@code
+ * Placement feed = new Placement("feed", networkId, siteId, 5);
+ * AdPool pool = new AdPool(sdk, 3, TimeUnit.MINUTES.toMillis(5))
+ *     .addPlacement(feed)
+ *     .setRequest(new Request.Builder().addPlacement(feed).setUser(new User(userKey)).build());
+ * pool.fill();
+ *
+ * // when binding an ad row
+ * Decision decision = pool.poll("feed");
+ * }
+ * </pre>
+ */
+public class AdPool {
+    static final String TAG = AdPool.class.getSimpleName();
+
+    // separates the Placement's name from the index of a copy in a refill Request
+    static final char SEPARATOR = '#';
+
+    static class Ready {
+        final Decision decision;
+        final long fetchedAt;
+
+        Ready(Decision decision, long fetchedAt) {
+            this.decision = decision;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    static class Slot {
+        final Placement template;
+        final ArrayDeque<Ready> ready = new ArrayDeque<>();
+        int pending;
+
+        Slot(Placement template) {
+            this.template = template;
+        }
+    }
+
+    final AdzerkSdk sdk;
+    final int depth;
+    final long maxAgeMillis;
+    final Map<String, Slot> slots = new LinkedHashMap<>();
+
+    // parameters of refill Requests other than their Placements
+    Request template;
+
+    /**
+     * Creates an empty pool; add Placements with {@link #addPlacement(Placement)}.
+     *
+     * @param sdk           the SDK used to request Decisions
+     * @param depth         number of Decisions to keep ready per Placement
+     * @param maxAgeMillis  time a Decision can be handed out after it was fetched
+     */
+    public AdPool(@NonNull AdzerkSdk sdk, int depth, long maxAgeMillis) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("depth must be at least 1");
+        }
+        this.sdk = sdk;
+        this.depth = depth;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Adds a Placement to keep Decisions for. Decisions are requested for copies of the Placement, and handed out
+     * by its name.
+     *
+     * @param template  the Placement; its name must be unique in the pool
+     * @return the pool
+     */
+    public synchronized AdPool addPlacement(@NonNull Placement template) {
+        if (slots.containsKey(template.getDivName())) {
+            throw new IllegalArgumentException("Placement already added: " + template.getDivName());
+        }
+        slots.put(template.getDivName(), new Slot(template));
+        return this;
+    }
+
+    /**
+     * Sets the Request whose User, keywords and other parameters are sent with every refill, so that pooled ads are
+     * targeted and frequency capped like requested ones. Its Placements are ignored. Set it again when they change
+     * (ie. when the user logs in); Decisions already in the pool are kept.
+     *
+     * @param template  the Request to copy refills from
+     * @return the pool
+     */
+    public synchronized AdPool setRequest(@NonNull Request template) {
+        this.template = template;
+        return this;
+    }
+
+    /**
+     * Requests the Decisions missing for every Placement, unless they are already being requested.
+     */
+    public void fill() {
+        Request request = refillRequest();
+        if (request != null) {
+            send(request);
+        }
+    }
+
+    /**
+     * Hands out a ready Decision for the Placement, and refills the pool in the background.
+     *
+     * @param divName   name of a Placement added to the pool
+     * @return the Decision fetched longest ago, or null if none is ready
+     */
+    @Nullable
+    public Decision poll(@NonNull String divName) {
+        Ready ready;
+        synchronized (this) {
+            Slot slot = slot(divName);
+            evict(slot, SystemClock.elapsedRealtime());
+            ready = slot.ready.pollFirst();
+        }
+        fill();
+        if (ready == null) {
+            return null;
+        }
+        sdk.handedOut(ready.decision);
+        return ready.decision;
+    }
+
+    /**
+     * Returns the number of Decisions ready for the Placement
+     *
+     * @param divName   name of a Placement added to the pool
+     * @return ready Decisions
+     */
+    public synchronized int size(@NonNull String divName) {
+        Slot slot = slot(divName);
+        evict(slot, SystemClock.elapsedRealtime());
+        return slot.ready.size();
+    }
+
+    Slot slot(String divName) {
+        Slot slot = slots.get(divName);
+        if (slot == null) {
+            throw new IllegalArgumentException("Unknown placement: " + divName);
+        }
+        return slot;
+    }
+
+    // ready Decisions are in the order they were fetched
+    void evict(Slot slot, long now) {
+        while (!slot.ready.isEmpty() && now - slot.ready.peekFirst().fetchedAt > maxAgeMillis) {
+            slot.ready.removeFirst();
+        }
+    }
+
+    synchronized Request refillRequest() {
+        long now = SystemClock.elapsedRealtime();
+        List<Placement> placements = new ArrayList<>();
+        for (Slot slot : slots.values()) {
+            evict(slot, now);
+            int missing = depth - slot.ready.size() - slot.pending;
+            for (int i = 0; i < missing; i++) {
+                placements.add(slot.template.withDivName(slot.template.getDivName() + SEPARATOR + i));
+            }
+            slot.pending += Math.max(missing, 0);
+        }
+        if (placements.isEmpty()) {
+            return null;
+        }
+        return (template != null) ? template.withPlacements(placements) : new Request.Builder(placements).build();
+    }
+
+    void send(final Request request) {
+        sdk.requestPlacement(request, new DecisionListener() {
+            @Override
+            public void success(DecisionResponse response) {
+                filled(request, response);
+            }
+
+            @Override
+            public void error(AdzerkError error) {
+                Log.d(TAG, "Failed to refill: " + error.getReason());
+                filled(request, null);
+            }
+        });
+    }
+
+    synchronized void filled(Request request, @Nullable DecisionResponse response) {
+        long now = SystemClock.elapsedRealtime();
+        Map<String, Decision> decisions = (response != null) ? response.getDecisions() : null;
+        for (Placement placement : request.getPlacements()) {
+            String name = placement.getDivName();
+            Slot slot = slots.get(name.substring(0, name.lastIndexOf(SEPARATOR)));
+            slot.pending--;
+            Decision decision = (decisions != null) ? decisions.get(name) : null;
+            if (decision != null) {
+                slot.ready.addLast(new Ready(decision, now));
+            }
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package com.adzerk.android.sdk;
+
+import com.adzerk.android.sdk.rest.AdzerkService;
+import com.google.gson.JsonObject;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histograms and success/error counters for the calls made by the {@link AdzerkSdk}.
+ * <p>
+ * A timer is kept for each {@link AdzerkService} endpoint (synchronous and asynchronous variants share a timer),
+ * for the deserialization of {@link com.adzerk.android.sdk.rest.DecisionResponse} and
+ * {@link com.adzerk.android.sdk.rest.User} bodies, and for impression pixels. Recording is lock-free: every timer
+ * is a fixed array of atomic counters, so the cost of a sample is a handful of atomic increments.
+ * <p>
+ * <pre>
+ * {@code
+ * AdzerkMetrics.Snapshot snapshot = AdzerkSdk.getInstance().getMetrics().snapshot();
+ * long p99 = snapshot.getTimer(AdzerkMetrics.REQUEST).getPercentileMicros(0.99);
+ * String json = snapshot.toJson();
+ * }
+ * </pre>
+ */
+public class AdzerkMetrics {
+
+    /** Timer for the Native Ads API ({@code POST /api/v2}) */
+    public static final String REQUEST = "request";
+
+    /** Timer for setting custom User properties ({@code POST /udb/{networkId}/custom}) */
+    public static final String POST_USER_PROPERTIES = "postUserProperties";
+
+    /** Timer for reading a User ({@code GET /udb/{networkId}/read}) */
+    public static final String READ_USER = "readUser";
+
+    /** Timer for setting a User interest */
+    public static final String SET_USER_INTEREST = "setUserInterest";
+
+    /** Timer for the User opt-out pixel */
+    public static final String SET_USER_OPTOUT = "setUserOptout";
+
+    /** Timer for the User retargeting pixel */
+    public static final String SET_USER_RETARGETING = "setUserRetargeting";
+
+    /** Timer for deserializing a DecisionResponse body */
+    public static final String DECODE_DECISION_RESPONSE = "decode.DecisionResponse";
+
+    /** Timer for deserializing a User body */
+    public static final String DECODE_USER = "decode.User";
+
+    /** Timer for impression pixels */
+    public static final String IMPRESSION = "impression";
+
+    /** Timer for event tracking pixels */
+    public static final String EVENT = "event";
+
+    /** Timer for following the redirects of a click url */
+    public static final String CLICK = "click";
+
+    // timers are created up front and never added afterwards, so lookups need no locking
+    final Map<String, Timer> timers;
+
+    volatile boolean enabled = true;
+
+    AdzerkMetrics() {
+        Map<String, Timer> map = new HashMap<>();
+        for (Method method : AdzerkService.class.getMethods()) {
+            map.put(method.getName(), new Timer());
+        }
+        map.put(DECODE_DECISION_RESPONSE, new Timer());
+        map.put(DECODE_USER, new Timer());
+        map.put(IMPRESSION, new Timer());
+        map.put(EVENT, new Timer());
+        map.put(CLICK, new Timer());
+        timers = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Enables or disables recording. Metrics are enabled by default.
+     *
+     * @param enabled false to stop recording samples
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns true if samples are being recorded
+     *
+     * @return true if enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns a point-in-time copy of all timers.
+     *
+     * @return snapshot of the current metrics
+     */
+    public Snapshot snapshot() {
+        Map<String, TimerSnapshot> snapshots = new TreeMap<>();
+        for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+            snapshots.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return new Snapshot(System.currentTimeMillis(), snapshots);
+    }
+
+    /**
+     * Clears all timers. Samples recorded concurrently with a reset may be partially kept.
+     */
+    public void reset() {
+        for (Timer timer : timers.values()) {
+            timer.reset();
+        }
+    }
+
+    /**
+     * Convenience method that returns a snapshot of the current metrics as a JSON string.
+     *
+     * @return json string
+     */
+    public String export() {
+        return snapshot().toJson();
+    }
+
+    /**
+     * Records a sample for the named timer.
+     *
+     * @param name          timer name
+     * @param startNanos    start time from {@link System#nanoTime()}
+     * @param success       false if the call failed
+     */
+    void record(String name, long startNanos, boolean success) {
+        if (!enabled) {
+            return;
+        }
+        Timer timer = timers.get(name);
+        if (timer != null) {
+            timer.record(System.nanoTime() - startNanos, success);
+        }
+    }
+
+    /**
+     * Log-linear latency histogram with microsecond resolution. Each power of two is split into 8 linear
+     * sub-buckets, so any reported percentile is within 12.5% of the recorded value.
+     */
+    static class Timer {
+        static final int SUB_BUCKET_BITS = 3;
+        static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        static final int MAX_EXPONENT = 36;   // ~19 hours in micros
+        static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong totalMicros = new AtomicLong();
+        final AtomicLong maxMicros = new AtomicLong();
+
+        void record(long elapsedNanos, boolean success) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0, elapsedNanos));
+            buckets.incrementAndGet(bucketIndex(micros));
+            totalMicros.addAndGet(micros);
+            if (!success) {
+                errors.incrementAndGet();
+            }
+
+            long max = maxMicros.get();
+            while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+                max = maxMicros.get();
+            }
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            errors.set(0);
+            totalMicros.set(0);
+            maxMicros.set(0);
+        }
+
+        TimerSnapshot snapshot() {
+            long[] counts = new long[BUCKETS];
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                count += counts[i];
+            }
+            return new TimerSnapshot(counts, count, errors.get(), totalMicros.get(), maxMicros.get());
+        }
+
+        static int bucketIndex(long micros) {
+            if (micros < SUB_BUCKETS) {
+                return (int) micros;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(micros);
+            if (exponent > MAX_EXPONENT) {
+                return BUCKETS - 1;
+            }
+            int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        // highest value (in micros) that falls into the bucket
+        static long bucketUpperBound(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            int subBucket = index % SUB_BUCKETS;
+            int shift = exponent - SUB_BUCKET_BITS;
+            return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+        }
+    }
+
+    /**
+     * Immutable copy of a single timer.
+     */
+    public static class TimerSnapshot {
+        final long[] buckets;
+        final long count;
+        final long errors;
+        final long totalMicros;
+        final long maxMicros;
+
+        TimerSnapshot(long[] buckets, long count, long errors, long totalMicros, long maxMicros) {
+            this.buckets = buckets;
+            this.count = count;
+            this.errors = errors;
+            this.totalMicros = totalMicros;
+            this.maxMicros = maxMicros;
+        }
+
+        /**
+         * Returns the number of recorded calls
+         * @return call count
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the number of calls that completed successfully
+         * @return success count
+         */
+        public long getSuccessCount() {
+            return count - errors;
+        }
+
+        /**
+         * Returns the number of calls that failed
+         * @return error count
+         */
+        public long getErrorCount() {
+            return errors;
+        }
+
+        /**
+         * Returns the mean latency in microseconds
+         * @return mean latency or 0 if there are no samples
+         */
+        public long getMeanMicros() {
+            return count == 0 ? 0 : totalMicros / count;
+        }
+
+        /**
+         * Returns the highest recorded latency in microseconds
+         * @return max latency
+         */
+        public long getMaxMicros() {
+            return maxMicros;
+        }
+
+        /**
+         * Returns the latency at the given quantile, ie. 0.99 for the 99th percentile.
+         *
+         * @param quantile value between 0 and 1
+         * @return latency in microseconds or 0 if there are no samples
+         */
+        public long getPercentileMicros(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(Math.min(1.0, Math.max(0.0, quantile)) * count);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(Timer.bucketUpperBound(i), maxMicros);
+                }
+            }
+            return maxMicros;
+        }
+
+        JsonObject toJsonObject() {
+            JsonObject json = new JsonObject();
+            json.addProperty("count", count);
+            json.addProperty("errors", errors);
+            json.addProperty("mean_us", getMeanMicros());
+            json.addProperty("p50_us", getPercentileMicros(0.5));
+            json.addProperty("p90_us", getPercentileMicros(0.9));
+            json.addProperty("p99_us", getPercentileMicros(0.99));
+            json.addProperty("p999_us", getPercentileMicros(0.999));
+            json.addProperty("max_us", maxMicros);
+            return json;
+        }
+    }
+
+    /**
+     * Immutable copy of all timers taken by {@link AdzerkMetrics#snapshot()}.
+     */
+    public static class Snapshot {
+        final long timestamp;
+        final Map<String, TimerSnapshot> timers;
+
+        Snapshot(long timestamp, Map<String, TimerSnapshot> timers) {
+            this.timestamp = timestamp;
+            this.timers = Collections.unmodifiableMap(timers);
+        }
+
+        /**
+         * Returns the UNIX epoch time (millis) when the snapshot was taken
+         * @return epoch timestamp
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * Returns all timers by name
+         * @return map of timer name to timer snapshot
+         */
+        public Map<String, TimerSnapshot> getTimers() {
+            return timers;
+        }
+
+        /**
+         * Returns the named timer, ie. {@link AdzerkMetrics#REQUEST}
+         * @param name timer name
+         * @return timer snapshot or null if unknown
+         */
+        public TimerSnapshot getTimer(String name) {
+            return timers.get(name);
+        }
+
+        /**
+         * Returns the snapshot as a JSON string, keyed by timer name. Latencies are in microseconds.
+         * @return json string
+         */
+        public String toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("timestamp", timestamp);
+            JsonObject timersJson = new JsonObject();
+            for (Map.Entry<String, TimerSnapshot> entry : timers.entrySet()) {
+                timersJson.add(entry.getKey(), entry.getValue().toJsonObject());
+            }
+            json.add("timers", timersJson);
+            return json.toString();
+        }
+    }
+}
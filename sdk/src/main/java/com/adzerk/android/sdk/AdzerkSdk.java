@@ -1,34 +1,44 @@
 package com.adzerk.android.sdk;
 
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.os.Build.VERSION;
+import android.os.Build.VERSION_CODES;
+import android.os.Process;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
+import android.view.View;
 
 import com.adzerk.android.sdk.rest.AdzerkService;
-import com.adzerk.android.sdk.rest.ContentData;
+import com.adzerk.android.sdk.rest.Content;
+import com.adzerk.android.sdk.rest.Decision;
 import com.adzerk.android.sdk.rest.DecisionResponse;
+import com.adzerk.android.sdk.rest.Event;
+import com.adzerk.android.sdk.rest.EventTracker;
+import com.adzerk.android.sdk.rest.GsonFactory;
+import com.adzerk.android.sdk.rest.Placement;
 import com.adzerk.android.sdk.rest.Request;
 import com.adzerk.android.sdk.rest.User;
-import com.adzerk.android.sdk.rest.UserProperties;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParseException;
-
-import java.io.IOException;
-import java.lang.reflect.Type;
+
+import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import retrofit.Callback;
 import retrofit.ResponseCallback;
 import retrofit.RestAdapter;
-import retrofit.RestAdapter.Builder;
 import retrofit.RestAdapter.LogLevel;
 import retrofit.RetrofitError;
+import retrofit.android.MainThreadExecutor;
 import retrofit.client.Client;
 import retrofit.client.Response;
 import retrofit.converter.GsonConverter;
@@ -64,6 +74,40 @@ public class AdzerkSdk {
 
     AdzerkService service;
     Client client;
+    String endpoint = ADZERK_ENDPOINT;
+    Executor httpExecutor;
+    Executor callbackExecutor;
+    TrafficRecorder recorder;
+    volatile UserPropertiesBatcher batcher;
+    volatile UserCache userCache;
+    volatile UserSignalFilter signalFilter;
+    volatile OfflineDecisions offlineDecisions;
+    volatile NoFillCache noFillCache;
+    volatile AssetCache assetCache;
+    volatile PixelFilter pixelFilter;
+    volatile boolean clickPreresolution;
+    ViewabilityTracker viewability;  // created on the main thread when first used
+    VideoTracker videos;             // created on the main thread when first used
+    Context context;
+    MemoryCallbacks memoryCallbacks;   // registered with the Context on API 14+
+    volatile String currentUserKey;
+
+    final OptOutStore optOuts = new OptOutStore();
+    final FlightViewTimes flightViews = new FlightViewTimes();
+    final BlockedCreatives blockedCreatives = new BlockedCreatives();
+
+    final AdzerkMetrics metrics = new AdzerkMetrics();
+    final NetworkEvents events = new NetworkEvents();
+    final PixelPipeline pixels = new PixelPipeline(metrics);
+    final ClickResolver clicks = new ClickResolver(metrics);
+
+    // given to decoded Decisions, so that Decision.fireEvent(int) fires through this instance
+    private final EventTracker tracker = new EventTracker() {
+        @Override
+        public boolean event(Decision decision, int eventId) {
+            return AdzerkSdk.this.event(decision, eventId);
+        }
+    };
 
     /**
      * Errors returned from Adzerk API calls.
@@ -109,6 +153,23 @@ public class AdzerkSdk {
         public void error(AdzerkError error);
     }
 
+    /**
+     * Listener for the url to open when an ad is clicked, see {@link AdzerkSdk#click(Decision, ClickListener)}
+     */
+    public interface ClickListener {
+        public void open(String url);
+    }
+
+    /**
+     * Position of the player of a video ad, ie. a MediaPlayer or ExoPlayer. Called on the main thread.
+     */
+    public interface VideoPlayer {
+        /** Returns the play position, in milliseconds */
+        public long getCurrentPosition();
+        /** Returns the length of the video in milliseconds, or 0 if it isn't known yet */
+        public long getDuration();
+    }
+
     /**
      * Returns the SDK instance for making Adzerk API calls.
      *
@@ -122,6 +183,19 @@ public class AdzerkSdk {
         return instance;
     }
 
+    /**
+     * Returns the SDK instance, with state that persists across app restarts (ie. User opt-outs) stored in the
+     * app's private storage.
+     *
+     * @param context   any context of the app
+     * @return sdk instance
+     */
+    public static AdzerkSdk getInstance(@NonNull Context context) {
+        AdzerkSdk sdk = getInstance();
+        sdk.setContext(context);
+        return sdk;
+    }
+
     /**
      * Injection point for tests only. Not intended for public consumption.
      *
@@ -147,10 +221,540 @@ public class AdzerkSdk {
     }
 
     private AdzerkSdk(AdzerkService service, Client client) {
-        this.service = service;
+        this.service = (service != null) ? InstrumentedService.wrap(service, metrics, events) : null;
         this.client = client;
     }
 
+    private AdzerkSdk(Builder builder) {
+        this.endpoint = builder.endpoint;
+        this.client = builder.client;
+        this.httpExecutor = builder.httpExecutor;
+        this.callbackExecutor = builder.callbackExecutor;
+        this.recorder = builder.recorder;
+        if (builder.context != null) {
+            setContext(builder.context);
+        }
+        service = getAdzerkService();
+    }
+
+    /**
+     * Builder to configure the transport of an SDK instance, ie. to run against a local test engine or to
+     * compare transport settings. Most apps should use {@link AdzerkSdk#getInstance()}.
+     * <p>
+     * <pre>
+     * {@code
+     * AdzerkSdk sdk = new AdzerkSdk.Builder()
+     *     .setEndpoint("http://127.0.0.1:8080")
+     *     .setCallbackExecutor(Executors.newSingleThreadExecutor())
+     *     .build();
+     * }
+     * </pre>
+     */
+    public static class Builder {
+        private String endpoint = ADZERK_ENDPOINT;
+        private Client client;
+        private Executor httpExecutor;
+        private Executor callbackExecutor;
+        private TrafficRecorder recorder;
+        private Context context;
+
+        /**
+         * Base URL of the Adzerk engine. Defaults to {@code https://engine.adzerk.net}
+         *
+         * @param endpoint  engine URL
+         * @return sdk builder
+         */
+        public Builder setEndpoint(@NonNull String endpoint) {
+            this.endpoint = endpoint;
+            return this;
+        }
+
+        /**
+         * HTTP client used to execute requests. Defaults to the SDK's HttpURLConnection transport.
+         *
+         * @param client    http client
+         * @return sdk builder
+         */
+        public Builder setClient(Client client) {
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * Executor that runs asynchronous requests. Defaults to a cached pool of background priority threads.
+         *
+         * @param httpExecutor  executor for network calls
+         * @return sdk builder
+         */
+        public Builder setHttpExecutor(Executor httpExecutor) {
+            this.httpExecutor = httpExecutor;
+            return this;
+        }
+
+        /**
+         * Executor that notifies listeners of asynchronous requests. Defaults to the Android main thread.
+         *
+         * @param callbackExecutor  executor for listener callbacks
+         * @return sdk builder
+         */
+        public Builder setCallbackExecutor(Executor callbackExecutor) {
+            this.callbackExecutor = callbackExecutor;
+            return this;
+        }
+
+        /**
+         * Context used to store state that persists across app restarts (ie. User opt-outs). Without a context,
+         * that state is kept in memory only.
+         *
+         * @param context   any context of the app
+         * @return sdk builder
+         */
+        public Builder setContext(@NonNull Context context) {
+            this.context = context;
+            return this;
+        }
+
+        /**
+         * Debug only: records every request and response to the recorder's file. Recordings contain user keys
+         * and properties, so don't enable this in release builds.
+         *
+         * @param recorder  traffic recorder
+         * @return sdk builder
+         */
+        public Builder setTrafficRecorder(TrafficRecorder recorder) {
+            this.recorder = recorder;
+            return this;
+        }
+
+        /**
+         * Create the SDK instance
+         *
+         * @return sdk instance
+         */
+        public AdzerkSdk build() {
+            return new AdzerkSdk(this);
+        }
+    }
+
+    private synchronized void setContext(Context context) {
+        if (this.context == null) {
+            Context application = context.getApplicationContext();
+            this.context = (application != null) ? application : context;
+            optOuts.load(this.context);
+            flightViews.load(this.context.getFilesDir());
+            blockedCreatives.load(this.context.getFilesDir());
+            pixels.load(this.context.getFilesDir());
+            pixels.retry();
+            if (offlineDecisions != null) {
+                offlineDecisions.load(this.context.getFilesDir());
+            }
+            if (VERSION.SDK_INT >= VERSION_CODES.ICE_CREAM_SANDWICH) {
+                memoryCallbacks = MemoryCallbacks.register(this.context, this);
+            }
+        }
+    }
+
+    void trimMemory(int level) {
+        OfflineDecisions offline = offlineDecisions;
+        if (offline != null) {
+            offline.trim(trimFraction(level));
+        }
+    }
+
+    // Share of cached memory to release at a trim level
+    static float trimFraction(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
+            return 1f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            return 0.75f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            return 0.5f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            return 0f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            return 0.75f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return 0.5f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            return 0.25f;
+        }
+        return 0f;
+    }
+
+    /**
+     * Returns the latency histograms and success/error counters for calls made by this SDK instance.
+     *
+     * @return sdk metrics
+     */
+    public AdzerkMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Installs a listener that receives timestamped callbacks for each phase of every call to the Adzerk
+     * endpoints: queue wait, DNS, connect, TLS, request write, first byte, response body, JSON decode and
+     * listener dispatch.
+     *
+     * @param listener the listener, or null to stop reporting
+     */
+    public void setNetworkEventListener(@Nullable NetworkEventListener listener) {
+        events.setListener(listener);
+    }
+
+    /**
+     * Buffers {@link #setUserProperties(long, String, Map, UserListener)} calls instead of posting each one.
+     * Pending properties for the same User are merged, the last value written for a property wins, and sent as one
+     * request when the oldest pending write is delayMillis old, when maxProperties are pending, or on
+     * {@link #flushUserProperties()}. Every caller's listener is completed with the result of the combined request.
+     * <p/>
+     * Batching is off by default. Call {@link #flushUserProperties()} when the app goes to the background so that
+     * pending writes are not lost.
+     *
+     * @param delayMillis   maximum time a write is held, or 0 to post every write immediately
+     * @param maxProperties pending properties per User that trigger an immediate post
+     */
+    public void setUserPropertiesBatching(long delayMillis, int maxProperties) {
+        UserPropertiesBatcher previous = batcher;
+        batcher = (delayMillis > 0) ? new UserPropertiesBatcher(new UserPropertiesBatcher.Sender() {
+            @Override
+            public void post(long networkId, String userKey, Map<String, Object> properties, UserListener listener) {
+                postUserProperties(networkId, userKey, properties, listener);
+            }
+        }, delayMillis, maxProperties) : null;
+
+        if (previous != null) {
+            previous.flush();
+        }
+    }
+
+    /**
+     * Posts the User properties buffered by {@link #setUserPropertiesBatching(long, int)} now.
+     */
+    public void flushUserProperties() {
+        UserPropertiesBatcher batcher = this.batcher;
+        if (batcher != null) {
+            batcher.flush();
+        }
+    }
+
+    /**
+     * Caches the Users returned by {@link #readUser(long, String, UserListener)} and
+     * {@link #readUserSynchronous(long, String)}, so that repeated reads of the same User don't make a request.
+     * A cached User is returned as is for ttlMillis; for a further staleMillis it is still returned, while a
+     * background read refreshes it. Writes to a User through this SDK instance invalidate its cached copy.
+     * <p/>
+     * Caching is off by default.
+     *
+     * @param ttlMillis     time a User is served without a request, or 0 to disable caching
+     * @param staleMillis   time after the TTL a User is served while it is refreshed, or 0 to read it again
+     */
+    public void setUserCache(long ttlMillis, long staleMillis) {
+        userCache = (ttlMillis > 0) ? new UserCache(ttlMillis, staleMillis) : null;
+    }
+
+    /**
+     * Skips {@link #setUserInterest(long, String, String, UserListener)} and
+     * {@link #setUserRetargeting(long, long, String, String, UserListener)} calls for an interest or segment
+     * that was already recorded for the User by this SDK instance, or returned in the User's interests by
+     * {@link #readUser(long, String, UserListener)}. Skipped calls complete successfully without a request.
+     * <p/>
+     * De-duplication is off by default.
+     *
+     * @param enabled   true to skip redundant calls
+     */
+    public void setUserSignalDeduplication(boolean enabled) {
+        signalFilter = enabled ? new UserSignalFilter() : null;
+    }
+
+    /**
+     * Keeps Decisions whose ads were not shown, so that when {@link #requestPlacement(Request, DecisionListener)}
+     * or {@link #requestPlacementSynchronous(Request)} fail because the engine can't be reached, the Request's
+     * Placements are filled from them instead. Such a response is marked {@link DecisionResponse#isOffline()}.
+     * <p/>
+     * A kept Decision is served for a Placement with the same network and site that allows all of the ad types and
+     * zones it was selected for, and matches the Placement's flight, campaign and ad id. Decisions of blocked
+     * creatives, and of flights viewed flightViewsPerDay times in the last day, are skipped. Each Decision is served
+     * once; its impression is queued until the network is back.
+     * <p/>
+     * With a Context, kept Decisions are also stored on disk and loaded when the app starts again; use
+     * {@link #getCachedDecisions(Request)} to fill the first Placements after a cold start without waiting for the
+     * engine.
+     * <p/>
+     * Kept Decisions use at most 256KB of memory; see {@link #setOfflineDecisions(long, int, long)}. Offline
+     * decisions are off by default.
+     *
+     * @param maxAgeMillis      time a Decision can be served after it was fetched, or 0 to disable offline decisions
+     * @param flightViewsPerDay views of a flight after which its Decisions are no longer served offline
+     */
+    public void setOfflineDecisions(long maxAgeMillis, int flightViewsPerDay) {
+        setOfflineDecisions(maxAgeMillis, flightViewsPerDay, OfflineDecisions.MAX_BYTES);
+    }
+
+    /**
+     * Keeps Decisions whose ads were not shown to serve them offline, as {@link #setOfflineDecisions(long, int)},
+     * within a memory budget. The size of each Decision is estimated from its contents, so the budget holds many
+     * image ads or a few large HTML ads; the oldest Decisions are dropped first. With a Context, a share of them is
+     * also dropped when the system asks apps to trim memory, more as the pressure rises.
+     *
+     * @param maxAgeMillis      time a Decision can be served after it was fetched, or 0 to disable offline decisions
+     * @param flightViewsPerDay views of a flight after which its Decisions are no longer served offline
+     * @param maxBytes          estimated memory the kept Decisions can use
+     */
+    public synchronized void setOfflineDecisions(long maxAgeMillis, int flightViewsPerDay, long maxBytes) {
+        OfflineDecisions offline = (maxAgeMillis > 0)
+                ? new OfflineDecisions(maxAgeMillis, flightViewsPerDay, maxBytes)
+                : null;
+        if (offline != null) {
+            offline.tracker = tracker;
+            if (context != null) {
+                offline.load(context.getFilesDir());
+            }
+        }
+        offlineDecisions = offline;
+    }
+
+    /**
+     * Fills the Request's Placements from the Decisions kept by {@link #setOfflineDecisions(long, int)}, without a
+     * request. After a cold start these are the Decisions stored by the previous run, so the first ads can be shown
+     * immediately while a fresh {@link #requestPlacement(Request, DecisionListener)} runs in the background.
+     * <p/>
+     * Kept Decisions are matched to Placements as when the engine can't be reached, and each is served once. The
+     * response is marked {@link DecisionResponse#isOffline()}.
+     * <p/>
+     * The stored Decisions are loaded in the background once the SDK has a Context; if they are still loading, this
+     * waits for them for up to a second.
+     *
+     * @param request   the Placements to fill
+     * @return Decisions for the Placements that could be filled, or null if none (or offline decisions are off)
+     */
+    @Nullable
+    public DecisionResponse getCachedDecisions(@NonNull Request request) {
+        OfflineDecisions offline = offlineDecisions;
+        if (offline == null) {
+            return null;
+        }
+        offline.awaitLoad(OfflineDecisions.LOAD_TIMEOUT_MILLIS);
+        return offline.decide(request, blockedCreatives, flightViews);
+    }
+
+    /**
+     * Leaves Placements that returned no Decision out of the following Requests for a while, instead of asking the
+     * engine again on every request. A Placement is skipped for ttlMillis after a no-fill; the time doubles with
+     * each further consecutive no-fill, up to maxTtlMillis. Placements are told apart by the parameters that affect
+     * ad selection (network, site, ad types, zones, campaign, flight, ad and properties) and the Request's keywords.
+     * <p/>
+     * Skipped Placements have no Decision in the response. A Request whose Placements are all skipped completes
+     * immediately without a request.
+     * <p/>
+     * The no-fill cache is off by default.
+     *
+     * @param ttlMillis     time a Placement is skipped after a no-fill, or 0 to disable the cache
+     * @param maxTtlMillis  longest time a Placement that keeps returning no Decision is skipped
+     */
+    public void setNoFillCache(long ttlMillis, long maxTtlMillis) {
+        noFillCache = (ttlMillis > 0) ? new NoFillCache(ttlMillis, maxTtlMillis) : null;
+    }
+
+    /**
+     * Drops impressions and events whose tracking url was already fired within windowMillis, ie. when a list binds
+     * an ad's row again as it is scrolled back into view. Applies to {@link #impression(Decision)},
+     * {@link #impression(String)} and {@link #event(Decision, int)} (player events such as {@link Event#ID_PAUSE},
+     * that can happen several times during one view, are always fired). Fired urls are remembered in a filter of
+     * fixed size (32KB), so rarely a url that wasn't fired yet is taken for one that was.
+     * <p/>
+     * De-duplication of pixels is off by default.
+     *
+     * @param windowMillis  time a fired url is remembered, or 0 to disable de-duplication
+     */
+    public void setPixelDeduplication(long windowMillis) {
+        pixelFilter = (windowMillis > 0) ? new PixelFilter(windowMillis) : null;
+    }
+
+    /**
+     * Downloads the images of Decisions in the background as soon as they arrive, so that an ad can be shown from
+     * disk when it is bound instead of waiting for its image. Assets are kept in the app's cache directory, up to
+     * maxBytes; the least recently used are deleted first. Use {@link #getCachedAsset(String)} to load an image.
+     * <p/>
+     * Requires a Context (see {@link Builder#setContext(Context)}). Asset prefetching is off by default.
+     *
+     * @param maxBytes  size of the asset cache, or 0 to disable prefetching
+     */
+    public synchronized void setAssetPrefetching(long maxBytes) {
+        if (maxBytes > 0 && context == null) {
+            Log.w(TAG, "Asset prefetching requires a Context");
+            return;
+        }
+        File directory = (context != null) ? new File(context.getCacheDir(), AssetCache.DIRECTORY) : null;
+        assetCache = (maxBytes > 0) ? new AssetCache(directory, maxBytes) : null;
+    }
+
+    /**
+     * Returns the file of an asset downloaded by asset prefetching (ie. {@link Content#getImageUrl()}), or null if it
+     * isn't available yet.
+     *
+     * @param url   url of the asset
+     * @return the downloaded asset, or null
+     */
+    @Nullable
+    public File getCachedAsset(@Nullable String url) {
+        AssetCache assets = assetCache;
+        return (assets != null) ? assets.get(url) : null;
+    }
+
+    // Leaves out Placements that recently returned no Decision; returns null if none are left
+    @Nullable
+    private Request withoutUnfilled(Request request) {
+        NoFillCache cache = noFillCache;
+        if (cache == null || request.getPlacements() == null) {
+            return request;
+        }
+        List<Placement> placements = cache.filter(request);
+        if (placements.size() == request.getPlacements().size()) {
+            return request;
+        }
+        return placements.isEmpty() ? null : request.withPlacements(placements);
+    }
+
+    // Keeps the Decisions of a response, prefetches their assets, and delivers pixels queued while the engine
+    // couldn't be reached
+    private void decided(Request request, DecisionResponse response) {
+        NoFillCache cache = noFillCache;
+        if (cache != null) {
+            cache.record(request, response);
+        }
+        OfflineDecisions offline = offlineDecisions;
+        if (offline != null) {
+            offline.add(request, response);
+        }
+        AssetCache assets = assetCache;
+        if (assets != null) {
+            assets.prefetch(response);
+        }
+        pixels.retry();
+    }
+
+    // Returns Decisions made from kept ones, or null if the request should fail
+    @Nullable
+    private DecisionResponse decideOffline(Request request, RetrofitError error) {
+        OfflineDecisions offline = offlineDecisions;
+        if (offline == null || error.getKind() != RetrofitError.Kind.NETWORK) {
+            return null;
+        }
+        return offline.decide(request, blockedCreatives, flightViews);
+    }
+
+    // A Decision handed out by an AdPool is no longer kept to be served offline
+    void handedOut(Decision decision) {
+        OfflineDecisions offline = offlineDecisions;
+        if (offline != null) {
+            offline.remove(decision);
+        }
+    }
+
+    // Completes a Request whose Placements were all skipped
+    private void completeLocally(@Nullable final DecisionListener listener) {
+        if (listener != null) {
+            listenerExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    listener.success(new DecisionResponse(new HashMap<String, Decision>(), false));
+                }
+            });
+        }
+    }
+
+    // Completes a call that needed no request
+    private void completeLocally(@Nullable final UserListener listener) {
+        if (listener != null) {
+            listenerExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    listener.success(null);
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns true if the User has opted out of tracking, either through {@link #setUserOptout} or as returned by
+     * {@link #readUser}. While opted out, calls that record data about the User (properties, interests,
+     * retargeting, and impressions while they are the current User) complete successfully without a request.
+     * <p/>
+     * The opt-out is remembered across app restarts if the SDK was given a {@link Context}.
+     *
+     * @param networkId     unique network id
+     * @param userKey       unique User key
+     * @return true if opted out
+     */
+    public boolean isUserOptedOut(long networkId, String userKey) {
+        return optOuts.isOptedOut(new UdbKey(networkId, userKey));
+    }
+
+    // Records a User returned by the engine
+    private void userRead(@Nullable UserCache cache, UdbKey key, User user, long token) {
+        if (cache != null) {
+            cache.put(key, user, token);
+        }
+        // sticky: a read that races an opt-out must not undo it
+        if (user != null && user.isOptOut()) {
+            optOuts.add(key);
+        }
+        if (user != null && user.getBlockedCreatives() != null) {
+            blockedCreatives.addAll(user.getBlockedCreatives());
+        }
+        UserSignalFilter filter = signalFilter;
+        if (filter != null && user != null) {
+            filter.seed(key, user.getInterests());
+        }
+    }
+
+    private void invalidateUser(long networkId, String userKey) {
+        UserCache cache = userCache;
+        if (cache != null) {
+            cache.invalidate(new UdbKey(networkId, userKey));
+        }
+    }
+
+    // Invalidates the cached User again once the write completes, so that a read answered before the write was
+    // applied isn't served until the TTL
+    private ResponseCallback userWritten(final long networkId, final String userKey, final ResponseCallback callback) {
+        return new ResponseCallback() {
+            @Override
+            public void success(Response response) {
+                invalidateUser(networkId, userKey);
+                callback.success(response);
+            }
+
+            @Override
+            public void failure(RetrofitError error) {
+                invalidateUser(networkId, userKey);
+                callback.failure(error);
+            }
+        };
+    }
+
+    // Takes the User's buffered properties out of the buffer, so that a write that bypasses it sends them first and
+    // they don't overwrite it; returns null if there are none
+    @Nullable
+    private UserPropertiesBatcher.Batch removeUserProperties(long networkId, String userKey) {
+        UserPropertiesBatcher batcher = this.batcher;
+        return (batcher != null) ? batcher.remove(new UdbKey(networkId, userKey)) : null;
+    }
+
+    // Completes the listeners of a buffered batch that was sent synchronously, on the listener thread
+    private void completeUserProperties(final UserPropertiesBatcher.Batch batch, @Nullable final AdzerkError error) {
+        listenerExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (error != null) {
+                    batch.error(error);
+                } else {
+                    batch.success(null);
+                }
+            }
+        });
+    }
+
     /**
      * Send a request to the Native Ads API.
      * This is an asynchronous request, results will be returned to the given listener.
@@ -159,9 +763,17 @@ public class AdzerkSdk {
      * @param listener Can be null, but caller will never get notifications.
      */
     public void requestPlacement(Request request, @Nullable final DecisionListener listener) {
-        getAdzerkService().request(request, new Callback<DecisionResponse>() {
+        requestUser(request);
+        final Request sent = withoutUnfilled(request);
+        if (sent == null) {
+            completeLocally(listener);
+            return;
+        }
+        getAdzerkService().request(sent, new Callback<DecisionResponse>() {
             @Override
             public void success(DecisionResponse response, Response response2) {
+                responseUser(response);
+                decided(sent, response);
                 if (listener != null) {
                     listener.success(response);
                 }
@@ -169,8 +781,13 @@ public class AdzerkSdk {
 
             @Override
             public void failure(RetrofitError error) {
+                DecisionResponse offline = decideOffline(sent, error);
                 if (listener != null) {
-                    listener.error(new AdzerkError(error));
+                    if (offline != null) {
+                        listener.success(offline);
+                    } else {
+                        listener.error(new AdzerkError(error));
+                    }
                 }
             }
         });
@@ -182,7 +799,37 @@ public class AdzerkSdk {
      * @param request Request specifying one or more Placements
      */
     public DecisionResponse requestPlacementSynchronous(Request request) {
-        return getAdzerkService().request(request);
+        requestUser(request);
+        Request sent = withoutUnfilled(request);
+        if (sent == null) {
+            return new DecisionResponse(new HashMap<String, Decision>(), false);
+        }
+        DecisionResponse response;
+        try {
+            response = getAdzerkService().request(sent);
+        } catch (RetrofitError error) {
+            DecisionResponse offline = decideOffline(sent, error);
+            if (offline == null) {
+                throw error;
+            }
+            return offline;
+        }
+        responseUser(response);
+        decided(sent, response);
+        return response;
+    }
+
+    // The User of the latest Request is the one whose impressions are fired
+    private void requestUser(Request request) {
+        if (request.getUser() != null && request.getUser().getKey() != null) {
+            currentUserKey = request.getUser().getKey();
+        }
+    }
+
+    private void responseUser(DecisionResponse response) {
+        if (response != null && response.getUser() != null && response.getUser().getKey() != null) {
+            currentUserKey = response.getUser().getKey();
+        }
     }
 
     /**
@@ -193,8 +840,37 @@ public class AdzerkSdk {
      * @param json      a JSON String representing the custom properties, ie. { "age": 27, "gender": "male }
      * @param listener  callback listener, success arg is always null
      */
-    public void setUserProperties(long networkId, String userKey, String json, @Nullable final UserListener listener) {
-        getAdzerkService().postUserProperties(networkId, userKey, new TypedJsonString(json), new ResponseCallback() {
+    public void setUserProperties(final long networkId, final String userKey, final String json,
+                                  @Nullable final UserListener listener) {
+        if (optOuts.isOptedOut(new UdbKey(networkId, userKey))) {
+            completeLocally(listener);
+            return;
+        }
+        final UserPropertiesBatcher.Batch pending = removeUserProperties(networkId, userKey);
+        if (pending == null) {
+            postUserProperties(networkId, userKey, json, listener);
+            return;
+        }
+
+        // buffered writes are older, so they are posted first, and this write once they complete
+        postUserProperties(networkId, userKey, pending.properties, new UserListener() {
+            @Override
+            public void success(User user) {
+                pending.success(user);
+                postUserProperties(networkId, userKey, json, listener);
+            }
+
+            @Override
+            public void error(AdzerkError error) {
+                pending.error(error);
+                postUserProperties(networkId, userKey, json, listener);
+            }
+        });
+    }
+
+    private void postUserProperties(long networkId, String userKey, String json, @Nullable final UserListener listener) {
+        invalidateUser(networkId, userKey);
+        getAdzerkService().postUserProperties(networkId, userKey, new TypedJsonString(json), userWritten(networkId, userKey, new ResponseCallback() {
             @Override
             public void success(Response response) {
                 if (listener != null) {
@@ -208,7 +884,7 @@ public class AdzerkSdk {
                     listener.error(new AdzerkError(error));
                 }
             }
-        });
+        }));
     }
 
     /**
@@ -219,7 +895,26 @@ public class AdzerkSdk {
      * @param json      a JSON String representing the custom properties, ie. { "age": 27, "gender": "male }
      */
     public void setUserPropertiesSynchronous(long networkId, String userKey, String json) {
-        getAdzerkService().postUserProperties(networkId, userKey, new TypedJsonString(json));
+        if (optOuts.isOptedOut(new UdbKey(networkId, userKey))) {
+            return;
+        }
+        invalidateUser(networkId, userKey);
+        UserPropertiesBatcher.Batch pending = removeUserProperties(networkId, userKey);
+        try {
+            if (pending != null) {
+                // buffered writes are older, so they are posted first
+                AdzerkError pendingError = null;
+                try {
+                    getAdzerkService().postUserProperties(networkId, userKey, pending.properties);
+                } catch (RetrofitError error) {
+                    pendingError = new AdzerkError(error);
+                }
+                completeUserProperties(pending, pendingError);
+            }
+            getAdzerkService().postUserProperties(networkId, userKey, new TypedJsonString(json));
+        } finally {
+            invalidateUser(networkId, userKey);
+        }
     }
 
     /**
@@ -229,9 +924,29 @@ public class AdzerkSdk {
      * @param userKey       unique User key
      * @param properties    map of key-value pairs
      * @param listener      callback listener
+     * @see #setUserPropertiesBatching(long, int)
      */
     public void setUserProperties(long networkId, String userKey, Map<String, Object> properties, @Nullable final UserListener listener) {
-        getAdzerkService().postUserProperties(networkId, userKey, properties, new ResponseCallback() {
+        if (optOuts.isOptedOut(new UdbKey(networkId, userKey))) {
+            completeLocally(listener);
+            return;
+        }
+        UserPropertiesBatcher batcher = this.batcher;
+        if (batcher != null) {
+            batcher.add(networkId, userKey, properties, listener);
+        } else {
+            postUserProperties(networkId, userKey, properties, listener);
+        }
+    }
+
+    void postUserProperties(long networkId, String userKey, Map<String, Object> properties, @Nullable final UserListener listener) {
+        // a batch may have been buffered before the User opted out
+        if (optOuts.isOptedOut(new UdbKey(networkId, userKey))) {
+            completeLocally(listener);
+            return;
+        }
+        invalidateUser(networkId, userKey);
+        getAdzerkService().postUserProperties(networkId, userKey, properties, userWritten(networkId, userKey, new ResponseCallback() {
             @Override
             public void success(retrofit.client.Response response) {
                 if (listener != null) {
@@ -245,7 +960,7 @@ public class AdzerkSdk {
                     listener.error(new AdzerkError(error));
                 }
             }
-        });
+        }));
     }
 
     /**
@@ -256,7 +971,38 @@ public class AdzerkSdk {
      * @param properties    map of key-value pairs
      */
     public void setUserPropertiesSynchronous(long networkId, String userKey, Map<String, Object> properties) {
-        getAdzerkService().postUserProperties(networkId, userKey, properties);
+        UdbKey key = new UdbKey(networkId, userKey);
+        UserPropertiesBatcher batcher = this.batcher;
+        if (optOuts.isOptedOut(key)) {
+            if (batcher != null) {
+                batcher.flush(key);
+            }
+            return;
+        }
+
+        invalidateUser(networkId, userKey);
+        UserPropertiesBatcher.Batch pending = (batcher != null) ? batcher.remove(key) : null;
+        if (pending == null) {
+            try {
+                getAdzerkService().postUserProperties(networkId, userKey, properties);
+            } finally {
+                invalidateUser(networkId, userKey);
+            }
+            return;
+        }
+
+        // buffered writes are older, so they are sent in the same request, overridden by these properties
+        Map<String, Object> merged = new LinkedHashMap<>(pending.properties);
+        merged.putAll(properties);
+        try {
+            getAdzerkService().postUserProperties(networkId, userKey, merged);
+        } catch (RetrofitError error) {
+            completeUserProperties(pending, new AdzerkError(error));
+            throw error;
+        } finally {
+            invalidateUser(networkId, userKey);
+        }
+        completeUserProperties(pending, null);
     }
 
     /**
@@ -267,9 +1013,29 @@ public class AdzerkSdk {
      * @param listener      callback listener
      */
     public void readUser(long networkId, String userKey, @Nullable final UserListener listener) {
+        final UserCache cache = userCache;
+        final UdbKey key = new UdbKey(networkId, userKey);
+        if (cache != null) {
+            final User cached = cache.get(key);
+            if (cached != null) {
+                revalidateUser(cache, key);
+                if (listener != null) {
+                    listenerExecutor().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            listener.success(cached);
+                        }
+                    });
+                }
+                return;
+            }
+        }
+
+        final long token = (cache != null) ? cache.beginRead() : 0;
         getAdzerkService().readUser(networkId, userKey, new Callback<User>() {
             @Override
             public void success(User user, Response response) {
+                userRead(cache, key, user, token);
                 if (listener != null) {
                     listener.success(user);
                 }
@@ -292,7 +1058,39 @@ public class AdzerkSdk {
      * @return user object
      */
     public User readUserSynchronous(long networkId, String userKey) {
-        return getAdzerkService().readUser(networkId, userKey);
+        UserCache cache = userCache;
+        UdbKey key = new UdbKey(networkId, userKey);
+        if (cache != null) {
+            User cached = cache.get(key);
+            if (cached != null) {
+                revalidateUser(cache, key);
+                return cached;
+            }
+        }
+
+        long token = (cache != null) ? cache.beginRead() : 0;
+        User user = getAdzerkService().readUser(networkId, userKey);
+        userRead(cache, key, user, token);
+        return user;
+    }
+
+    // Refreshes a stale cached User in the background
+    private void revalidateUser(final UserCache cache, final UdbKey key) {
+        if (!cache.startRevalidation(key)) {
+            return;
+        }
+        final long token = cache.beginRead();
+        getAdzerkService().readUser(key.networkId, key.userKey, new Callback<User>() {
+            @Override
+            public void success(User user, Response response) {
+                userRead(cache, key, user, token);
+            }
+
+            @Override
+            public void failure(RetrofitError error) {
+                cache.revalidationFailed(key);
+            }
+        });
     }
 
     /**
@@ -304,7 +1102,16 @@ public class AdzerkSdk {
      * @param listener      callback listener
      */
     public void setUserInterest(long networkId, String userKey, String interest, @Nullable final UserListener listener) {
-        getAdzerkService().setUserInterest(networkId, userKey, interest, new ResponseCallback() {
+        final UserSignalFilter filter = signalFilter;
+        final UdbKey key = new UdbKey(networkId, userKey);
+        final long signal = UserSignalFilter.interest(interest);
+        if (optOuts.isOptedOut(key) || (filter != null && !filter.claim(key, signal))) {
+            completeLocally(listener);
+            return;
+        }
+
+        invalidateUser(networkId, userKey);
+        getAdzerkService().setUserInterest(networkId, userKey, interest, userWritten(networkId, userKey, new ResponseCallback() {
             @Override
             public void success(retrofit.client.Response response) {
                 if (listener != null) {
@@ -314,11 +1121,14 @@ public class AdzerkSdk {
 
             @Override
             public void failure(RetrofitError error) {
+                if (filter != null) {
+                    filter.release(key, signal);
+                }
                 if (listener != null) {
                     listener.error(new AdzerkError(error));
                 }
             }
-        });
+        }));
     }
 
     /**
@@ -329,7 +1139,24 @@ public class AdzerkSdk {
      * @param interest      name of interest
      */
     public void setUserInterestSynchronous(long networkId, String userKey, String interest) {
-        getAdzerkService().setUserInterest(networkId, userKey, interest);
+        UserSignalFilter filter = signalFilter;
+        UdbKey key = new UdbKey(networkId, userKey);
+        long signal = UserSignalFilter.interest(interest);
+        if (optOuts.isOptedOut(key) || (filter != null && !filter.claim(key, signal))) {
+            return;
+        }
+
+        invalidateUser(networkId, userKey);
+        try {
+            getAdzerkService().setUserInterest(networkId, userKey, interest);
+        } catch (RetrofitError error) {
+            if (filter != null) {
+                filter.release(key, signal);
+            }
+            throw error;
+        } finally {
+            invalidateUser(networkId, userKey);
+        }
     }
 
     /**
@@ -340,9 +1167,12 @@ public class AdzerkSdk {
      * @param listener      callback listener
      */
     public void setUserOptout(long networkId, String userKey, @Nullable final UserListener listener) {
-        getAdzerkService().setUserOptout(networkId, userKey, new ResponseCallback() {
+        final UdbKey key = new UdbKey(networkId, userKey);
+        invalidateUser(networkId, userKey);
+        getAdzerkService().setUserOptout(networkId, userKey, userWritten(networkId, userKey, new ResponseCallback() {
             @Override
             public void success(retrofit.client.Response response) {
+                optOuts.add(key);
                 if (listener != null) {
                     listener.success(null);
                 }
@@ -354,7 +1184,7 @@ public class AdzerkSdk {
                     listener.error(new AdzerkError(error));
                 }
             }
-        });
+        }));
     }
 
     /**
@@ -364,7 +1194,13 @@ public class AdzerkSdk {
      * @param userKey       unique User key
      */
     public void setUserOptoutSynchronous(long networkId, String userKey) {
-        getAdzerkService().setUserOptout(networkId, userKey);
+        invalidateUser(networkId, userKey);
+        try {
+            getAdzerkService().setUserOptout(networkId, userKey);
+        } finally {
+            invalidateUser(networkId, userKey);
+        }
+        optOuts.add(new UdbKey(networkId, userKey));
     }
 
     /**
@@ -377,7 +1213,16 @@ public class AdzerkSdk {
      * @param listener      callback listener
      */
     public void setUserRetargeting(long networkId, long brandId, String segment, String userKey, @Nullable final UserListener listener) {
-        getAdzerkService().setUserRetargeting(networkId, brandId, segment, userKey, new ResponseCallback() {
+        final UserSignalFilter filter = signalFilter;
+        final UdbKey key = new UdbKey(networkId, userKey);
+        final long signal = UserSignalFilter.segment(brandId, segment);
+        if (optOuts.isOptedOut(key) || (filter != null && !filter.claim(key, signal))) {
+            completeLocally(listener);
+            return;
+        }
+
+        invalidateUser(networkId, userKey);
+        getAdzerkService().setUserRetargeting(networkId, brandId, segment, userKey, userWritten(networkId, userKey, new ResponseCallback() {
             @Override
             public void success(retrofit.client.Response response) {
                 if (listener != null) {
@@ -387,11 +1232,14 @@ public class AdzerkSdk {
 
             @Override
             public void failure(RetrofitError error) {
+                if (filter != null) {
+                    filter.release(key, signal);
+                }
                 if (listener != null) {
                     listener.error(new AdzerkError(error));
                 }
             }
-        });
+        }));
     }
 
     /**
@@ -403,16 +1251,44 @@ public class AdzerkSdk {
      * @param userKey       unique User key
      */
     public void setUserRetargetingSynchronous(long networkId, long brandId, String segment, String userKey) {
-        getAdzerkService().setUserRetargeting(networkId, brandId, segment, userKey);
+        UserSignalFilter filter = signalFilter;
+        UdbKey key = new UdbKey(networkId, userKey);
+        long signal = UserSignalFilter.segment(brandId, segment);
+        if (optOuts.isOptedOut(key) || (filter != null && !filter.claim(key, signal))) {
+            return;
+        }
+
+        invalidateUser(networkId, userKey);
+        try {
+            getAdzerkService().setUserRetargeting(networkId, brandId, segment, userKey);
+        } catch (RetrofitError error) {
+            if (filter != null) {
+                filter.release(key, signal);
+            }
+            throw error;
+        } finally {
+            invalidateUser(networkId, userKey);
+        }
     }
 
     /**
      * Converts the given String to an impression URL.
      *
      * @param urlString
-     * @return - false if it is malformed
+     * @return - false if it is malformed, or was already fired (see {@link #setPixelDeduplication(long)})
      */
     public boolean impression(final String urlString) {
+        if (isRepeat(urlString)) {
+            return false;
+        }
+        OfflineDecisions offline = offlineDecisions;
+        if (offline != null && urlString != null) {
+            offline.remove(urlString);
+        }
+        return fireImpression(urlString);
+    }
+
+    private boolean fireImpression(String urlString) {
         try {
             impression(new URL(urlString));
             return true;
@@ -422,6 +1298,196 @@ public class AdzerkSdk {
         }
     }
 
+    /**
+     * Fires the impression pixel of the Decision and records the view of its flight. Recorded view times are sent
+     * with every following Request as flightViewTimes, so that the engine can apply the flight's frequency cap;
+     * they are remembered across app restarts if the SDK was given a {@link Context}.
+     *
+     * @param decision  the Decision whose ad was shown
+     * @return false if the Decision has no valid impression url, or its impression was already fired
+     */
+    public boolean impression(@NonNull Decision decision) {
+        if (decision.getImpressionUrl() == null || isRepeat(decision.getImpressionUrl())) {
+            return false;
+        }
+        OfflineDecisions offline = offlineDecisions;
+        if (offline != null) {
+            offline.remove(decision);
+        }
+        if (!optOuts.isOptedOut(currentUserKey)) {
+            flightViews.record(decision.getFlightId(), System.currentTimeMillis() / 1000);
+        }
+        return fireImpression(decision.getImpressionUrl());
+    }
+
+    /**
+     * Fires the tracking url of the Decision's event with the given id. Downvotes ({@link Event#ID_DOWNVOTE} and the
+     * {@code ID_DOWNVOTE_*} reasons) also block the Decision's creative: blocked creatives, along with those in the
+     * blocked items of Users read, are sent with every following Request as blockedCreatives, and are remembered
+     * across app restarts if the SDK was given a {@link Context}.
+     * <p/>
+     * Decisions received from this SDK can also fire their events with {@link Decision#fireEvent(int)}, which
+     * ignores repeated fires of the same event.
+     *
+     * @param decision  the Decision whose ad the user interacted with
+     * @param eventId   event identifier, ie. {@link Event#ID_DOWNVOTE_OFFENSIVE}
+     * @return false if the Decision has no event with the id, its url is malformed, or it was already fired
+     */
+    public boolean event(@NonNull Decision decision, int eventId) {
+        if (BlockedCreatives.isDownvote(eventId)) {
+            blockedCreatives.add(decision.getCreativeId());
+        }
+        String url = decision.getEventUrl(eventId);
+        if (url == null || (!Event.isRepeatable(eventId) && isRepeat(url))) {
+            return false;
+        }
+        try {
+            pixel(new URL(url), AdzerkMetrics.EVENT);
+            return true;
+        } catch (MalformedURLException e) {
+            Log.e(TAG, "Failed to track event on url: " + url, e);
+            return false;
+        }
+    }
+
+    /**
+     * Records a click on the Decision's ad in the background, and calls the listener with the url to open: where the
+     * click url redirects to once it leaves the ad server (usually the landing page, which is not requested), so that
+     * the browser opens it directly instead of going through the click tracking redirects first. If the click url
+     * can't be requested (ie. the network is unavailable), the listener gets the click url itself, and the browser
+     * records the click. If the request reached the ad server but timed out or wasn't redirected, the listener also
+     * gets the click url, and the click may be recorded twice.
+     *
+     * @param decision  the Decision whose ad was clicked
+     * @param listener  called on the main thread with the url to open
+     * @return false if the Decision has no click url
+     */
+    public boolean click(@NonNull Decision decision, @NonNull ClickListener listener) {
+        if (decision.getClickUrl() == null) {
+            return false;
+        }
+        clicks.click(decision.getClickUrl(), listenerExecutor(), listener);
+        return true;
+    }
+
+    /**
+     * Opens a connection to the server of the Decision's click url in the background, so that a following
+     * {@link #click(Decision, ClickListener)} doesn't wait for the DNS lookup and TLS handshake. Nothing is recorded.
+     * Call it when the ad becomes visible, or see {@link #setClickPreresolution(boolean)}.
+     *
+     * @param decision  the Decision whose ad is shown
+     */
+    public void prepareClick(@NonNull Decision decision) {
+        if (decision.getClickUrl() != null) {
+            clicks.prepare(decision.getClickUrl());
+        }
+    }
+
+    /**
+     * Prepares the click of ads tracked with {@link #trackVisibility(View, Decision)} once they become visible, see
+     * {@link #prepareClick(Decision)}. Off by default.
+     *
+     * @param enabled   true to prepare clicks of visible ads
+     */
+    public void setClickPreresolution(boolean enabled) {
+        clickPreresolution = enabled;
+    }
+
+    /**
+     * Tracks the visibility of the view showing the Decision's ad, and fires its {@link Event#ID_VISIBLE} event once
+     * the view has been continuously visible for long enough (see {@link #setVisibilityCriteria(float, long)}). The
+     * event is fired at most once per Decision, through {@link Decision#fireEvent(int)}; the view is no longer tracked
+     * after it. Tracking a view again, ie. when a list binds another ad to a recycled view, replaces its Decision.
+     * <p/>
+     * All tracked views are sampled together on each frame; views are held weakly. Must be called on the main thread.
+     *
+     * @param view      the view showing the ad
+     * @param decision  the Decision whose ad the view shows
+     */
+    public void trackVisibility(@NonNull View view, @NonNull Decision decision) {
+        viewability().track(view, decision);
+    }
+
+    /**
+     * Stops tracking the visibility of the view, ie. when its ad is unbound. Must be called on the main thread.
+     *
+     * @param view  the view passed to {@link #trackVisibility(View, Decision)}
+     */
+    public void untrackVisibility(@NonNull View view) {
+        if (viewability != null) {
+            viewability.untrack(view);
+        }
+    }
+
+    /**
+     * Sets when a tracked view counts as visible. Defaults to half of the view for one second. Must be called on the
+     * main thread.
+     *
+     * @param minVisibleFraction    fraction of the view's area that must be on screen, from 0 to 1
+     * @param minVisibleMillis      time the view must be visible without interruption
+     */
+    public void setVisibilityCriteria(float minVisibleFraction, long minVisibleMillis) {
+        viewability().setCriteria(minVisibleFraction, minVisibleMillis);
+    }
+
+    /**
+     * Tracks the player of the Decision's video ad, and fires its video events as the player reaches them:
+     * {@link Event#ID_START} once it plays, {@link Event#ID_FIRST_QUARTILE}, {@link Event#ID_MIDPOINT},
+     * {@link Event#ID_THIRD_QUARTILE} and {@link Event#ID_COMPLETE}. Each event is fired at most once per Decision,
+     * through {@link Decision#fireEvent(int)}; the player is no longer tracked after the last. Tracking a player
+     * again replaces its Decision.
+     * <p/>
+     * All players are checked from one timer on the main thread, only when their next event is due. Untrack a player
+     * whose ad is unbound before its video completes. Must be called on the main thread.
+     *
+     * @param player    position of the player showing the ad
+     * @param decision  the Decision whose video the player shows
+     */
+    public void trackVideo(@NonNull VideoPlayer player, @NonNull Decision decision) {
+        trackVideo(player, decision, 0);
+    }
+
+    /**
+     * Tracks the player of the Decision's video ad as {@link #trackVideo(VideoPlayer, Decision)}, and also fires
+     * {@link Event#ID_PROGRESS} once the player reaches progressMillis.
+     *
+     * @param player            position of the player showing the ad
+     * @param decision          the Decision whose video the player shows
+     * @param progressMillis    play position at which to fire the progress event, or 0 not to fire it
+     */
+    public void trackVideo(@NonNull VideoPlayer player, @NonNull Decision decision, long progressMillis) {
+        if (videos == null) {
+            videos = new VideoTracker();
+        }
+        videos.track(player, decision, progressMillis);
+    }
+
+    /**
+     * Stops tracking the player, ie. when its ad is unbound. Must be called on the main thread.
+     *
+     * @param player    the player passed to {@link #trackVideo(VideoPlayer, Decision)}
+     */
+    public void untrackVideo(@NonNull VideoPlayer player) {
+        if (videos != null) {
+            videos.untrack(player);
+        }
+    }
+
+    private ViewabilityTracker viewability() {
+        if (viewability == null) {
+            viewability = new ViewabilityTracker();
+            viewability.listener = new ViewabilityTracker.Listener() {
+                @Override
+                public void visible(Decision decision) {
+                    if (clickPreresolution) {
+                        prepareClick(decision);
+                    }
+                }
+            };
+        }
+        return viewability;
+    }
+
     /**
      * Returns a typed json string to be serialized
      * @param jsonString
@@ -432,64 +1498,71 @@ public class AdzerkSdk {
     }
 
     protected void impression(final URL url) {
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    url.openConnection().getContent();
-                } catch(IOException e) {
-                    Log.e(TAG, "Failed to impress ", e);
-                }
-            }
-        }).start();
+        pixel(url, AdzerkMetrics.IMPRESSION);
+    }
+
+    // Calls a tracking url in the background, or later if the network is unavailable
+    private void pixel(URL url, String timer) {
+        if (optOuts.isOptedOut(currentUserKey)) {
+            return;
+        }
+        pixels.fire(url, timer);
+    }
+
+    // Returns true if pixel de-duplication is on and the url was fired within its window
+    private boolean isRepeat(String url) {
+        PixelFilter filter = pixelFilter;
+        return filter != null && url != null && filter.isRepeat(url);
     }
 
     // Create service for the Adzerk REST endpoint
     private AdzerkService getAdzerkService() {
         if (service == null ) {
-            Gson gson = new GsonBuilder()
-                  .registerTypeAdapter(ContentData.class, new ContentDataDeserializer())
-                  .registerTypeAdapter(UserProperties.class, new UserPropertiesDeserializer())
-                  .create();
-
-            Builder builder = new RestAdapter.Builder()
-                    .setEndpoint(ADZERK_ENDPOINT)
-                    .setConverter(new GsonConverter(gson))
-                    .setLogLevel(LogLevel.NONE);
+            Gson gson = GsonFactory.create(new SdkRequestDecorator(blockedCreatives, flightViews), tracker);
 
-            // test client
-            if (client != null) {
-                builder.setClient(client);
+            // a null client selects the built-in HttpURLConnection transport; otherwise wraps the test client
+            Client transport = new InstrumentedClient(client, events);
+            if (recorder != null) {
+                transport = recorder.wrap(transport, endpoint);
             }
 
-            service = builder.build().create(AdzerkService.class);
+            RestAdapter.Builder builder = new RestAdapter.Builder()
+                    .setEndpoint(endpoint)
+                    .setClient(transport)
+                    .setExecutors(
+                            events.wrapHttpExecutor(httpExecutor != null ? httpExecutor : createHttpExecutor()),
+                            events.wrapCallbackExecutor(listenerExecutor()))
+                    .setConverter(new InstrumentedConverter(new GsonConverter(gson), metrics, events))
+                    .setLogLevel(LogLevel.NONE);
+
+            service = InstrumentedService.wrap(builder.build().create(AdzerkService.class), metrics, events);
         }
 
         return service;
     }
 
-    // Capture the default deserialization and JsonObject for the 'data.customData' element
-    private static class ContentDataDeserializer implements JsonDeserializer<ContentData> {
-
-        @Override
-        public ContentData deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-            JsonObject dataObject = json.getAsJsonObject();
-            Map<String, Object> map = context.deserialize(dataObject, Map.class);
-            JsonObject customDataObject = dataObject.getAsJsonObject("customData");
-
-            return new ContentData(map, customDataObject);
+    // Executor that notifies listeners; also used for results served without a request
+    private Executor listenerExecutor() {
+        if (callbackExecutor == null) {
+            callbackExecutor = new MainThreadExecutor();
         }
+        return callbackExecutor;
     }
 
-    // Capture the default deserialization and JsonObject for the 'custom' element
-    private static class UserPropertiesDeserializer implements JsonDeserializer<UserProperties> {
-
-        @Override
-        public UserProperties deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-            JsonObject dataObject = json.getAsJsonObject();
-            Map<String, Object> map = context.deserialize(dataObject, Map.class);
-            return new UserProperties(map, dataObject);
-        }
+    // Same as Retrofit's default http executor on Android: cached pool of background priority threads
+    private static Executor createHttpExecutor() {
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        r.run();
+                    }
+                }, "Adzerk-Idle");
+            }
+        });
     }
 
     private class TypedJsonString extends TypedString {
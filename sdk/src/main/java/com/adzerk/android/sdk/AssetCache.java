@@ -0,0 +1,282 @@
+package com.adzerk.android.sdk;
+
+import android.util.Log;
+
+import com.adzerk.android.sdk.rest.Content;
+import com.adzerk.android.sdk.rest.Decision;
+import com.adzerk.android.sdk.rest.DecisionResponse;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads the creative assets of Decisions (ie. the image of an image ad) ahead of time, so that an ad can be
+ * shown from disk as soon as it is bound.
+ * <p>
+ * Assets are stored in a directory of the app's cache under the SHA-1 of their url, and downloaded on a small
+ * shared pool of background threads that queues at most {@link #MAX_PENDING} downloads. The directory holds at
+ * most maxBytes; the least recently used assets are deleted first. The assets stored by a previous run are indexed
+ * on the download threads too, so creating the cache doesn't touch the disk.
+ */
+class AssetCache {
+    static final String TAG = AssetCache.class.getSimpleName();
+    static final String DIRECTORY = "adzerk_assets";
+    static final String PARTIAL = ".tmp";
+    static final int THREADS = 2;
+    static final int MAX_PENDING = 32;
+    static final int BUFFER_SIZE = 8192;
+    static final int CONNECT_TIMEOUT_MILLIS = 15 * 1000;
+    static final int READ_TIMEOUT_MILLIS = 20 * 1000;
+
+    static Executor executor;
+
+    static synchronized Executor executor() {
+        if (executor == null) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(MAX_PENDING), new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "Adzerk-Assets");
+                            thread.setDaemon(true);
+                            thread.setPriority(Thread.MIN_PRIORITY);
+                            return thread;
+                        }
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    final File directory;
+    final long maxBytes;
+    final Executor downloads;
+
+    // size of the stored assets by key, least recently used first
+    final LinkedHashMap<String, Long> sizes = new LinkedHashMap<>(16, 0.75f, true);
+    final Set<String> pending = new HashSet<>();
+    long bytes;
+
+    AssetCache(File directory, long maxBytes) {
+        this(directory, maxBytes, executor());
+    }
+
+    AssetCache(File directory, long maxBytes, Executor downloads) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.downloads = downloads;
+        Runnable index = new Runnable() {
+            @Override
+            public void run() {
+                index();
+            }
+        };
+        try {
+            downloads.execute(index);
+        } catch (RejectedExecutionException e) {
+            // the shared pool is busy with other caches' downloads
+            index.run();
+        }
+    }
+
+    /**
+     * Downloads the assets of the response's Decisions that are not stored yet
+     */
+    void prefetch(DecisionResponse response) {
+        if (response == null || response.getDecisions() == null) {
+            return;
+        }
+        for (Decision decision : response.getDecisions().values()) {
+            if (decision == null || decision.getContents() == null) {
+                continue;
+            }
+            for (Content content : decision.getContents()) {
+                if (content != null) {
+                    prefetch(content.getImageUrl());
+                }
+            }
+        }
+    }
+
+    /**
+     * Downloads the asset in the background, unless it is stored or being downloaded
+     */
+    void prefetch(final String url) {
+        if (url == null || url.isEmpty()) {
+            return;
+        }
+        final String key = key(url);
+        synchronized (this) {
+            if (sizes.containsKey(key) || !pending.add(key)) {
+                return;
+            }
+        }
+        try {
+            downloads.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        download(url, key);
+                    } finally {
+                        synchronized (AssetCache.this) {
+                            pending.remove(key);
+                        }
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // too many downloads queued: the asset is loaded by the app when it is shown
+            synchronized (this) {
+                pending.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Returns the stored asset, or null if it wasn't downloaded
+     */
+    File get(String url) {
+        if (url == null) {
+            return null;
+        }
+        String key = key(url);
+        synchronized (this) {
+            if (sizes.get(key) == null) {
+                return null;
+            }
+        }
+        File file = new File(directory, key);
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    void download(String url, String key) {
+        File partial = new File(directory, key + PARTIAL);
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                return;
+            }
+            URLConnection connection = new URL(url).openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+            long size = copy(connection, partial);
+            File file = new File(directory, key);
+            if (size < 0 || !partial.renameTo(file)) {
+                return;
+            }
+            stored(key, size);
+        } catch (IOException e) {
+            Log.d(TAG, "Failed to prefetch " + url + ": " + e.getMessage());
+        } finally {
+            partial.delete();
+        }
+    }
+
+    // Returns the size of the asset, or -1 if it is larger than the cache
+    long copy(URLConnection connection, File file) throws IOException {
+        InputStream in = connection.getInputStream();
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long size = 0;
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                size += count;
+                if (size > maxBytes) {
+                    return -1;
+                }
+                out.write(buffer, 0, count);
+            }
+            return size;
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+            in.close();
+        }
+    }
+
+    synchronized void stored(String key, long size) {
+        Long previous = sizes.put(key, size);
+        bytes += size - ((previous != null) ? previous : 0);
+        trim();
+    }
+
+    synchronized long size() {
+        return bytes;
+    }
+
+    // Deletes the least recently used assets until the cache fits in maxBytes
+    void trim() {
+        Iterator<Map.Entry<String, Long>> entries = sizes.entrySet().iterator();
+        while (bytes > maxBytes && entries.hasNext()) {
+            Map.Entry<String, Long> eldest = entries.next();
+            new File(directory, eldest.getKey()).delete();
+            bytes -= eldest.getValue();
+            entries.remove();
+        }
+    }
+
+    // Picks up the assets stored by a previous run, least recently used first. Downloads may have started already
+    synchronized void index() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long left = a.lastModified();
+                long right = b.lastModified();
+                return (left < right) ? -1 : ((left == right) ? 0 : 1);
+            }
+        });
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(PARTIAL)) {
+                if (!pending.contains(name.substring(0, name.length() - PARTIAL.length()))) {
+                    file.delete();
+                }
+            } else if (!sizes.containsKey(name)) {
+                sizes.put(name, file.length());
+                bytes += file.length();
+            }
+        }
+        trim();
+    }
+
+    static String key(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes("UTF-8"));
+            StringBuilder key = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
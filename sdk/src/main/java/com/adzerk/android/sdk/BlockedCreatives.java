@@ -0,0 +1,144 @@
+package com.adzerk.android.sdk;
+
+import com.adzerk.android.sdk.rest.Event;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Creatives the user has rejected, from downvote events and the User's blocked items, sent with every Request as
+ * {@code blockedCreatives} so that the engine doesn't select them again.
+ * <p>
+ * Creative ids are kept in a primitive array in the order they were blocked. At most {@link #MAX_CREATIVES} are
+ * kept; the creative blocked longest ago is dropped first.
+ */
+class BlockedCreatives {
+    static final int MAX_CREATIVES = 256;
+    static final String FILE_NAME = "adzerk_blocked_creatives";
+    static final int VERSION = 1;
+
+    /**
+     * Returns true for {@link Event#ID_DOWNVOTE} and its reasons ({@code ID_DOWNVOTE_*})
+     */
+    static boolean isDownvote(int eventId) {
+        return eventId >= Event.ID_DOWNVOTE && eventId <= Event.ID_DOWNVOTE_REPETITIVE;
+    }
+
+    // oldest first
+    final int[] creatives = new int[MAX_CREATIVES];
+    int count;
+    File file;
+
+    synchronized void add(int creativeId) {
+        if (append(creativeId)) {
+            save();
+        }
+    }
+
+    synchronized void addAll(List<Integer> creativeIds) {
+        boolean added = false;
+        for (Integer creativeId : creativeIds) {
+            if (creativeId != null) {
+                added |= append(creativeId);
+            }
+        }
+        if (added) {
+            save();
+        }
+    }
+
+    synchronized boolean contains(int creativeId) {
+        return indexOf(creativeId) >= 0;
+    }
+
+    synchronized boolean isEmpty() {
+        return count == 0;
+    }
+
+    synchronized void write(JsonWriter out, Set<Integer> skip) throws IOException {
+        for (int i = 0; i < count; i++) {
+            if (skip == null || !skip.contains(creatives[i])) {
+                out.value(creatives[i]);
+            }
+        }
+    }
+
+    boolean append(int creativeId) {
+        if (indexOf(creativeId) >= 0) {
+            return false;
+        }
+        if (count == MAX_CREATIVES) {
+            System.arraycopy(creatives, 1, creatives, 0, --count);
+        }
+        creatives[count++] = creativeId;
+        return true;
+    }
+
+    int indexOf(int creativeId) {
+        for (int i = 0; i < count; i++) {
+            if (creatives[i] == creativeId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Loads the creatives stored in the directory and saves further changes there
+     */
+    synchronized void load(File directory) {
+        file = new File(directory, FILE_NAME);
+        final int[] loaded = new int[MAX_CREATIVES];
+        final int[] loadedCount = new int[1];
+        boolean read = Storage.read(file, VERSION, new Storage.Reader() {
+            @Override
+            public void read(DataInputStream in) throws IOException {
+                int stored = Math.min(in.readInt(), MAX_CREATIVES);
+                for (int i = 0; i < stored; i++) {
+                    loaded[i] = in.readInt();
+                }
+                loadedCount[0] = stored;
+            }
+        });
+        if (!read) {
+            if (count > 0) {
+                save();
+            }
+            return;
+        }
+
+        // creatives blocked before the store was loaded are merged in
+        int[] current = new int[count];
+        System.arraycopy(creatives, 0, current, 0, count);
+        System.arraycopy(loaded, 0, creatives, 0, loadedCount[0]);
+        count = loadedCount[0];
+        for (int creativeId : current) {
+            append(creativeId);
+        }
+        if (current.length > 0) {
+            save();
+        }
+    }
+
+    void save() {
+        if (file == null) {
+            return;
+        }
+        final int[] snapshot = new int[count];
+        System.arraycopy(creatives, 0, snapshot, 0, count);
+        Storage.writeLater(file, VERSION, new Storage.Writer() {
+            @Override
+            public void write(DataOutputStream out) throws IOException {
+                out.writeInt(snapshot.length);
+                for (int creativeId : snapshot) {
+                    out.writeInt(creativeId);
+                }
+            }
+        });
+    }
+}
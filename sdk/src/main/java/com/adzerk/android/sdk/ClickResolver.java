@@ -0,0 +1,166 @@
+package com.adzerk.android.sdk;
+
+import android.util.Log;
+
+import com.adzerk.android.sdk.AdzerkSdk.ClickListener;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follows the redirects of ad click urls in the background, so that the app can open an ad's landing page directly
+ * instead of sending the browser through the click tracking redirects first.
+ * <p>
+ * Redirects are followed while they stay on the click url's server; the first redirect to another server (the
+ * landing page, or the advertiser's own tracking) is handed to the app without being requested. Clicks run on their
+ * own threads, so a tap doesn't wait behind queued pixels.
+ * <p>
+ * Requesting a click url is what records the click, so it is only requested once the user taps the ad. Before that,
+ * {@link #prepare(String)} opens a connection to the click url's server (a HEAD request for its root, which records
+ * nothing), so that the click itself doesn't wait for the DNS lookup and TLS handshake. If the click url can't be
+ * requested, it is handed to the app as is and the browser records the click. The SDK can't tell whether a request
+ * that failed after reaching the server (a read timeout, or an error instead of a redirect) was recorded, so it
+ * hands that url to the app as well, and the click may be counted twice.
+ */
+class ClickResolver {
+    static final String TAG = ClickResolver.class.getSimpleName();
+    static final int MAX_REDIRECTS = 5;
+    static final int THREADS = 2;
+    static final int TIMEOUT_MILLIS = 5000;
+
+    static Executor executor;
+
+    static synchronized Executor executor() {
+        if (executor == null) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "Adzerk-Click");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    final AdzerkMetrics metrics;
+
+    ClickResolver(AdzerkMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    void prepare(final String clickUrl) {
+        executor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    URL url = new URL(clickUrl);
+                    if (isHttp(url)) {
+                        HttpURLConnection connection = open(new URL(url.getProtocol(), url.getHost(), url.getPort(),
+                                "/"));
+                        connection.setRequestMethod("HEAD");
+                        connection.getResponseCode();
+                        close(connection);
+                    }
+                } catch (IOException e) {
+                    // the click opens its own connection
+                    Log.d(TAG, "Failed to prepare click url " + clickUrl + ": " + e);
+                }
+            }
+        });
+    }
+
+    void click(final String clickUrl, final Executor callbackExecutor, final ClickListener listener) {
+        executor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final String url = resolve(clickUrl);
+                callbackExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.open(url);
+                    }
+                });
+            }
+        });
+    }
+
+    // Returns the first url the click url redirects to off its server, or the last url that couldn't be requested
+    // or wasn't redirected; the latter may already have been recorded, and is recorded again by the browser
+    String resolve(String clickUrl) {
+        long start = System.nanoTime();
+        String url = clickUrl;
+        try {
+            String host = new URL(clickUrl).getHost();
+            for (int i = 0; i <= MAX_REDIRECTS; i++) {
+                URL current = new URL(url);
+                if (!isHttp(current) || !current.getHost().equalsIgnoreCase(host)) {
+                    break;
+                }
+                HttpURLConnection connection = open(current);
+                int code = connection.getResponseCode();
+                String location = connection.getHeaderField("Location");
+                if (code < 300 || code >= 400 || location == null) {
+                    // not a redirect; its body is left to the browser
+                    connection.disconnect();
+                    break;
+                }
+                close(connection);
+                try {
+                    url = new URL(current, location).toString();
+                } catch (MalformedURLException e) {
+                    // ie. a link into an app
+                    url = location;
+                    break;
+                }
+            }
+            metrics.record(AdzerkMetrics.CLICK, start, true);
+        } catch (IOException e) {
+            metrics.record(AdzerkMetrics.CLICK, start, false);
+            Log.e(TAG, "Failed to follow click url " + url, e);
+        }
+        return url;
+    }
+
+    static boolean isHttp(URL url) {
+        return url.getProtocol().equals("http") || url.getProtocol().equals("https");
+    }
+
+    static HttpURLConnection open(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setInstanceFollowRedirects(false);
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        return connection;
+    }
+
+    // Reads the rest of a short response, so that its connection is kept for the next request to the server
+    static void close(HttpURLConnection connection) {
+        try {
+            InputStream in = (connection.getResponseCode() < 400)
+                    ? connection.getInputStream()
+                    : connection.getErrorStream();
+            if (in != null) {
+                byte[] buffer = new byte[1024];
+                while (in.read(buffer) != -1) {
+                    // drain
+                }
+                in.close();
+            }
+        } catch (IOException e) {
+            connection.disconnect();
+        }
+    }
+}
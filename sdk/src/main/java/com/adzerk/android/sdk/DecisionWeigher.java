@@ -0,0 +1,110 @@
+package com.adzerk.android.sdk;
+
+import com.adzerk.android.sdk.rest.Content;
+import com.adzerk.android.sdk.rest.Decision;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimates the bytes a {@link Decision} retains on the heap, so that caches of Decisions can be bounded by
+ * memory instead of by count: a Decision of an image ad is a few hundred bytes, one with an HTML body and a
+ * large customData can be hundreds of kilobytes.
+ * <p>
+ * The estimate assumes a 32-bit VM (8 byte object headers, 4 byte references) and 2 bytes per char. It doesn't
+ * need to be exact, only proportional.
+ */
+class DecisionWeigher {
+    static final int OBJECT = 16;
+    static final int REFERENCE = 4;
+    static final int LIST = OBJECT + 16;
+    static final int MAP_ENTRY = OBJECT + 4 * REFERENCE;
+    static final int MAP = OBJECT + 32;
+
+    static int weigh(Decision decision) {
+        long weight = OBJECT + 4 * 4 + 5 * REFERENCE
+                + weigh(decision.getClickUrl())
+                + weigh(decision.getImpressionUrl());
+        List<Content> contents = decision.getContents();
+        if (contents != null) {
+            weight += LIST + contents.size() * REFERENCE;
+            for (Content content : contents) {
+                weight += weigh(content);
+            }
+        }
+        // events are kept as an array of ids and an array of urls
+        int events = decision.getEventCount();
+        if (events > 0) {
+            weight += 2 * OBJECT + events * (4 + REFERENCE);
+            for (int i = 0; i < events; i++) {
+                weight += weigh(decision.getEventUrlAt(i));
+            }
+        }
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    static long weigh(Content content) {
+        if (content == null) {
+            return 0;
+        }
+        return OBJECT + 5 * REFERENCE
+                + weigh(content.getType())
+                + weigh(content.getTemplate())
+                + weigh(content.getCustomTemplate())
+                + weigh(content.getBody())
+                + weighValue(content.getCreativeData())
+                + weigh(content.getCreativeMetadataAsJson());
+    }
+
+    static long weigh(String value) {
+        return (value != null) ? OBJECT + 16 + 2L * value.length() : 0;
+    }
+
+    // Values of maps deserialized by Gson: strings, doubles, booleans, maps and lists
+    static long weighValue(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof String) {
+            return weigh((String) value);
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            long weight = MAP;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                weight += MAP_ENTRY + weighValue(entry.getKey()) + weighValue(entry.getValue());
+            }
+            return weight;
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            long weight = LIST + list.size() * REFERENCE;
+            for (Object item : list) {
+                weight += weighValue(item);
+            }
+            return weight;
+        }
+        return OBJECT + 8;
+    }
+
+    static long weigh(JsonElement json) {
+        if (json == null || json.isJsonNull()) {
+            return 0;
+        } else if (json.isJsonObject()) {
+            long weight = MAP;
+            for (Map.Entry<String, JsonElement> entry : ((JsonObject) json).entrySet()) {
+                weight += MAP_ENTRY + weigh(entry.getKey()) + weigh(entry.getValue());
+            }
+            return weight;
+        } else if (json.isJsonArray()) {
+            JsonArray array = (JsonArray) json;
+            long weight = LIST + array.size() * REFERENCE;
+            for (JsonElement item : array) {
+                weight += weigh(item);
+            }
+            return weight;
+        }
+        // primitives keep the string of a number as it was parsed
+        return OBJECT + REFERENCE + weigh(json.getAsString());
+    }
+}
@@ -0,0 +1,242 @@
+package com.adzerk.android.sdk;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.adzerk.android.sdk.AdzerkSdk.AdzerkError;
+import com.adzerk.android.sdk.AdzerkSdk.DecisionListener;
+import com.adzerk.android.sdk.rest.Decision;
+import com.adzerk.android.sdk.rest.DecisionResponse;
+import com.adzerk.android.sdk.rest.Placement;
+import com.adzerk.android.sdk.rest.Request;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Requests the ads of a scrolling feed ahead of time: given the current row, scroll direction and velocity, it
+ * finds the ad slots that will appear within the next rows and requests all of them in one Request, so that their
+ * Decisions are ready before the rows are bound.
+ * <p>
+ * <pre>
+ * {@code
+ * FeedAdPlanner planner = new FeedAdPlanner(sdk, new FeedAdPlanner.SlotLayout() {
+ *     public Placement placementAt(int position) {
+ *         return (position + 1) % 5 == 0 ? new Placement("feed", networkId, siteId, 5) : null;
+ *     }
+ * }, 10, TimeUnit.MINUTES.toMillis(5))
+ *     .setRequest(new Request.Builder().addPlacement(new Placement("feed", networkId, siteId, 5))
+ *         .setUser(new User(userKey)).build());
+ *
+ * // from a RecyclerView.OnScrollListener
+ * planner.onScroll(layoutManager.findFirstVisibleItemPosition(), dy > 0 ? 1 : -1, rowsPerSecond);
+ *
+ * // when binding an ad row
+ * Decision decision = planner.take(position);
+ * }
+ * </pre>
+ */
+public class FeedAdPlanner {
+    static final String TAG = FeedAdPlanner.class.getSimpleName();
+
+    // separates the Placement's name from the row of the slot in a Request
+    static final char SEPARATOR = '@';
+
+    // rows scrolled in this time are added to the lookahead, up to MAX_LOOKAHEAD_ROWS
+    static final float LEAD_SECONDS = 1f;
+    static final int MAX_LOOKAHEAD_ROWS = 100;
+
+    /**
+     * Describes where a feed shows ads.
+     */
+    public interface SlotLayout {
+
+        /**
+         * Returns the Placement to request for the ad slot at the row, or null if the row isn't an ad slot. The
+         * Placement is requested under a name unique to the row.
+         *
+         * @param position  row of the feed
+         * @return the Placement of the slot, or null
+         */
+        @Nullable
+        Placement placementAt(int position);
+    }
+
+    static class Ready {
+        final Decision decision;
+        final long fetchedAt;
+
+        Ready(Decision decision, long fetchedAt) {
+            this.decision = decision;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    final AdzerkSdk sdk;
+    final SlotLayout layout;
+    final int lookaheadRows;
+    final long maxAgeMillis;
+
+    // Decisions by row
+    final Map<Integer, Ready> ready = new HashMap<>();
+    final Set<Integer> pending = new HashSet<>();
+
+    // rows requested without a Decision, not requested again until the feed scrolls away from them
+    final Set<Integer> unfilled = new HashSet<>();
+
+    // parameters of slot Requests other than their Placements
+    Request template;
+
+    /**
+     * @param sdk           the SDK used to request Decisions
+     * @param layout        the rows that are ad slots
+     * @param lookaheadRows rows ahead of the current one whose slots are requested when scrolling slowly
+     * @param maxAgeMillis  time a Decision can be taken after it was fetched
+     */
+    public FeedAdPlanner(@NonNull AdzerkSdk sdk, @NonNull SlotLayout layout, int lookaheadRows, long maxAgeMillis) {
+        this.sdk = sdk;
+        this.layout = layout;
+        this.lookaheadRows = lookaheadRows;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Sets the Request whose User, keywords and other parameters are sent with the Request of every slot, so that
+     * feed ads are targeted and frequency capped like requested ones. Its Placements are ignored.
+     *
+     * @param template  the Request to copy slot Requests from
+     * @return the planner
+     */
+    public synchronized FeedAdPlanner setRequest(@NonNull Request template) {
+        this.template = template;
+        return this;
+    }
+
+    /**
+     * Requests, in one Request, the ad slots that will appear next and have no Decision yet.
+     *
+     * @param position      row at the edge of the screen the feed scrolls from (ie. the first visible row)
+     * @param direction     positive when scrolling towards higher rows, negative towards lower rows
+     * @param velocity      scroll speed in rows per second
+     */
+    public void onScroll(int position, int direction, float velocity) {
+        Request request = plan(position, direction, velocity);
+        if (request != null) {
+            send(request);
+        }
+    }
+
+    /**
+     * Takes the Decision fetched for the ad slot at the row.
+     *
+     * @param position  row of an ad slot
+     * @return the Decision, or null if it isn't ready
+     */
+    @Nullable
+    public Decision take(int position) {
+        Ready taken;
+        synchronized (this) {
+            taken = ready.remove(position);
+        }
+        if (taken == null || SystemClock.elapsedRealtime() - taken.fetchedAt > maxAgeMillis) {
+            return null;
+        }
+        sdk.handedOut(taken.decision);
+        return taken.decision;
+    }
+
+    /**
+     * Returns true if a Decision is ready for the ad slot at the row
+     */
+    public synchronized boolean isReady(int position) {
+        Ready entry = ready.get(position);
+        return entry != null && SystemClock.elapsedRealtime() - entry.fetchedAt <= maxAgeMillis;
+    }
+
+    int horizon(float velocity) {
+        int lead = (int) Math.ceil(Math.abs(velocity) * LEAD_SECONDS);
+        return Math.min(lookaheadRows + lead, MAX_LOOKAHEAD_ROWS);
+    }
+
+    synchronized Request plan(int position, int direction, float velocity) {
+        int horizon = horizon(velocity);
+        int first = (direction >= 0) ? position : Math.max(position - horizon, 0);
+        int last = (direction >= 0) ? position + horizon : position;
+        evict(first - horizon, last + horizon);
+
+        List<Placement> placements = new ArrayList<>();
+        for (int row = first; row <= last; row++) {
+            if (ready.containsKey(row) || pending.contains(row) || unfilled.contains(row)) {
+                continue;
+            }
+            Placement placement = layout.placementAt(row);
+            if (placement != null) {
+                placements.add(placement.withDivName(placement.getDivName() + SEPARATOR + row));
+                pending.add(row);
+            }
+        }
+        if (placements.isEmpty()) {
+            return null;
+        }
+        return (template != null) ? template.withPlacements(placements) : new Request.Builder(placements).build();
+    }
+
+    // drops Decisions that expired, or of slots the feed scrolled far away from
+    void evict(int first, int last) {
+        Iterator<Integer> rows = unfilled.iterator();
+        while (rows.hasNext()) {
+            int row = rows.next();
+            if (row < first || row > last) {
+                rows.remove();
+            }
+        }
+
+        long now = SystemClock.elapsedRealtime();
+        Iterator<Map.Entry<Integer, Ready>> entries = ready.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Integer, Ready> entry = entries.next();
+            int row = entry.getKey();
+            if (row < first || row > last || now - entry.getValue().fetchedAt > maxAgeMillis) {
+                entries.remove();
+            }
+        }
+    }
+
+    void send(final Request request) {
+        sdk.requestPlacement(request, new DecisionListener() {
+            @Override
+            public void success(DecisionResponse response) {
+                planned(request, response);
+            }
+
+            @Override
+            public void error(AdzerkError error) {
+                Log.d(TAG, "Failed to request slots: " + error.getReason());
+                planned(request, null);
+            }
+        });
+    }
+
+    synchronized void planned(Request request, @Nullable DecisionResponse response) {
+        long now = SystemClock.elapsedRealtime();
+        Map<String, Decision> decisions = (response != null) ? response.getDecisions() : null;
+        for (Placement placement : request.getPlacements()) {
+            String name = placement.getDivName();
+            int row = Integer.parseInt(name.substring(name.lastIndexOf(SEPARATOR) + 1));
+            pending.remove(row);
+            Decision decision = (decisions != null) ? decisions.get(name) : null;
+            if (decision != null) {
+                ready.put(row, new Ready(decision, now));
+            } else {
+                unfilled.add(row);
+            }
+        }
+    }
+}
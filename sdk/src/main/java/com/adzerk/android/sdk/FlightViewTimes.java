@@ -0,0 +1,302 @@
+package com.adzerk.android.sdk;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the user viewed an ad in each flight, recorded from impressions and sent with every Request as
+ * {@code flightViewTimes} so that the engine can apply frequency caps.
+ * <p>
+ * Each flight keeps a ring buffer of its most recent {@link #MAX_VIEWS} view times (UNIX epoch seconds) in a
+ * primitive array, and is written straight to the Request's JSON without boxing. At most {@link #MAX_FLIGHTS}
+ * flights are kept; the flight with the oldest last view is dropped first. Views older than
+ * {@link #MAX_AGE_SECONDS}, longer than frequency caps look back, are dropped, so they are neither sent nor saved.
+ * <p>
+ * Views are saved on the storage thread. A save is queued by the first view recorded after the previous one was
+ * written, and writes all the views recorded until it runs, so a burst of impressions is written once.
+ */
+class FlightViewTimes {
+    static final int MAX_FLIGHTS = 64;
+    static final int MAX_VIEWS = 16;
+    static final long MAX_AGE_SECONDS = TimeUnit.DAYS.toSeconds(30);
+    static final String FILE_NAME = "adzerk_flight_views";
+    static final int VERSION = 1;
+
+    static class Flight {
+        final int flightId;
+        final long[] times = new long[MAX_VIEWS];
+        int start;
+        int count;
+
+        Flight(int flightId) {
+            this.flightId = flightId;
+        }
+
+        void add(long time) {
+            if (count < MAX_VIEWS) {
+                times[(start + count++) % MAX_VIEWS] = time;
+            } else {
+                times[start] = time;
+                start = (start + 1) % MAX_VIEWS;
+            }
+        }
+
+        long time(int i) {
+            return times[(start + i) % MAX_VIEWS];
+        }
+
+        long last() {
+            return (count > 0) ? time(count - 1) : Long.MIN_VALUE;
+        }
+
+        // Drops the views before the time; views are in the order they were recorded
+        void expire(long since) {
+            while (count > 0 && times[start] < since) {
+                start = (start + 1) % MAX_VIEWS;
+                count--;
+            }
+        }
+    }
+
+    // sorted by flight id
+    Flight[] flights = new Flight[0];
+    File file;
+
+    // a write is queued on the storage thread
+    boolean saving;
+
+    synchronized void record(int flightId, long time) {
+        add(flightId, time);
+        expire();
+        save();
+    }
+
+    void add(int flightId, long time) {
+        int index = indexOf(flightId);
+        if (index < 0) {
+            if (flights.length == MAX_FLIGHTS) {
+                remove(oldest());
+                index = indexOf(flightId);
+            }
+            index = -index - 1;
+            Flight[] added = new Flight[flights.length + 1];
+            System.arraycopy(flights, 0, added, 0, index);
+            added[index] = new Flight(flightId);
+            System.arraycopy(flights, index, added, index + 1, flights.length - index);
+            flights = added;
+        }
+        flights[index].add(time);
+    }
+
+    /**
+     * Returns the recorded view times of the flight, oldest first
+     */
+    synchronized long[] get(int flightId) {
+        int index = indexOf(flightId);
+        if (index < 0) {
+            return new long[0];
+        }
+        Flight flight = flights[index];
+        long[] times = new long[flight.count];
+        for (int i = 0; i < flight.count; i++) {
+            times[i] = flight.time(i);
+        }
+        return times;
+    }
+
+    /**
+     * Returns the number of recorded views of the flight at or after the time
+     */
+    synchronized int count(int flightId, long since) {
+        int index = indexOf(flightId);
+        if (index < 0) {
+            return 0;
+        }
+        Flight flight = flights[index];
+        int count = 0;
+        for (int i = flight.count - 1; i >= 0 && flight.time(i) >= since; i--) {
+            count++;
+        }
+        return count;
+    }
+
+    synchronized boolean isEmpty() {
+        expire();
+        return flights.length == 0;
+    }
+
+    synchronized void write(JsonWriter out, Set<Integer> skip) throws IOException {
+        expire();
+        for (Flight flight : flights) {
+            if (skip != null && skip.contains(flight.flightId)) {
+                continue;
+            }
+            out.name(Integer.toString(flight.flightId)).beginArray();
+            for (int i = 0; i < flight.count; i++) {
+                out.value(flight.time(i));
+            }
+            out.endArray();
+        }
+    }
+
+    int indexOf(int flightId) {
+        int low = 0;
+        int high = flights.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int id = flights[mid].flightId;
+            if (id < flightId) {
+                low = mid + 1;
+            } else if (id > flightId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    // Drops the views older than MAX_AGE_SECONDS, and the flights left without views
+    void expire() {
+        long since = now() - MAX_AGE_SECONDS;
+        int kept = 0;
+        for (Flight flight : flights) {
+            flight.expire(since);
+            if (flight.count > 0) {
+                kept++;
+            }
+        }
+        if (kept < flights.length) {
+            Flight[] left = new Flight[kept];
+            int i = 0;
+            for (Flight flight : flights) {
+                if (flight.count > 0) {
+                    left[i++] = flight;
+                }
+            }
+            flights = left;
+        }
+    }
+
+    // UNIX epoch seconds
+    long now() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    int oldest() {
+        int oldest = 0;
+        for (int i = 1; i < flights.length; i++) {
+            if (flights[i].last() < flights[oldest].last()) {
+                oldest = i;
+            }
+        }
+        return oldest;
+    }
+
+    void remove(int index) {
+        Flight[] removed = new Flight[flights.length - 1];
+        System.arraycopy(flights, 0, removed, 0, index);
+        System.arraycopy(flights, index + 1, removed, index, removed.length - index);
+        flights = removed;
+    }
+
+    /**
+     * Loads the view times stored in the directory and saves further views there
+     */
+    synchronized void load(File directory) {
+        file = new File(directory, FILE_NAME);
+        final Flight[][] loaded = new Flight[1][];
+        boolean read = Storage.read(file, VERSION, new Storage.Reader() {
+            @Override
+            public void read(DataInputStream in) throws IOException {
+                Flight[] stored = new Flight[Math.min(in.readInt(), MAX_FLIGHTS)];
+                for (int i = 0; i < stored.length; i++) {
+                    stored[i] = new Flight(in.readInt());
+                    int count = Math.min(in.readInt(), MAX_VIEWS);
+                    for (int j = 0; j < count; j++) {
+                        stored[i].add(in.readLong());
+                    }
+                }
+                loaded[0] = stored;
+            }
+        });
+        if (!read) {
+            if (flights.length > 0) {
+                save();
+            }
+            return;
+        }
+
+        // views recorded before the store was loaded are merged in
+        Flight[] current = flights;
+        flights = loaded[0];
+        Arrays.sort(flights, FLIGHT_ORDER);
+        for (Flight flight : current) {
+            for (int i = 0; i < flight.count; i++) {
+                add(flight.flightId, flight.time(i));
+            }
+        }
+        int stored = flights.length;
+        expire();
+        if (current.length > 0 || flights.length != stored) {
+            save();
+        }
+    }
+
+    void save() {
+        if (file == null || saving) {
+            return;
+        }
+        saving = true;
+        final File file = this.file;
+        Storage.executor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final Flight[] snapshot = snapshot();
+                Storage.write(file, VERSION, new Storage.Writer() {
+                    @Override
+                    public void write(DataOutputStream out) throws IOException {
+                        out.writeInt(snapshot.length);
+                        for (Flight flight : snapshot) {
+                            out.writeInt(flight.flightId);
+                            out.writeInt(flight.count);
+                            for (int i = 0; i < flight.count; i++) {
+                                out.writeLong(flight.time(i));
+                            }
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    // Copies the views to write, and lets the next view queue another save
+    synchronized Flight[] snapshot() {
+        saving = false;
+        expire();
+        Flight[] snapshot = new Flight[flights.length];
+        for (int i = 0; i < flights.length; i++) {
+            Flight copy = new Flight(flights[i].flightId);
+            for (int j = 0; j < flights[i].count; j++) {
+                copy.add(flights[i].time(j));
+            }
+            snapshot[i] = copy;
+        }
+        return snapshot;
+    }
+
+    static final Comparator<Flight> FLIGHT_ORDER = new Comparator<Flight>() {
+        @Override
+        public int compare(Flight a, Flight b) {
+            return a.flightId < b.flightId ? -1 : (a.flightId == b.flightId ? 0 : 1);
+        }
+    };
+}
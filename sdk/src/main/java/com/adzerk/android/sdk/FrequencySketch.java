@@ -0,0 +1,66 @@
+package com.adzerk.android.sdk;
+
+/**
+ * Approximate recent frequency of keys, used to decide whether a new cache entry is worth evicting an older one
+ * (as in TinyLFU admission).
+ * <p>
+ * A count-min sketch of {@link #DEPTH} rows of small saturating counters: a key's frequency is its lowest counter,
+ * which may overestimate but never underestimates. Once {@link #SAMPLE_FACTOR} times as many keys as counters per
+ * row were recorded, all counters are halved so that old popularity fades.
+ */
+class FrequencySketch {
+    static final int DEPTH = 4;
+    static final int MAX_COUNT = 15;
+    static final int SAMPLE_FACTOR = 10;
+
+    static final int[] SEEDS = { 0x97cb3127, 0xb3f1ea23, 0x85ebca6b, 0xc2b2ae35 };
+
+    final byte[][] counters;
+    final int mask;
+    final int sampleSize;
+    int additions;
+
+    /**
+     * @param width counters per row, rounded up to a power of two
+     */
+    FrequencySketch(int width) {
+        int size = Integer.highestOneBit(Math.max(width, 16) - 1) << 1;
+        counters = new byte[DEPTH][size];
+        mask = size - 1;
+        sampleSize = SAMPLE_FACTOR * size;
+    }
+
+    void increment(int key) {
+        for (int row = 0; row < DEPTH; row++) {
+            int index = index(key, row);
+            if (counters[row][index] < MAX_COUNT) {
+                counters[row][index]++;
+            }
+        }
+        if (++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    int frequency(int key) {
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            frequency = Math.min(frequency, counters[row][index(key, row)]);
+        }
+        return frequency;
+    }
+
+    void reset() {
+        for (byte[] row : counters) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] >>= 1;
+            }
+        }
+        additions /= 2;
+    }
+
+    int index(int key, int row) {
+        int hash = (key ^ (key >>> 16)) * SEEDS[row];
+        return (hash ^ (hash >>> 15)) & mask;
+    }
+}
@@ -0,0 +1,267 @@
+package com.adzerk.android.sdk;
+
+import com.adzerk.android.sdk.NetworkEventListener.Phase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+import retrofit.client.Client;
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedByteArray;
+import retrofit.mime.TypedInput;
+import retrofit.mime.TypedOutput;
+
+/**
+ * {@link HttpURLConnection} transport for the Adzerk endpoints that reports the DNS, connect, TLS, request write,
+ * first byte and response body phases of the current call to {@link NetworkEvents}.
+ * <p>
+ * Behaves like Retrofit's {@code UrlConnectionClient}, except that the response body is read before returning so
+ * the read can be timed; Retrofit reads non-streaming bodies into memory anyway. When constructed with a delegate
+ * {@link Client} (ie. a test client), only the first byte and response body phases are reported.
+ */
+class InstrumentedClient implements Client {
+    static final int CONNECT_TIMEOUT_MILLIS = 15 * 1000;
+    static final int READ_TIMEOUT_MILLIS = 20 * 1000;
+    static final int CHUNK_SIZE = 4096;
+
+    final Client delegate;
+    final NetworkEvents events;
+
+    // kept so that pooled connections keyed by socket factory can be reused. Not shared between clients: it
+    // reports to this client's events
+    volatile TimingSocketFactory socketFactory;
+
+    InstrumentedClient(Client delegate, NetworkEvents events) {
+        this.delegate = delegate;
+        this.events = events;
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        NetworkEvents.Call call = events.current();
+        if (delegate != null) {
+            long start = System.nanoTime();
+            Response response = delegate.execute(request);
+            NetworkEvents.phase(call, Phase.FIRST_BYTE, start, System.nanoTime());
+            return readBody(call, response);
+        }
+
+        URL url = new URL(request.getUrl());
+        HttpURLConnection connection = openConnection(call, url);
+        try {
+            long requestSent = prepareRequest(call, connection, request);
+
+            int status = connection.getResponseCode();
+            NetworkEvents.phase(call, Phase.FIRST_BYTE, requestSent, System.nanoTime());
+
+            return readResponse(call, connection, status);
+        } catch (IOException e) {
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    HttpURLConnection openConnection(NetworkEvents.Call call, URL url) throws IOException {
+        if (call != null) {
+            long start = System.nanoTime();
+            InetAddress.getAllByName(url.getHost());
+            NetworkEvents.phase(call, Phase.DNS, start, System.nanoTime());
+        }
+
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+
+        if (call != null && connection instanceof HttpsURLConnection) {
+            HttpsURLConnection https = (HttpsURLConnection) connection;
+            https.setSSLSocketFactory(timingSocketFactory(https.getSSLSocketFactory()));
+        }
+        return connection;
+    }
+
+    /**
+     * Connects and writes the request.
+     *
+     * @return time the request was completely sent
+     */
+    long prepareRequest(NetworkEvents.Call call, HttpURLConnection connection, Request request) throws IOException {
+        connection.setRequestMethod(request.getMethod());
+        connection.setDoInput(true);
+        for (Header header : request.getHeaders()) {
+            connection.addRequestProperty(header.getName(), header.getValue());
+        }
+
+        TypedOutput body = request.getBody();
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.addRequestProperty("Content-Type", body.mimeType());
+            long length = body.length();
+            if (length != -1) {
+                connection.setFixedLengthStreamingMode((int) length);
+                connection.addRequestProperty("Content-Length", String.valueOf(length));
+            } else {
+                connection.setChunkedStreamingMode(CHUNK_SIZE);
+            }
+        }
+
+        long connectStart = System.nanoTime();
+        if (call != null) {
+            call.tlsStart = 0;
+        }
+        connection.connect();
+        long connected = System.nanoTime();
+        if (call != null && call.tlsStart != 0) {
+            NetworkEvents.phase(call, Phase.CONNECT, connectStart, call.tlsStart);
+            NetworkEvents.phase(call, Phase.TLS, call.tlsStart, connected);
+        } else {
+            NetworkEvents.phase(call, Phase.CONNECT, connectStart, connected);
+        }
+
+        if (body == null) {
+            return connected;
+        }
+
+        OutputStream out = connection.getOutputStream();
+        body.writeTo(out);
+        out.close();
+        long written = System.nanoTime();
+        NetworkEvents.phase(call, Phase.REQUEST_WRITE, connected, written);
+        return written;
+    }
+
+    Response readResponse(NetworkEvents.Call call, HttpURLConnection connection, int status) throws IOException {
+        String reason = connection.getResponseMessage();
+        if (reason == null) {
+            reason = "";
+        }
+
+        List<Header> headers = new ArrayList<>();
+        for (Map.Entry<String, List<String>> field : connection.getHeaderFields().entrySet()) {
+            String name = field.getKey();
+            for (String value : field.getValue()) {
+                headers.add(new Header(name, value));
+            }
+        }
+
+        InputStream stream = (status >= 400) ? connection.getErrorStream() : connection.getInputStream();
+        TypedInput body = null;
+        if (stream != null) {
+            long start = System.nanoTime();
+            body = new TypedByteArray(connection.getContentType(), readFully(stream));
+            NetworkEvents.phase(call, Phase.RESPONSE_BODY, start, System.nanoTime());
+        }
+
+        return new Response(connection.getURL().toString(), status, reason, headers, body);
+    }
+
+    // Reads a delegate's response body into memory so that the read is timed here rather than in Retrofit
+    Response readBody(NetworkEvents.Call call, Response response) throws IOException {
+        TypedInput body = response.getBody();
+        if (call == null || body == null || body instanceof TypedByteArray) {
+            return response;
+        }
+
+        long start = System.nanoTime();
+        InputStream stream = body.in();
+        byte[] bytes = (stream != null) ? readFully(stream) : new byte[0];
+        NetworkEvents.phase(call, Phase.RESPONSE_BODY, start, System.nanoTime());
+
+        return new Response(response.getUrl(), response.getStatus(), response.getReason(), response.getHeaders(),
+                new TypedByteArray(body.mimeType(), bytes));
+    }
+
+    static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[CHUNK_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    TimingSocketFactory timingSocketFactory(SSLSocketFactory delegate) {
+        TimingSocketFactory factory = socketFactory;
+        if (factory == null || factory.delegate != delegate) {
+            factory = new TimingSocketFactory(delegate, events);
+            socketFactory = factory;
+        }
+        return factory;
+    }
+
+    /**
+     * Marks the end of the TCP connect and the start of the TLS handshake: HttpsURLConnection layers TLS over a
+     * connected socket by calling {@link #createSocket(Socket, String, int, boolean)} and then handshakes.
+     */
+    static class TimingSocketFactory extends SSLSocketFactory {
+        final SSLSocketFactory delegate;
+        final NetworkEvents events;
+
+        TimingSocketFactory(SSLSocketFactory delegate, NetworkEvents events) {
+            this.delegate = delegate;
+            this.events = events;
+        }
+
+        @Override
+        public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+            NetworkEvents.Call call = events.current();
+            if (call != null) {
+                call.tlsStart = System.nanoTime();
+            }
+            return delegate.createSocket(socket, host, port, autoClose);
+        }
+
+        @Override
+        public String[] getDefaultCipherSuites() {
+            return delegate.getDefaultCipherSuites();
+        }
+
+        @Override
+        public String[] getSupportedCipherSuites() {
+            return delegate.getSupportedCipherSuites();
+        }
+
+        @Override
+        public Socket createSocket() throws IOException {
+            return delegate.createSocket();
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return delegate.createSocket(host, port);
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            return delegate.createSocket(host, port, localHost, localPort);
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            return delegate.createSocket(host, port);
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+            return delegate.createSocket(address, port, localAddress, localPort);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.adzerk.android.sdk;
+
+import com.adzerk.android.sdk.rest.DecisionResponse;
+import com.adzerk.android.sdk.rest.User;
+
+import java.lang.reflect.Type;
+
+import retrofit.converter.ConversionException;
+import retrofit.converter.Converter;
+import retrofit.mime.TypedInput;
+import retrofit.mime.TypedOutput;
+
+/**
+ * Wraps a {@link Converter} and records the time spent deserializing {@link DecisionResponse} and {@link User}
+ * bodies in {@link AdzerkMetrics}. Every deserialization is also reported to {@link NetworkEvents} as the
+ * {@link NetworkEventListener.Phase#JSON_DECODE} phase of the current call.
+ */
+class InstrumentedConverter implements Converter {
+
+    final Converter delegate;
+    final AdzerkMetrics metrics;
+    final NetworkEvents events;
+
+    InstrumentedConverter(Converter delegate, AdzerkMetrics metrics, NetworkEvents events) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.events = events;
+    }
+
+    @Override
+    public Object fromBody(TypedInput body, Type type) throws ConversionException {
+        String name = timerName(type);
+        NetworkEvents.Call call = events.current();
+        if (name == null && call == null) {
+            return delegate.fromBody(body, type);
+        }
+
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            Object result = delegate.fromBody(body, type);
+            success = true;
+            return result;
+        } finally {
+            if (name != null) {
+                metrics.record(name, start, success);
+            }
+            NetworkEvents.phase(call, NetworkEventListener.Phase.JSON_DECODE, start, System.nanoTime());
+        }
+    }
+
+    @Override
+    public TypedOutput toBody(Object object) {
+        return delegate.toBody(object);
+    }
+
+    static String timerName(Type type) {
+        if (type == DecisionResponse.class) {
+            return AdzerkMetrics.DECODE_DECISION_RESPONSE;
+        } else if (type == User.class) {
+            return AdzerkMetrics.DECODE_USER;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,129 @@
+package com.adzerk.android.sdk;
+
+import com.adzerk.android.sdk.rest.AdzerkService;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import retrofit.Callback;
+import retrofit.RetrofitError;
+import retrofit.client.Response;
+
+/**
+ * Wraps an {@link AdzerkService} and records the latency and outcome of every call in {@link AdzerkMetrics}.
+ * <p>
+ * Synchronous calls are timed around the call itself. Asynchronous calls are timed from the call until the
+ * {@link Callback} is notified. Each call is also started in {@link NetworkEvents} and made current on the calling
+ * thread, so the phases reported further down the stack are attributed to it.
+ */
+class InstrumentedService implements InvocationHandler {
+
+    final AdzerkService delegate;
+    final AdzerkMetrics metrics;
+    final NetworkEvents events;
+
+    static AdzerkService wrap(AdzerkService service, AdzerkMetrics metrics, NetworkEvents events) {
+        return (AdzerkService) Proxy.newProxyInstance(
+                AdzerkService.class.getClassLoader(),
+                new Class<?>[] { AdzerkService.class },
+                new InstrumentedService(service, metrics, events));
+    }
+
+    InstrumentedService(AdzerkService delegate, AdzerkMetrics metrics, NetworkEvents events) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.events = events;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(this, args);
+        }
+
+        final String name = method.getName();
+        final long start = System.nanoTime();
+        final NetworkEvents.Call call = events.start(name);
+        NetworkEvents.Call previous = events.enter(call);
+
+        try {
+            int last = (args != null) ? args.length - 1 : -1;
+            if (last >= 0 && args[last] instanceof Callback) {
+                @SuppressWarnings("unchecked")
+                Callback<Object> callback = (Callback<Object>) args[last];
+                args[last] = new TimedCallback(name, start, call, callback);
+                return invokeDelegate(method, args);
+            }
+
+            boolean success = false;
+            try {
+                Object result = invokeDelegate(method, args);
+                success = true;
+                return result;
+            } finally {
+                metrics.record(name, start, success);
+                NetworkEvents.end(call, success);
+            }
+        } finally {
+            events.exit(previous);
+        }
+    }
+
+    private Object invokeDelegate(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(delegate, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    class TimedCallback implements Callback<Object> {
+        final String name;
+        final long start;
+        final NetworkEvents.Call call;
+        final Callback<Object> callback;
+
+        TimedCallback(String name, long start, NetworkEvents.Call call, Callback<Object> callback) {
+            this.name = name;
+            this.start = start;
+            this.call = call;
+            this.callback = callback;
+        }
+
+        @Override
+        public void success(Object result, Response response) {
+            metrics.record(name, start, true);
+            long dispatchStart = dispatchStart();
+            try {
+                callback.success(result, response);
+            } finally {
+                dispatched(dispatchStart, true);
+            }
+        }
+
+        @Override
+        public void failure(RetrofitError error) {
+            metrics.record(name, start, false);
+            long dispatchStart = dispatchStart();
+            try {
+                callback.failure(error);
+            } finally {
+                dispatched(dispatchStart, false);
+            }
+        }
+
+        private long dispatchStart() {
+            if (call != null && call.dispatchStart != 0) {
+                return call.dispatchStart;
+            }
+            return System.nanoTime();
+        }
+
+        private void dispatched(long dispatchStart, boolean success) {
+            NetworkEvents.phase(call, NetworkEventListener.Phase.LISTENER_DISPATCH, dispatchStart, System.nanoTime());
+            NetworkEvents.end(call, success);
+        }
+    }
+}
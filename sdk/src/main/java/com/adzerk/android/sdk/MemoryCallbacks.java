@@ -0,0 +1,43 @@
+package com.adzerk.android.sdk;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Build.VERSION_CODES;
+
+/**
+ * Sheds the Decisions kept by the {@link AdzerkSdk} in proportion to the memory pressure.
+ * <p>
+ * ComponentCallbacks2 is API 14; kept in its own class so that it isn't loaded on older devices. Registered through
+ * {@link #register(Context, AdzerkSdk)}, so that AdzerkSdk never names it as a ComponentCallbacks: verifying that
+ * would load the interface, which the JVM benchmarks don't have.
+ */
+@TargetApi(VERSION_CODES.ICE_CREAM_SANDWICH)
+class MemoryCallbacks implements ComponentCallbacks2 {
+    final AdzerkSdk sdk;
+
+    MemoryCallbacks(AdzerkSdk sdk) {
+        this.sdk = sdk;
+    }
+
+    static MemoryCallbacks register(Context context, AdzerkSdk sdk) {
+        MemoryCallbacks callbacks = new MemoryCallbacks(sdk);
+        context.registerComponentCallbacks(callbacks);
+        return callbacks;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        sdk.trimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        sdk.trimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration configuration) {
+    }
+}
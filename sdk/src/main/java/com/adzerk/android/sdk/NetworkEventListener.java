@@ -0,0 +1,83 @@
+package com.adzerk.android.sdk;
+
+/**
+ * Listener for the network lifecycle of calls made by the {@link AdzerkSdk}.
+ * <p>
+ * Each call to an Adzerk endpoint is assigned a unique id. The listener is notified when the call starts, once
+ * for every {@link Phase} the call goes through, and when the call ends. All timestamps are taken from
+ * {@link System#nanoTime()} so phases can be compared with each other, but not with wall-clock time.
+ * <p>
+ * Callbacks are made synchronously from the thread doing the work (the caller, an http worker or the main
+ * thread), so implementations must be thread-safe and return quickly.
+ * <p>
+ * <pre>
+ * {@code
+ * AdzerkSdk.getInstance().setNetworkEventListener(new NetworkEventListener() {
+ *     public void callStart(long callId, String endpoint, long timestampNanos) { }
+ *
+ *     public void phase(long callId, Phase phase, long startNanos, long endNanos) {
+ *         Log.d(TAG, callId + " " + phase + ": " + (endNanos - startNanos) / 1000 + "us");
+ *     }
+ *
+ *     public void callEnd(long callId, boolean success, long timestampNanos) { }
+ * });
+ * }
+ * </pre>
+ * @see AdzerkSdk#setNetworkEventListener(NetworkEventListener)
+ */
+public interface NetworkEventListener {
+
+    /**
+     * Phases of a call, in the order they occur. A phase is only reported if the call went through it: a pooled
+     * connection skips {@link #TLS}, a request without a body skips {@link #REQUEST_WRITE} and a synchronous call
+     * skips {@link #QUEUE} and {@link #LISTENER_DISPATCH}.
+     */
+    enum Phase {
+        /** waiting for an http worker thread (asynchronous calls only) */
+        QUEUE,
+        /** resolving the host name */
+        DNS,
+        /** establishing the TCP connection, or acquiring a pooled one */
+        CONNECT,
+        /** TLS handshake */
+        TLS,
+        /** writing the request body */
+        REQUEST_WRITE,
+        /** waiting for the response headers after the request was sent (time to first byte) */
+        FIRST_BYTE,
+        /** reading the response body */
+        RESPONSE_BODY,
+        /** deserializing the JSON response */
+        JSON_DECODE,
+        /** posting the result to the callback thread and running the listener (asynchronous calls only) */
+        LISTENER_DISPATCH
+    }
+
+    /**
+     * A call to the endpoint has started.
+     *
+     * @param callId            unique id of the call
+     * @param endpoint          name of the {@link com.adzerk.android.sdk.rest.AdzerkService} method, ie. "request"
+     * @param timestampNanos    start time
+     */
+    void callStart(long callId, String endpoint, long timestampNanos);
+
+    /**
+     * A phase of the call has completed.
+     *
+     * @param callId        unique id of the call
+     * @param phase         completed phase
+     * @param startNanos    start time of the phase
+     * @param endNanos      end time of the phase
+     */
+    void phase(long callId, Phase phase, long startNanos, long endNanos);
+
+    /**
+     * The call has completed and the listener, if any, has been notified.
+     *
+     * @param callId            unique id of the call
+     * @param success           false if the call failed
+     * @param timestampNanos    end time
+     */
+    void callEnd(long callId, boolean success, long timestampNanos);
+}
@@ -0,0 +1,159 @@
+package com.adzerk.android.sdk;
+
+import android.util.Log;
+
+import com.adzerk.android.sdk.NetworkEventListener.Phase;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dispatches call lifecycle events to the installed {@link NetworkEventListener}.
+ * <p>
+ * The call in progress is tracked per thread, so the transport, converter and executors can report phases without
+ * any change to the Retrofit service interface. When no listener is installed, no call is started and every
+ * method is a no-op.
+ */
+class NetworkEvents {
+    static final String TAG = NetworkEvents.class.getSimpleName();
+
+    final ThreadLocal<Call> current = new ThreadLocal<>();
+    final AtomicLong nextId = new AtomicLong();
+
+    volatile NetworkEventListener listener;
+
+    /**
+     * State of a single call. The listener is captured when the call starts so that all events of a call go to
+     * the same listener.
+     */
+    static class Call {
+        final long id;
+        final NetworkEventListener listener;
+
+        // time the result was handed to the callback executor
+        volatile long dispatchStart;
+
+        // time the TLS layer was created on top of a new TCP connection; set on the connecting thread
+        long tlsStart;
+
+        Call(long id, NetworkEventListener listener) {
+            this.id = id;
+            this.listener = listener;
+        }
+    }
+
+    void setListener(NetworkEventListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts a new call, or returns null if there is no listener.
+     */
+    Call start(String endpoint) {
+        NetworkEventListener listener = this.listener;
+        if (listener == null) {
+            return null;
+        }
+        Call call = new Call(nextId.incrementAndGet(), listener);
+        try {
+            listener.callStart(call.id, endpoint, System.nanoTime());
+        } catch (RuntimeException e) {
+            Log.w(TAG, "NetworkEventListener failed", e);
+        }
+        return call;
+    }
+
+    /**
+     * Returns the call in progress on this thread, or null.
+     */
+    Call current() {
+        return current.get();
+    }
+
+    /**
+     * Makes the given call current on this thread.
+     *
+     * @return the previously current call, to be passed to {@link #exit(Call)}
+     */
+    Call enter(Call call) {
+        Call previous = current.get();
+        current.set(call);
+        return previous;
+    }
+
+    void exit(Call previous) {
+        if (previous == null) {
+            current.remove();
+        } else {
+            current.set(previous);
+        }
+    }
+
+    static void phase(Call call, Phase phase, long startNanos, long endNanos) {
+        if (call == null) {
+            return;
+        }
+        try {
+            call.listener.phase(call.id, phase, startNanos, endNanos);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "NetworkEventListener failed", e);
+        }
+    }
+
+    static void end(Call call, boolean success) {
+        if (call == null) {
+            return;
+        }
+        try {
+            call.listener.callEnd(call.id, success, System.nanoTime());
+        } catch (RuntimeException e) {
+            Log.w(TAG, "NetworkEventListener failed", e);
+        }
+    }
+
+    /**
+     * Wraps the http executor to report {@link Phase#QUEUE} and to carry the call over to the worker thread.
+     */
+    Executor wrapHttpExecutor(final Executor delegate) {
+        return new Executor() {
+            @Override
+            public void execute(final Runnable runnable) {
+                final Call call = current();
+                if (call == null) {
+                    delegate.execute(runnable);
+                    return;
+                }
+
+                final long enqueued = System.nanoTime();
+                delegate.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        phase(call, Phase.QUEUE, enqueued, System.nanoTime());
+                        Call previous = enter(call);
+                        try {
+                            runnable.run();
+                        } finally {
+                            exit(previous);
+                        }
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Wraps the callback executor to mark the start of {@link Phase#LISTENER_DISPATCH}.
+     */
+    Executor wrapCallbackExecutor(final Executor delegate) {
+        return new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                Call call = current();
+                if (call != null) {
+                    call.dispatchStart = System.nanoTime();
+                }
+                delegate.execute(runnable);
+            }
+        };
+    }
+}
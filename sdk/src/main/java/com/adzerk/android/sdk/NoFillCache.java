@@ -0,0 +1,133 @@
+package com.adzerk.android.sdk;
+
+import android.os.SystemClock;
+
+import com.adzerk.android.sdk.rest.Decision;
+import com.adzerk.android.sdk.rest.DecisionResponse;
+import com.adzerk.android.sdk.rest.Placement;
+import com.adzerk.android.sdk.rest.Request;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Placements that recently returned no Decision, left out of Requests for a while instead of asking the engine
+ * again.
+ * <p>
+ * A Placement is identified by its signature: the parameters that affect ad selection, and the Request's keywords.
+ * After a no-fill the Placement is skipped for ttlMillis, doubled for each further consecutive no-fill up to
+ * maxTtlMillis; a Decision for it starts over. At most {@link #MAX_PLACEMENTS} are kept, least recently used
+ * dropped first.
+ */
+class NoFillCache {
+    static final int MAX_PLACEMENTS = 128;
+
+    static class Entry {
+        int misses;
+        long until;
+    }
+
+    final long ttlMillis;
+    final long maxTtlMillis;
+
+    @SuppressWarnings("serial")
+    final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, NoFillCache.Entry> eldest) {
+            return size() > MAX_PLACEMENTS;
+        }
+    };
+
+    NoFillCache(long ttlMillis, long maxTtlMillis) {
+        this.ttlMillis = ttlMillis;
+        this.maxTtlMillis = Math.max(ttlMillis, maxTtlMillis);
+    }
+
+    /**
+     * Returns the Placements of the Request that are not being skipped
+     */
+    synchronized List<Placement> filter(Request request) {
+        long now = SystemClock.elapsedRealtime();
+        List<Placement> placements = new ArrayList<>(request.getPlacements().size());
+        for (Placement placement : request.getPlacements()) {
+            Entry entry = entries.get(signature(placement, request.getKeywords()));
+            if (entry == null || now >= entry.until) {
+                placements.add(placement);
+            }
+        }
+        return placements;
+    }
+
+    /**
+     * Records which Placements of the Request the response filled
+     */
+    synchronized void record(Request request, DecisionResponse response) {
+        if (response == null) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        Map<String, Decision> decisions = response.getDecisions();
+
+        // copies of a Placement (ie. from an AdPool) count as unfilled only if none of them was filled
+        Set<String> filled = new HashSet<>();
+        Set<String> unfilled = new LinkedHashSet<>();
+        for (Placement placement : request.getPlacements()) {
+            String signature = signature(placement, request.getKeywords());
+            if (decisions != null && decisions.get(placement.getDivName()) != null) {
+                filled.add(signature);
+            } else {
+                unfilled.add(signature);
+            }
+        }
+        for (String signature : filled) {
+            entries.remove(signature);
+        }
+        unfilled.removeAll(filled);
+        for (String signature : unfilled) {
+            Entry entry = entries.get(signature);
+            if (entry == null) {
+                entry = new Entry();
+                entries.put(signature, entry);
+            }
+            entry.misses++;
+            entry.until = now + ttl(entry.misses);
+        }
+    }
+
+    long ttl(int misses) {
+        long ttl = ttlMillis;
+        for (int i = 1; i < misses && ttl < maxTtlMillis; i++) {
+            ttl *= 2;
+        }
+        return Math.min(ttl, maxTtlMillis);
+    }
+
+    static String signature(Placement placement, Set<String> keywords) {
+        StringBuilder signature = new StringBuilder()
+                .append(placement.getNetworkId()).append('/')
+                .append(placement.getSiteId()).append('/')
+                .append(sorted(placement.getAdTypes())).append('/')
+                .append(sorted(placement.getZoneIds())).append('/')
+                .append(placement.getCampaignId()).append('/')
+                .append(placement.getFlightId()).append('/')
+                .append(placement.getAdId());
+        if (placement.getProperties() != null && !placement.getProperties().isEmpty()) {
+            signature.append('/').append(new TreeMap<>(placement.getProperties()));
+        }
+        if (keywords != null && !keywords.isEmpty()) {
+            signature.append('/').append(sorted(keywords));
+        }
+        return signature.toString();
+    }
+
+    static <T> Object sorted(Set<T> set) {
+        return (set != null) ? new TreeSet<>(set) : "";
+    }
+}
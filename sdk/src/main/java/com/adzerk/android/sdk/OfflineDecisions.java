@@ -0,0 +1,437 @@
+package com.adzerk.android.sdk;
+
+import android.os.SystemClock;
+
+import com.adzerk.android.sdk.rest.Decision;
+import com.adzerk.android.sdk.rest.DecisionCodec;
+import com.adzerk.android.sdk.rest.DecisionResponse;
+import com.adzerk.android.sdk.rest.EventTracker;
+import com.adzerk.android.sdk.rest.Placement;
+import com.adzerk.android.sdk.rest.Request;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decisions fetched earlier whose ads were not shown, kept to fill Placements while the engine can't be reached.
+ * <p>
+ * A Decision was selected for a Placement's ad types and zones, but doesn't say which one it matched; it is only
+ * served for a Placement that allows all of them. Decisions are kept for maxAgeMillis; each is served at most once,
+ * and not at all once its impression was fired.
+ * <p>
+ * The kept Decisions are bounded by their estimated size in memory (see {@link DecisionWeigher}), oldest dropped
+ * first. A new Decision only replaces older ones if its Placement is requested at least as often as theirs (see
+ * {@link FrequencySketch}), so that a burst of Decisions for a rare Placement doesn't flush those of common ones.
+ * When the system runs low on memory, a share of the Decisions is dropped with {@link #trim(float)}.
+ * <p>
+ * Once loaded, the Decisions are also kept in a file in a compact binary form (see {@link DecisionCodec}), so that
+ * they can fill the first Placements after the app starts again, before the engine responds. The file is read and
+ * written on the storage thread; changes made while a write is queued are written by it, so a burst of responses
+ * and impressions is written once.
+ */
+class OfflineDecisions {
+    static final long MAX_BYTES = 256 * 1024;
+    static final int SKETCH_WIDTH = 256;
+    static final long DAY_SECONDS = TimeUnit.DAYS.toSeconds(1);
+    static final String FILE_NAME = "adzerk_decisions";
+    static final int VERSION = 1;
+    static final long LOAD_TIMEOUT_MILLIS = 1000;
+
+    static class Entry {
+        final Decision decision;
+        final long networkId;
+        final long siteId;
+        final Set<Integer> adTypes;
+        final Set<Integer> zoneIds;
+        final long fetchedAt;
+        final int weight;
+        final int key;
+
+        Entry(Decision decision, Placement placement, long fetchedAt) {
+            this(decision, placement.getNetworkId(), placement.getSiteId(), copy(placement.getAdTypes()),
+                    copy(placement.getZoneIds()), fetchedAt);
+        }
+
+        Entry(Decision decision, long networkId, long siteId, Set<Integer> adTypes, Set<Integer> zoneIds,
+              long fetchedAt) {
+            this.decision = decision;
+            this.networkId = networkId;
+            this.siteId = siteId;
+            this.adTypes = adTypes;
+            this.zoneIds = zoneIds;
+            this.fetchedAt = fetchedAt;
+            this.weight = DecisionWeigher.weigh(decision);
+            this.key = key(networkId, siteId, adTypes);
+        }
+
+        static Set<Integer> copy(Set<Integer> set) {
+            return (set != null && !set.isEmpty()) ? new HashSet<>(set) : null;
+        }
+    }
+
+    final long maxAgeMillis;
+    final int flightViewsPerDay;
+    final long maxBytes;
+
+    // oldest first
+    final ArrayList<Entry> entries = new ArrayList<>();
+    long bytes;
+    File file;
+
+    // a write is queued on the storage thread
+    boolean saving;
+
+    // counted down once the stored Decisions are loaded
+    CountDownLatch loading = new CountDownLatch(0);
+
+    // given to the Decisions loaded from the file
+    EventTracker tracker;
+
+    // how often Placements are requested, by key
+    final FrequencySketch requested = new FrequencySketch(SKETCH_WIDTH);
+
+    OfflineDecisions(long maxAgeMillis, int flightViewsPerDay) {
+        this(maxAgeMillis, flightViewsPerDay, MAX_BYTES);
+    }
+
+    OfflineDecisions(long maxAgeMillis, int flightViewsPerDay, long maxBytes) {
+        this.maxAgeMillis = maxAgeMillis;
+        this.flightViewsPerDay = flightViewsPerDay;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Keeps the Decisions of a response to the Request
+     */
+    synchronized void add(Request request, DecisionResponse response) {
+        if (response == null || response.getDecisions() == null || request.getPlacements() == null) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        boolean added = false;
+        for (Placement placement : request.getPlacements()) {
+            Decision decision = response.getDecisions().get(placement.getDivName());
+            Set<Integer> adTypes = placement.getAdTypes();
+            if (decision == null || decision.getImpressionUrl() == null || adTypes == null || adTypes.isEmpty()) {
+                continue;
+            }
+            Entry entry = new Entry(decision, placement, now);
+            requested.increment(entry.key);
+            if (admit(entry)) {
+                entries.add(entry);
+                bytes += entry.weight;
+                added = true;
+            }
+        }
+        if (added) {
+            save();
+        }
+    }
+
+    // Makes room for the entry by dropping the oldest ones, unless they are for Placements requested more often
+    boolean admit(Entry entry) {
+        if (entry.weight > maxBytes) {
+            return false;
+        }
+        long now = SystemClock.elapsedRealtime();
+        int frequency = requested.frequency(entry.key);
+        long freed = 0;
+        int victims = 0;
+        while (bytes - freed + entry.weight > maxBytes) {
+            Entry victim = entries.get(victims++);
+            boolean expired = now - victim.fetchedAt > maxAgeMillis;
+            if (!expired && requested.frequency(victim.key) > frequency) {
+                return false;
+            }
+            freed += victim.weight;
+        }
+        for (int i = 0; i < victims; i++) {
+            removeAt(0);
+        }
+        return true;
+    }
+
+    void removeAt(int index) {
+        bytes -= entries.remove(index).weight;
+    }
+
+    /**
+     * Drops the oldest Decisions until the kept ones use at most (1 - fraction) of their current memory
+     */
+    synchronized void trim(float fraction) {
+        long target = (long) (bytes * (1 - Math.min(Math.max(fraction, 0f), 1f)));
+        int kept = entries.size();
+        while (bytes > target && !entries.isEmpty()) {
+            removeAt(0);
+        }
+        if (entries.size() != kept) {
+            save();
+        }
+    }
+
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    /**
+     * Drops the Decision once its ad was shown, or it was handed out by an {@link AdPool}
+     */
+    synchronized void remove(Decision decision) {
+        String impressionUrl = decision.getImpressionUrl();
+        for (int i = 0; i < entries.size(); i++) {
+            Decision kept = entries.get(i).decision;
+            if (kept == decision || (impressionUrl != null && impressionUrl.equals(kept.getImpressionUrl()))) {
+                removeAt(i);
+                save();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Drops the Decision with the impression url once it was fired without its Decision
+     */
+    synchronized void remove(String impressionUrl) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (impressionUrl.equals(entries.get(i).decision.getImpressionUrl())) {
+                removeAt(i);
+                save();
+                return;
+            }
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Selects a kept Decision for each Placement of the Request that one matches.
+     *
+     * @param request       the Request that couldn't be sent
+     * @param blocked       creatives the user rejected
+     * @param views         view times of flights, to keep each under flightViewsPerDay
+     * @return response marked offline, or null if no Placement could be filled
+     */
+    synchronized DecisionResponse decide(Request request, BlockedCreatives blocked, FlightViewTimes views) {
+        if (request.getPlacements() == null) {
+            return null;
+        }
+        int kept = entries.size();
+        expire();
+
+        long since = System.currentTimeMillis() / 1000 - DAY_SECONDS;
+        Map<String, Decision> decisions = new HashMap<>();
+        for (Placement placement : request.getPlacements()) {
+            requested.increment(key(placement.getNetworkId(), placement.getSiteId(), placement.getAdTypes()));
+            for (int i = 0; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                if (matches(entry, placement)
+                        && !isBlocked(entry.decision.getCreativeId(), request, blocked)
+                        && isUnderCap(entry.decision.getFlightId(), views, since, decisions)) {
+                    removeAt(i);
+                    decisions.put(placement.getDivName(), entry.decision);
+                    break;
+                }
+            }
+        }
+        if (entries.size() != kept) {
+            save();
+        }
+        return decisions.isEmpty() ? null : new DecisionResponse(decisions, true);
+    }
+
+    void expire() {
+        long now = SystemClock.elapsedRealtime();
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            if (now - entries.get(i).fetchedAt > maxAgeMillis) {
+                removeAt(i);
+            }
+        }
+    }
+
+    static boolean matches(Entry entry, Placement placement) {
+        Decision decision = entry.decision;
+        if (entry.networkId != placement.getNetworkId() || entry.siteId != placement.getSiteId()) {
+            return false;
+        }
+        if (placement.getAdTypes() == null || !placement.getAdTypes().containsAll(entry.adTypes)) {
+            return false;
+        }
+        Set<Integer> zoneIds = placement.getZoneIds();
+        if (zoneIds != null && !zoneIds.isEmpty() && (entry.zoneIds == null || !zoneIds.containsAll(entry.zoneIds))) {
+            return false;
+        }
+        return (placement.getFlightId() == 0 || placement.getFlightId() == decision.getFlightId())
+                && (placement.getCampaignId() == 0 || placement.getCampaignId() == decision.getCampaignId())
+                && (placement.getAdId() == 0 || placement.getAdId() == decision.getAdId());
+    }
+
+    static boolean isBlocked(int creativeId, Request request, BlockedCreatives blocked) {
+        Set<Integer> requested = request.getBlockedCreatives();
+        return (requested != null && requested.contains(creativeId)) || blocked.contains(creativeId);
+    }
+
+    boolean isUnderCap(int flightId, FlightViewTimes views, long since, Map<String, Decision> decisions) {
+        int count = views.count(flightId, since);
+        for (Decision selected : decisions.values()) {
+            if (selected.getFlightId() == flightId) {
+                count++;
+            }
+        }
+        return count < flightViewsPerDay;
+    }
+
+    /**
+     * Loads the Decisions kept in the directory on the storage thread, and saves further changes there
+     */
+    synchronized void load(File directory) {
+        final File file = new File(directory, FILE_NAME);
+        final CountDownLatch latch = new CountDownLatch(1);
+        this.file = file;
+        loading = latch;
+        // queued ahead of any save, so the stored Decisions are read before the file is written again
+        Storage.executor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    loaded(read(file));
+                } finally {
+                    latch.countDown();
+                }
+            }
+        });
+    }
+
+    /**
+     * Waits until the Decisions stored by the previous run are loaded, for at most timeoutMillis
+     */
+    void awaitLoad(long timeoutMillis) {
+        CountDownLatch latch;
+        synchronized (this) {
+            latch = loading;
+        }
+        try {
+            latch.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Returns the stored Decisions, or null if there are none
+    ArrayList<Entry> read(File file) {
+        final long now = SystemClock.elapsedRealtime();
+        final long wallNow = System.currentTimeMillis();
+        final ArrayList<Entry> loaded = new ArrayList<>();
+        boolean read = Storage.read(file, VERSION, new Storage.Reader() {
+            @Override
+            public void read(DataInputStream in) throws IOException {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    long networkId = in.readLong();
+                    long siteId = in.readLong();
+                    Set<Integer> adTypes = readSet(in);
+                    Set<Integer> zoneIds = readSet(in);
+                    long fetchedAt = now - (wallNow - in.readLong());
+                    loaded.add(new Entry(DecisionCodec.read(in, tracker), networkId, siteId, adTypes, zoneIds, fetchedAt));
+                }
+            }
+        });
+        return read ? loaded : null;
+    }
+
+    synchronized void loaded(ArrayList<Entry> loaded) {
+        if (loaded == null) {
+            if (!entries.isEmpty()) {
+                save();
+            }
+            return;
+        }
+
+        // Decisions kept before the store was loaded are newer
+        int count = entries.size();
+        entries.addAll(0, loaded);
+        for (Entry entry : loaded) {
+            bytes += entry.weight;
+        }
+        expire();
+        while (bytes > maxBytes) {
+            removeAt(0);
+        }
+        if (count > 0 || entries.size() != loaded.size()) {
+            save();
+        }
+    }
+
+    // Queues a write of the kept Decisions unless one is queued already; it writes them as they are when it runs.
+    // Fetch times are saved as wall clock times, since the elapsed realtime starts over when the device reboots
+    void save() {
+        if (file == null || saving) {
+            return;
+        }
+        saving = true;
+        final File file = this.file;
+        Storage.executor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final Entry[] snapshot;
+                synchronized (OfflineDecisions.this) {
+                    saving = false;
+                    snapshot = entries.toArray(new Entry[entries.size()]);
+                }
+                final long now = SystemClock.elapsedRealtime();
+                final long wallNow = System.currentTimeMillis();
+                Storage.write(file, VERSION, new Storage.Writer() {
+                    @Override
+                    public void write(DataOutputStream out) throws IOException {
+                        out.writeInt(snapshot.length);
+                        for (Entry entry : snapshot) {
+                            out.writeLong(entry.networkId);
+                            out.writeLong(entry.siteId);
+                            writeSet(out, entry.adTypes);
+                            writeSet(out, entry.zoneIds);
+                            out.writeLong(wallNow - (now - entry.fetchedAt));
+                            DecisionCodec.write(out, entry.decision);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    static int key(long networkId, long siteId, Set<Integer> adTypes) {
+        int key = (int) (networkId ^ (networkId >>> 32));
+        key = 31 * key + (int) (siteId ^ (siteId >>> 32));
+        return 31 * key + ((adTypes != null) ? adTypes.hashCode() : 0);
+    }
+
+    static void writeSet(DataOutputStream out, Set<Integer> set) throws IOException {
+        out.writeInt((set != null) ? set.size() : -1);
+        if (set != null) {
+            for (int value : set) {
+                out.writeInt(value);
+            }
+        }
+    }
+
+    static Set<Integer> readSet(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        Set<Integer> set = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            set.add(in.readInt());
+        }
+        return set;
+    }
+}
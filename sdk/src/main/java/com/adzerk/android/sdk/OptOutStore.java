@@ -0,0 +1,66 @@
+package com.adzerk.android.sdk;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Users that have opted out of tracking, keyed by {@link UdbKey}. Kept in memory and, once {@link #load(Context)}
+ * has been called, persisted to shared preferences so that the opt-out survives app restarts.
+ */
+class OptOutStore {
+    static final String PREFERENCES = "com.adzerk.android.sdk";
+    static final String KEY_OPTED_OUT = "optedOut";
+
+    final Set<String> optedOut = new HashSet<>();
+    SharedPreferences preferences;
+
+    synchronized void load(Context context) {
+        if (preferences != null) {
+            return;
+        }
+        preferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+        Set<String> stored = preferences.getStringSet(KEY_OPTED_OUT, null);
+        if (stored != null) {
+            optedOut.addAll(stored);
+        }
+        if (optedOut.size() > (stored != null ? stored.size() : 0)) {
+            save();
+        }
+    }
+
+    synchronized boolean isOptedOut(UdbKey key) {
+        return !optedOut.isEmpty() && optedOut.contains(key.toString());
+    }
+
+    /**
+     * Returns true if the User has opted out on any network
+     */
+    synchronized boolean isOptedOut(String userKey) {
+        if (optedOut.isEmpty() || userKey == null) {
+            return false;
+        }
+        String suffix = "/" + userKey;
+        for (String key : optedOut) {
+            if (key.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    synchronized void add(UdbKey key) {
+        if (optedOut.add(key.toString())) {
+            save();
+        }
+    }
+
+    void save() {
+        if (preferences != null) {
+            // getStringSet's result must not be modified, so a copy is stored
+            preferences.edit().putStringSet(KEY_OPTED_OUT, new HashSet<>(optedOut)).apply();
+        }
+    }
+}
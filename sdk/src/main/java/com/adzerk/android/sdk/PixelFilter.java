@@ -0,0 +1,75 @@
+package com.adzerk.android.sdk;
+
+import android.os.SystemClock;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the tracking urls fired recently, so that an impression or event fired again for the same ad (ie.
+ * when a RecyclerView binds the ad's row again) is not sent twice.
+ * <p>
+ * A rotating Bloom filter in fixed memory: urls are added to the current of two bit sets, and a url is a repeat if
+ * all its bits are set in one of them. Every windowMillis the older set is cleared and becomes the current one, so
+ * a url is remembered for at least windowMillis and at most twice as long. Urls are keyed by their cached String
+ * hash; with {@link #EXPECTED_URLS} urls in each set, a false positive (a url taken for one already fired, so a
+ * pixel that is dropped) has a probability of about 0.01%.
+ */
+class PixelFilter {
+    static final int BITS = 1 << 17;
+    static final int HASHES = 5;
+    static final int EXPECTED_URLS = 4096;
+
+    final long windowMillis;
+    long[] current = new long[BITS / Long.SIZE];
+    long[] previous = new long[BITS / Long.SIZE];
+    long rotatedAt;
+
+    PixelFilter(long windowMillis) {
+        this.windowMillis = windowMillis;
+        this.rotatedAt = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Returns true if the url was fired within the window; otherwise remembers it and returns false
+     */
+    synchronized boolean isRepeat(String url) {
+        rotate();
+        int hash = url.hashCode();
+        // a second hash for double hashing; odd so that the probes cycle through all bits
+        int step = (Integer.rotateLeft(hash * 0x9e3779b9, 16) ^ url.length()) | 1;
+        boolean inCurrent = true;
+        boolean inPrevious = true;
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (hash + i * step) & (BITS - 1);
+            long mask = 1L << (bit & 63);
+            inCurrent &= (current[bit >>> 6] & mask) != 0;
+            inPrevious &= (previous[bit >>> 6] & mask) != 0;
+        }
+        if (inCurrent) {
+            return true;
+        }
+        // remembered for another window, also when it was fired in the previous one
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (hash + i * step) & (BITS - 1);
+            current[bit >>> 6] |= 1L << (bit & 63);
+        }
+        return inPrevious;
+    }
+
+    void rotate() {
+        long now = SystemClock.elapsedRealtime();
+        long elapsed = now - rotatedAt;
+        if (elapsed < windowMillis) {
+            return;
+        }
+        long[] cleared = previous;
+        Arrays.fill(cleared, 0);
+        if (elapsed < 2 * windowMillis) {
+            previous = current;
+        } else {
+            Arrays.fill(current, 0);
+        }
+        current = cleared;
+        rotatedAt = now;
+    }
+}
@@ -0,0 +1,234 @@
+package com.adzerk.android.sdk;
+
+import android.util.Log;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls tracking urls (impression and event pixels) on a small shared pool of background threads.
+ * <p>
+ * A pixel that fails because the network is unavailable, or with a server error, is queued and sent again when
+ * {@link #retry()} is called after the network is back. At most {@link #MAX_QUEUED} pixels are queued, for at
+ * most {@link #MAX_QUEUED_MILLIS}; the oldest is dropped first.
+ */
+class PixelPipeline {
+    static final String TAG = PixelPipeline.class.getSimpleName();
+    static final int THREADS = 4;
+    static final int MAX_QUEUED = 64;
+    static final long MAX_QUEUED_MILLIS = TimeUnit.DAYS.toMillis(1);
+    static final String FILE_NAME = "adzerk_pixels";
+    static final int VERSION = 1;
+    static final int TIMEOUT_MILLIS = 10000;
+
+    static class Pixel {
+        final URL url;
+        final String timer;
+        final long queuedAt;
+
+        Pixel(URL url, String timer, long queuedAt) {
+            this.url = url;
+            this.timer = timer;
+            this.queuedAt = queuedAt;
+        }
+    }
+
+    static Executor executor;
+
+    static synchronized Executor executor() {
+        if (executor == null) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "Adzerk-Pixel");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    final AdzerkMetrics metrics;
+
+    // oldest first
+    final ArrayDeque<Pixel> queue = new ArrayDeque<>();
+    boolean draining;
+    File file;
+
+    PixelPipeline(AdzerkMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Calls the url in the background, queueing it if it can't be delivered now
+     */
+    void fire(final URL url, final String timer) {
+        executor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!send(url, timer)) {
+                    enqueue(new Pixel(url, timer, System.currentTimeMillis()));
+                }
+            }
+        });
+    }
+
+    /**
+     * Sends the queued pixels in the background, in the order they were fired. Stops at the first that fails again.
+     */
+    void retry() {
+        synchronized (this) {
+            if (draining || queue.isEmpty()) {
+                return;
+            }
+            draining = true;
+        }
+        executor().execute(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        });
+    }
+
+    synchronized int queued() {
+        return queue.size();
+    }
+
+    void drain() {
+        try {
+            while (true) {
+                Pixel pixel;
+                synchronized (this) {
+                    pixel = queue.peekFirst();
+                }
+                if (pixel == null) {
+                    return;
+                }
+                boolean expired = System.currentTimeMillis() - pixel.queuedAt > MAX_QUEUED_MILLIS;
+                if (!expired && !send(pixel.url, pixel.timer)) {
+                    return;
+                }
+                synchronized (this) {
+                    queue.remove(pixel);
+                    save();
+                }
+            }
+        } finally {
+            synchronized (this) {
+                draining = false;
+            }
+        }
+    }
+
+    // Returns false if the pixel should be sent again later
+    boolean send(URL url, String timer) {
+        long start = System.nanoTime();
+        URLConnection connection = null;
+        try {
+            connection = url.openConnection();
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            connection.getContent();
+            metrics.record(timer, start, true);
+            return true;
+        } catch (IOException e) {
+            metrics.record(timer, start, false);
+            Log.e(TAG, "Failed to call " + timer + " url ", e);
+            return !isRetryable(connection);
+        }
+    }
+
+    // Network failures and server errors are retried; the pixel is dropped if the server rejected it
+    static boolean isRetryable(URLConnection connection) {
+        if (connection instanceof HttpURLConnection) {
+            try {
+                int status = ((HttpURLConnection) connection).getResponseCode();
+                return status <= 0 || status >= 500;
+            } catch (IOException e) {
+                return true;
+            }
+        }
+        return connection == null;
+    }
+
+    synchronized void enqueue(Pixel pixel) {
+        if (queue.size() == MAX_QUEUED) {
+            queue.removeFirst();
+        }
+        queue.addLast(pixel);
+        save();
+    }
+
+    /**
+     * Loads the pixels queued in the directory and saves further changes there
+     */
+    synchronized void load(File directory) {
+        file = new File(directory, FILE_NAME);
+        final ArrayDeque<Pixel> loaded = new ArrayDeque<>();
+        boolean read = Storage.read(file, VERSION, new Storage.Reader() {
+            @Override
+            public void read(DataInputStream in) throws IOException {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String url = in.readUTF();
+                    String timer = in.readUTF();
+                    long queuedAt = in.readLong();
+                    try {
+                        loaded.addLast(new Pixel(new URL(url), timer, queuedAt));
+                    } catch (MalformedURLException ignored) {
+                    }
+                }
+            }
+        });
+        if (!read) {
+            if (!queue.isEmpty()) {
+                save();
+            }
+            return;
+        }
+
+        // pixels queued before the store was loaded were fired later
+        while (!loaded.isEmpty() && loaded.size() + queue.size() > MAX_QUEUED) {
+            loaded.removeFirst();
+        }
+        while (!loaded.isEmpty()) {
+            queue.addFirst(loaded.removeLast());
+        }
+        save();
+    }
+
+    void save() {
+        if (file == null) {
+            return;
+        }
+        final Pixel[] snapshot = queue.toArray(new Pixel[queue.size()]);
+        Storage.writeLater(file, VERSION, new Storage.Writer() {
+            @Override
+            public void write(DataOutputStream out) throws IOException {
+                out.writeInt(snapshot.length);
+                for (Pixel pixel : snapshot) {
+                    out.writeUTF(pixel.url.toString());
+                    out.writeUTF(pixel.timer);
+                    out.writeLong(pixel.queuedAt);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,40 @@
+package com.adzerk.android.sdk;
+
+import com.adzerk.android.sdk.rest.RequestDecorator;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Adds the state an {@link AdzerkSdk} instance keeps about the user to each Request it sends.
+ */
+class SdkRequestDecorator implements RequestDecorator {
+    final BlockedCreatives blockedCreatives;
+    final FlightViewTimes flightViews;
+
+    SdkRequestDecorator(BlockedCreatives blockedCreatives, FlightViewTimes flightViews) {
+        this.blockedCreatives = blockedCreatives;
+        this.flightViews = flightViews;
+    }
+
+    @Override
+    public boolean hasBlockedCreatives() {
+        return !blockedCreatives.isEmpty();
+    }
+
+    @Override
+    public void writeBlockedCreatives(JsonWriter out, Set<Integer> skip) throws IOException {
+        blockedCreatives.write(out, skip);
+    }
+
+    @Override
+    public boolean hasFlightViewTimes() {
+        return !flightViews.isEmpty();
+    }
+
+    @Override
+    public void writeFlightViewTimes(JsonWriter out, Set<Integer> skip) throws IOException {
+        flightViews.write(out, skip);
+    }
+}
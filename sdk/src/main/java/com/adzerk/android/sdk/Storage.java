@@ -0,0 +1,114 @@
+package com.adzerk.android.sdk;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Small binary files in the app's private storage for SDK state that persists across app restarts.
+ * <p>
+ * Files start with a version number and are replaced atomically (written to a temporary file, then renamed), so
+ * a reader sees either the old or the new contents. Writes run on a single background thread.
+ */
+class Storage {
+    static final String TAG = Storage.class.getSimpleName();
+
+    interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    interface Reader {
+        void read(DataInputStream in) throws IOException;
+    }
+
+    static Executor executor;
+
+    static synchronized Executor executor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Adzerk-Storage");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Reads the file if it exists and has the given version; returns false otherwise
+     */
+    static boolean read(File file, int version, Reader reader) {
+        if (!file.exists()) {
+            return false;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != version) {
+                return false;
+            }
+            reader.read(in);
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read " + file + ": " + e.getMessage());
+            return false;
+        } finally {
+            close(in);
+        }
+    }
+
+    static void write(File file, int version, Writer writer) {
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(version);
+            writer.write(out);
+            out.close();
+            out = null;
+            if (!temp.renameTo(file)) {
+                throw new IOException("rename failed");
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write " + file + ": " + e.getMessage());
+            temp.delete();
+        } finally {
+            close(out);
+        }
+    }
+
+    /**
+     * Writes the file on the storage thread
+     */
+    static void writeLater(final File file, final int version, final Writer writer) {
+        executor().execute(new Runnable() {
+            @Override
+            public void run() {
+                write(file, version, writer);
+            }
+        });
+    }
+
+    static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.adzerk.android.sdk;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import retrofit.client.Client;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedByteArray;
+import retrofit.mime.TypedInput;
+import retrofit.mime.TypedOutput;
+
+/**
+ * Debug tool that records the requests made by an SDK instance, with the engine's responses and timings, to a
+ * local file. The file can be read back with {@link Reader}, ie. to replay production traffic in benchmarks.
+ * <p>
+ * Recordings contain user keys and custom properties; enable only in debug builds:
+ * <pre>
+ * {@code
+ * TrafficRecorder recorder = new TrafficRecorder(new File(context.getFilesDir(), "traffic.bin"));
+ * AdzerkSdk sdk = new AdzerkSdk.Builder()
+ *     .setTrafficRecorder(recorder)
+ *     .build();
+ * ...
+ * recorder.close();
+ * }
+ * </pre>
+ * File format: a header ({@code MAGIC}, {@code VERSION}) followed by one block per exchange. Each block is the
+ * raw and deflated lengths followed by the deflated exchange, so a recording cut short by the app being killed
+ * is readable up to the last complete block.
+ */
+public class TrafficRecorder implements Closeable {
+    private static final String TAG = TrafficRecorder.class.getSimpleName();
+
+    static final int MAGIC = 0x415a5452;    // "AZTR"
+    static final int VERSION = 1;
+
+    // status of an exchange that failed without a response, ie. a connection error
+    public static final int NO_RESPONSE = 0;
+
+    final DataOutputStream out;
+    final long startNanos = System.nanoTime();
+    final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    boolean closed;
+
+    /**
+     * Creates the recording, replacing any existing file.
+     *
+     * @param file  recording file
+     * @throws IOException if the file can't be written
+     */
+    public TrafficRecorder(File file) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.flush();
+    }
+
+    /**
+     * Stops recording and closes the file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            deflater.end();
+            out.close();
+        }
+    }
+
+    /**
+     * Wraps the SDK's transport so that every exchange is recorded
+     */
+    Client wrap(final Client delegate, final String endpoint) {
+        return new Client() {
+            @Override
+            public Response execute(Request request) throws IOException {
+                byte[] requestBody = bytes(request.getBody());
+                long start = System.nanoTime();
+                Response response;
+                try {
+                    response = delegate.execute(request);
+                } catch (IOException e) {
+                    record(start, System.nanoTime(), request, endpoint, requestBody, NO_RESPONSE, new byte[0]);
+                    throw e;
+                }
+                response = buffered(response);
+                record(start, System.nanoTime(), request, endpoint, requestBody, response.getStatus(),
+                        ((TypedByteArray) response.getBody()).getBytes());
+                return response;
+            }
+        };
+    }
+
+    void record(long start, long end, Request request, String endpoint, byte[] requestBody, int status,
+                byte[] responseBody) {
+        String path = request.getUrl().startsWith(endpoint)
+                ? request.getUrl().substring(endpoint.length())
+                : request.getUrl();
+
+        try {
+            ByteArrayOutputStream raw = new ByteArrayOutputStream(64 + requestBody.length + responseBody.length);
+            DataOutputStream entry = new DataOutputStream(raw);
+            entry.writeLong((start - startNanos) / 1000);
+            entry.writeLong((end - start) / 1000);
+            entry.writeUTF(request.getMethod());
+            entry.writeUTF(path);
+            entry.writeShort(status);
+            entry.writeInt(requestBody.length);
+            entry.write(requestBody);
+            entry.writeInt(responseBody.length);
+            entry.write(responseBody);
+            write(raw.toByteArray());
+        } catch (IOException e) {
+            Log.w(TAG, "Stopped recording: " + e.getMessage());
+            try {
+                close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    synchronized void write(byte[] raw) throws IOException {
+        if (closed) {
+            return;
+        }
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 2 + 16);
+        byte[] buffer = new byte[InstrumentedClient.CHUNK_SIZE];
+        while (!deflater.finished()) {
+            compressed.write(buffer, 0, deflater.deflate(buffer));
+        }
+        out.writeInt(raw.length);
+        out.writeInt(compressed.size());
+        compressed.writeTo(out);
+        out.flush();
+    }
+
+    static byte[] bytes(TypedOutput body) throws IOException {
+        if (body == null) {
+            return new byte[0];
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+        return out.toByteArray();
+    }
+
+    // the body is needed for the recording and again by Retrofit, so it's read into memory once
+    static Response buffered(Response response) throws IOException {
+        TypedInput body = response.getBody();
+        if (body instanceof TypedByteArray) {
+            return response;
+        }
+        InputStream stream = (body != null) ? body.in() : null;
+        byte[] bytes = (stream != null) ? InstrumentedClient.readFully(stream) : new byte[0];
+        return new Response(response.getUrl(), response.getStatus(), response.getReason(), response.getHeaders(),
+                new TypedByteArray(body != null ? body.mimeType() : null, bytes));
+    }
+
+    /**
+     * One recorded exchange.
+     */
+    public static class Entry {
+        long offsetMicros;
+        long durationMicros;
+        String method;
+        String path;
+        int status;
+        byte[] requestBody;
+        byte[] responseBody;
+
+        /**
+         * Time the request was sent, relative to the start of the recording.
+         */
+        public long getOffsetMicros() {
+            return offsetMicros;
+        }
+
+        /**
+         * Time from sending the request to receiving the complete response.
+         */
+        public long getDurationMicros() {
+            return durationMicros;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        /**
+         * Path and query, relative to the endpoint, ie. {@code /udb/9792/read?userKey=ue1-...}
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * HTTP status, or {@link #NO_RESPONSE} if the request failed without a response
+         */
+        public int getStatus() {
+            return status;
+        }
+
+        public byte[] getRequestBody() {
+            return requestBody;
+        }
+
+        public byte[] getResponseBody() {
+            return responseBody;
+        }
+    }
+
+    /**
+     * Reads a recording, one exchange at a time.
+     */
+    public static class Reader implements Closeable {
+        final DataInputStream in;
+        final Inflater inflater = new Inflater();
+
+        public Reader(File file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                in.close();
+                throw new IOException("Not a traffic recording: " + file);
+            }
+        }
+
+        /**
+         * Returns the next exchange, or null at the end of the recording.
+         *
+         * @throws IOException if the file can't be read
+         */
+        public Entry next() throws IOException {
+            byte[] raw;
+            try {
+                raw = new byte[in.readInt()];
+                byte[] compressed = new byte[in.readInt()];
+                in.readFully(compressed);
+                inflater.reset();
+                inflater.setInput(compressed);
+                if (inflater.inflate(raw) != raw.length) {
+                    throw new IOException("Corrupt traffic recording");
+                }
+            } catch (EOFException e) {
+                // end of file, or a block cut short by the recording process being killed
+                return null;
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt traffic recording", e);
+            }
+
+            DataInputStream entryIn = new DataInputStream(new ByteArrayInputStream(raw));
+            Entry entry = new Entry();
+            entry.offsetMicros = entryIn.readLong();
+            entry.durationMicros = entryIn.readLong();
+            entry.method = entryIn.readUTF();
+            entry.path = entryIn.readUTF();
+            entry.status = entryIn.readUnsignedShort();
+            entry.requestBody = new byte[entryIn.readInt()];
+            entryIn.readFully(entry.requestBody);
+            entry.responseBody = new byte[entryIn.readInt()];
+            entryIn.readFully(entry.responseBody);
+            return entry;
+        }
+
+        @Override
+        public void close() throws IOException {
+            inflater.end();
+            in.close();
+        }
+    }
+}
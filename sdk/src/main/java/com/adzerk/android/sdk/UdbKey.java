@@ -0,0 +1,37 @@
+package com.adzerk.android.sdk;
+
+/**
+ * Identifies a User in the UserDB: the (networkId, userKey) pair taken by every {@code /udb} endpoint.
+ */
+final class UdbKey {
+    final long networkId;
+    final String userKey;
+
+    UdbKey(long networkId, String userKey) {
+        this.networkId = networkId;
+        this.userKey = userKey;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof UdbKey)) {
+            return false;
+        }
+        UdbKey other = (UdbKey) o;
+        return networkId == other.networkId
+                && (userKey != null ? userKey.equals(other.userKey) : other.userKey == null);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (int) (networkId ^ (networkId >>> 32)) + (userKey != null ? userKey.hashCode() : 0);
+    }
+
+    @Override
+    public String toString() {
+        return networkId + "/" + userKey;
+    }
+}
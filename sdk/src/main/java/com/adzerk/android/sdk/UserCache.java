@@ -0,0 +1,110 @@
+package com.adzerk.android.sdk;
+
+import android.os.SystemClock;
+
+import com.adzerk.android.sdk.rest.User;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read-through cache of {@link User}s returned by {@code /udb/{networkId}/read}, keyed by {@link UdbKey}.
+ * <p>
+ * A User is served without a request for {@code ttlMillis} after it was read, and for a further
+ * {@code staleMillis} while a single background read refreshes it (stale-while-revalidate). Writes to the User
+ * invalidate the entry when they are sent and again when they complete; a read that was in flight when the User
+ * was invalidated is not cached, so it can't overwrite the result of the write.
+ */
+class UserCache {
+    static final int MAX_USERS = 32;
+
+    static class Entry {
+        final User user;
+        final long readAt;
+        final long sequence;
+        boolean revalidating;
+
+        Entry(User user, long readAt, long sequence) {
+            this.user = user;
+            this.readAt = readAt;
+            this.sequence = sequence;
+        }
+    }
+
+    final long ttlMillis;
+    final long staleMillis;
+    long sequence;
+
+    // access ordered, so the least recently read User is evicted first. Invalidated Users are kept as entries
+    // without a User that record when they were invalidated.
+    @SuppressWarnings("serial")
+    final Map<UdbKey, Entry> entries = new LinkedHashMap<UdbKey, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UdbKey, UserCache.Entry> eldest) {
+            return size() > MAX_USERS;
+        }
+    };
+
+    UserCache(long ttlMillis, long staleMillis) {
+        this.ttlMillis = ttlMillis;
+        this.staleMillis = staleMillis;
+    }
+
+    /**
+     * Returns the cached User if it is fresh or within the stale period, otherwise null
+     */
+    synchronized User get(UdbKey key) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.user == null) {
+            return null;
+        }
+        return (now() - entry.readAt < ttlMillis + staleMillis) ? entry.user : null;
+    }
+
+    /**
+     * Returns true if the cached User is past its TTL and no refresh is in flight; the caller must then refresh
+     * it with {@link #beginRead()} and {@link #put(UdbKey, User, long)}, or {@link #revalidationFailed(UdbKey)}.
+     */
+    synchronized boolean startRevalidation(UdbKey key) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.user == null || entry.revalidating || now() - entry.readAt < ttlMillis) {
+            return false;
+        }
+        entry.revalidating = true;
+        return true;
+    }
+
+    synchronized void revalidationFailed(UdbKey key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.revalidating = false;
+        }
+    }
+
+    /**
+     * Returns a token to pass to {@link #put(UdbKey, User, long)} when the read completes
+     */
+    synchronized long beginRead() {
+        return sequence;
+    }
+
+    synchronized void put(UdbKey key, User user, long token) {
+        Entry entry = entries.get(key);
+        if (user == null || (entry != null && entry.sequence > token)) {
+            // invalidated while the read was in flight
+            if (entry != null) {
+                entry.revalidating = false;
+            }
+            return;
+        }
+        entries.put(key, new Entry(user, now(), ++sequence));
+    }
+
+    synchronized void invalidate(UdbKey key) {
+        entries.put(key, new Entry(null, 0, ++sequence));
+    }
+
+    static long now() {
+        return SystemClock.elapsedRealtime();
+    }
+}
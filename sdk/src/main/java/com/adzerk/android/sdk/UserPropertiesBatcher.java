@@ -0,0 +1,141 @@
+package com.adzerk.android.sdk;
+
+import com.adzerk.android.sdk.AdzerkSdk.AdzerkError;
+import com.adzerk.android.sdk.AdzerkSdk.UserListener;
+import com.adzerk.android.sdk.rest.User;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer for {@link AdzerkSdk#setUserProperties(long, String, Map, UserListener)}.
+ * <p>
+ * Properties written for the same User are merged, last write wins per property, and posted as one request when
+ * the User's first pending write is {@code delayMillis} old, when {@code maxProperties} are pending, or on
+ * {@link #flush()}. The listeners of all merged writes are completed with the result of the combined post.
+ */
+class UserPropertiesBatcher {
+
+    /**
+     * Posts a merged batch
+     */
+    interface Sender {
+        void post(long networkId, String userKey, Map<String, Object> properties, UserListener listener);
+    }
+
+    static class Batch implements UserListener {
+        final Map<String, Object> properties = new LinkedHashMap<>();
+        final List<UserListener> listeners = new ArrayList<>(2);
+        ScheduledFuture<?> timer;
+
+        @Override
+        public void success(User user) {
+            for (UserListener listener : listeners) {
+                listener.success(user);
+            }
+        }
+
+        @Override
+        public void error(AdzerkError error) {
+            for (UserListener listener : listeners) {
+                listener.error(error);
+            }
+        }
+    }
+
+    final Sender sender;
+    final long delayMillis;
+    final int maxProperties;
+    final Map<UdbKey, Batch> batches = new LinkedHashMap<>();
+
+    static ScheduledExecutorService timer;
+
+    UserPropertiesBatcher(Sender sender, long delayMillis, int maxProperties) {
+        this.sender = sender;
+        this.delayMillis = delayMillis;
+        this.maxProperties = maxProperties;
+    }
+
+    void add(long networkId, String userKey, Map<String, Object> properties, UserListener listener) {
+        final UdbKey key = new UdbKey(networkId, userKey);
+        Batch full = null;
+        synchronized (this) {
+            Batch batch = batches.get(key);
+            if (batch == null) {
+                batch = new Batch();
+                batches.put(key, batch);
+                batch.timer = timer().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        flush(key);
+                    }
+                }, delayMillis, TimeUnit.MILLISECONDS);
+            }
+            batch.properties.putAll(properties);
+            if (listener != null) {
+                batch.listeners.add(listener);
+            }
+            if (batch.properties.size() >= maxProperties) {
+                full = remove(key);
+            }
+        }
+        if (full != null) {
+            send(key, full);
+        }
+    }
+
+    /**
+     * Removes the pending batch for the User so that the caller can write it ahead of (or merged with) a newer
+     * write; returns null if there is none.
+     */
+    synchronized Batch remove(UdbKey key) {
+        Batch batch = batches.remove(key);
+        if (batch != null) {
+            batch.timer.cancel(false);
+        }
+        return batch;
+    }
+
+    void flush(UdbKey key) {
+        Batch batch = remove(key);
+        if (batch != null) {
+            send(key, batch);
+        }
+    }
+
+    void flush() {
+        List<UdbKey> keys;
+        synchronized (this) {
+            keys = new ArrayList<>(batches.keySet());
+        }
+        for (UdbKey key : keys) {
+            flush(key);
+        }
+    }
+
+    void send(UdbKey key, Batch batch) {
+        sender.post(key.networkId, key.userKey, batch.properties, batch);
+    }
+
+    // a single daemon thread shared by all instances; flushing only hands the batch to the http executor
+    static synchronized ScheduledExecutorService timer() {
+        if (timer == null) {
+            timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Adzerk-UserProperties");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return timer;
+    }
+}
@@ -0,0 +1,99 @@
+package com.adzerk.android.sdk;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the interests and retargeting segments already recorded for each User, so that repeated
+ * {@code interest/i.gif} and {@code rt/i.gif} calls can be skipped.
+ * <p>
+ * Signals are kept as sorted arrays of 64 bit hashes rather than strings, ie. 8 bytes per interest. A signal is
+ * claimed when its request is sent and released again if the request fails, so concurrent duplicates are
+ * suppressed too.
+ */
+class UserSignalFilter {
+    static final int MAX_USERS = 32;
+    static final long[] NONE = new long[0];
+    static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    static final long FNV_PRIME = 0x100000001b3L;
+
+    // access ordered, so the least recently used User is dropped first
+    @SuppressWarnings("serial")
+    final Map<UdbKey, long[]> signals = new LinkedHashMap<UdbKey, long[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UdbKey, long[]> eldest) {
+            return size() > MAX_USERS;
+        }
+    };
+
+    /**
+     * Returns true if the signal hasn't been recorded for the User yet, and records it
+     */
+    synchronized boolean claim(UdbKey key, long signal) {
+        long[] sent = get(key);
+        int index = Arrays.binarySearch(sent, signal);
+        if (index >= 0) {
+            return false;
+        }
+        index = -index - 1;
+        long[] added = new long[sent.length + 1];
+        System.arraycopy(sent, 0, added, 0, index);
+        added[index] = signal;
+        System.arraycopy(sent, index, added, index + 1, sent.length - index);
+        signals.put(key, added);
+        return true;
+    }
+
+    /**
+     * Forgets a claimed signal whose request failed
+     */
+    synchronized void release(UdbKey key, long signal) {
+        long[] sent = get(key);
+        int index = Arrays.binarySearch(sent, signal);
+        if (index < 0) {
+            return;
+        }
+        long[] removed = new long[sent.length - 1];
+        System.arraycopy(sent, 0, removed, 0, index);
+        System.arraycopy(sent, index + 1, removed, index, removed.length - index);
+        signals.put(key, removed);
+    }
+
+    /**
+     * Records the interests the engine returned for the User
+     */
+    void seed(UdbKey key, List<String> interests) {
+        if (interests == null) {
+            return;
+        }
+        for (String interest : interests) {
+            claim(key, interest(interest));
+        }
+    }
+
+    long[] get(UdbKey key) {
+        long[] sent = signals.get(key);
+        return (sent != null) ? sent : NONE;
+    }
+
+    static long interest(String interest) {
+        return hash(hash(FNV_OFFSET, "interest"), interest);
+    }
+
+    static long segment(long brandId, String segment) {
+        return hash(hash(hash(FNV_OFFSET, "segment"), String.valueOf(brandId)), segment);
+    }
+
+    // 64 bit FNV-1a over the chars of s, followed by a separator
+    static long hash(long h, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= FNV_PRIME;
+        }
+        h ^= 0xffff;
+        h *= FNV_PRIME;
+        return h;
+    }
+}
@@ -0,0 +1,198 @@
+package com.adzerk.android.sdk;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.adzerk.android.sdk.AdzerkSdk.VideoPlayer;
+import com.adzerk.android.sdk.rest.Decision;
+import com.adzerk.android.sdk.rest.Event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fires the progress events of video ads ({@link Event#ID_START}, the quartiles, {@link Event#ID_COMPLETE} and
+ * optionally {@link Event#ID_PROGRESS}) as their players reach them.
+ * <p>
+ * The offsets of a video's events are computed once its duration is known. Videos are then scheduled on one hashed
+ * timer wheel, ticked on the main thread only while videos are tracked: a video's position is read when its next
+ * event is due, not on every tick, and it is scheduled again for the time left if the player was paused or slower.
+ * So many muted autoplay ads add no threads, and few player reads. Must be used on the main thread.
+ */
+class VideoTracker implements Runnable {
+    static final long TICK_MILLIS = 100;
+    static final int WHEEL_SIZE = 64;
+    // players may stop a little before their duration
+    static final long COMPLETE_MARGIN_MILLIS = 250;
+
+    static class Video {
+        final VideoPlayer player;
+        final Decision decision;
+        final long progressMillis;
+        int[] ids;
+        long[] offsets;
+        int next;
+        boolean cancelled;
+
+        // timer wheel
+        Video nextInBucket;
+        int rounds;
+
+        Video(VideoPlayer player, Decision decision, long progressMillis) {
+            this.player = player;
+            this.decision = decision;
+            this.progressMillis = progressMillis;
+        }
+    }
+
+    final Video[] wheel = new Video[WHEEL_SIZE];
+    final List<Video> videos = new ArrayList<>();
+    int tick;
+    boolean running;
+    Handler handler;
+
+    /**
+     * Tracks the player for the Decision, replacing the Decision it was tracked for.
+     *
+     * @param progressMillis    play time at which to fire {@link Event#ID_PROGRESS}, or 0 not to fire it
+     */
+    void track(VideoPlayer player, Decision decision, long progressMillis) {
+        untrack(player);
+        Video video = new Video(player, decision, progressMillis);
+        videos.add(video);
+        schedule(video, 0);
+        if (!running) {
+            running = true;
+            postTick();
+        }
+    }
+
+    void untrack(VideoPlayer player) {
+        for (int i = 0; i < videos.size(); i++) {
+            Video video = videos.get(i);
+            if (video.player == player) {
+                // left in its bucket until it is due
+                video.cancelled = true;
+                videos.remove(i);
+                return;
+            }
+        }
+    }
+
+    int size() {
+        return videos.size();
+    }
+
+    @Override
+    public void run() {
+        tick();
+    }
+
+    void tick() {
+        int bucket = tick & (WHEEL_SIZE - 1);
+        tick++;
+        Video video = wheel[bucket];
+        wheel[bucket] = null;
+        while (video != null) {
+            Video next = video.nextInBucket;
+            video.nextInBucket = null;
+            if (video.rounds > 0) {
+                video.rounds--;
+                add(bucket, video);
+            } else if (!video.cancelled) {
+                poll(video);
+            }
+            video = next;
+        }
+        if (videos.isEmpty()) {
+            running = false;
+        } else {
+            postTick();
+        }
+    }
+
+    void poll(Video video) {
+        VideoPlayer player = video.player;
+        if (video.offsets == null) {
+            long duration = player.getDuration();
+            if (duration <= 0) {
+                // not prepared yet
+                schedule(video, TICK_MILLIS);
+                return;
+            }
+            offsets(video, duration);
+        }
+        long position = player.getCurrentPosition();
+        while (video.next < video.offsets.length && position >= video.offsets[video.next]) {
+            video.decision.fireEvent(video.ids[video.next++]);
+        }
+        if (video.next == video.offsets.length) {
+            videos.remove(video);
+        } else {
+            schedule(video, video.offsets[video.next] - position);
+        }
+    }
+
+    // Computes the offsets of the events the Decision has, in play order
+    static void offsets(Video video, long duration) {
+        // start, the quartiles, complete and progress
+        int[] ids = new int[6];
+        long[] offsets = new long[ids.length];
+        int size = 0;
+        size = add(video, Event.ID_START, 1, ids, offsets, size);
+        size = add(video, Event.ID_FIRST_QUARTILE, duration / 4, ids, offsets, size);
+        size = add(video, Event.ID_MIDPOINT, duration / 2, ids, offsets, size);
+        size = add(video, Event.ID_THIRD_QUARTILE, duration * 3 / 4, ids, offsets, size);
+        size = add(video, Event.ID_COMPLETE, Math.max(duration * 3 / 4, duration - COMPLETE_MARGIN_MILLIS), ids,
+                offsets, size);
+        if (video.progressMillis > 0) {
+            size = add(video, Event.ID_PROGRESS, video.progressMillis, ids, offsets, size);
+        }
+
+        // insertion sort by offset, keeping the order of equal offsets
+        for (int i = 1; i < size; i++) {
+            int id = ids[i];
+            long offset = offsets[i];
+            int j = i - 1;
+            while (j >= 0 && offsets[j] > offset) {
+                ids[j + 1] = ids[j];
+                offsets[j + 1] = offsets[j];
+                j--;
+            }
+            ids[j + 1] = id;
+            offsets[j + 1] = offset;
+        }
+        video.ids = Arrays.copyOf(ids, size);
+        video.offsets = Arrays.copyOf(offsets, size);
+    }
+
+    static int add(Video video, int eventId, long offset, int[] ids, long[] offsets, int size) {
+        if (video.decision.getEventUrl(eventId) == null) {
+            return size;
+        }
+        ids[size] = eventId;
+        offsets[size] = offset;
+        return size + 1;
+    }
+
+    // Adds the video to the bucket due after delayMillis, rounded up to whole ticks
+    void schedule(Video video, long delayMillis) {
+        long ticks = Math.max(1, (delayMillis + TICK_MILLIS - 1) / TICK_MILLIS);
+        ticks = Math.min(ticks, Integer.MAX_VALUE);
+        video.rounds = (int) ((ticks - 1) / WHEEL_SIZE);
+        add((int) ((tick + ticks - 1) & (WHEEL_SIZE - 1)), video);
+    }
+
+    void add(int bucket, Video video) {
+        video.nextInBucket = wheel[bucket];
+        wheel[bucket] = video;
+    }
+
+    void postTick() {
+        if (handler == null) {
+            handler = new Handler(Looper.getMainLooper());
+        }
+        handler.postDelayed(this, TICK_MILLIS);
+    }
+}
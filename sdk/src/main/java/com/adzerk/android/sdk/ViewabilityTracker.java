@@ -0,0 +1,187 @@
+package com.adzerk.android.sdk;
+
+import android.annotation.TargetApi;
+import android.graphics.Rect;
+import android.os.Build.VERSION;
+import android.os.Build.VERSION_CODES;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import android.view.View;
+
+import com.adzerk.android.sdk.rest.Decision;
+import com.adzerk.android.sdk.rest.Event;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long ad views are visible, and fires the {@link Event#ID_VISIBLE} event of an ad's Decision once
+ * the view has been continuously visible for long enough (by default half of it for one second).
+ * <p>
+ * All tracked views are sampled in a single pass on each frame, from one frame callback that is only scheduled
+ * while views are tracked; sampling a view doesn't allocate. Views are held weakly, so a view that is never
+ * untracked doesn't leak its Activity. Must be used on the main thread.
+ */
+class ViewabilityTracker implements Runnable {
+    static final float MIN_VISIBLE_FRACTION = .5f;
+    static final long MIN_VISIBLE_MILLIS = 1000;
+    static final long FRAME_MILLIS = 16;
+    static final long MAX_FRAME_GAP_MILLIS = 250;
+
+    // notified after the visible event of a Decision is fired
+    interface Listener {
+        void visible(Decision decision);
+    }
+
+    static class Slot {
+        final WeakReference<View> view;
+        Decision decision;
+        long visibleNanos;
+
+        Slot(View view, Decision decision) {
+            this.view = new WeakReference<>(view);
+            this.decision = decision;
+        }
+    }
+
+    // Choreographer is API 16; kept in its own class so that it isn't loaded on older devices
+    @TargetApi(VERSION_CODES.JELLY_BEAN)
+    static class FrameCallback implements Choreographer.FrameCallback {
+        final ViewabilityTracker tracker;
+
+        FrameCallback(ViewabilityTracker tracker) {
+            this.tracker = tracker;
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            tracker.doFrame(frameTimeNanos);
+        }
+
+        void post() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    final List<Slot> slots = new ArrayList<>();
+    final Rect rect = new Rect();
+    float minVisibleFraction = MIN_VISIBLE_FRACTION;
+    long minVisibleNanos = TimeUnit.MILLISECONDS.toNanos(MIN_VISIBLE_MILLIS);
+    long maxFrameGapNanos = TimeUnit.MILLISECONDS.toNanos(MAX_FRAME_GAP_MILLIS);
+    long lastFrameNanos;
+    boolean running;
+    FrameCallback frameCallback;
+    Handler handler;
+    Listener listener;
+
+    void setCriteria(float minVisibleFraction, long minVisibleMillis) {
+        this.minVisibleFraction = minVisibleFraction;
+        this.minVisibleNanos = TimeUnit.MILLISECONDS.toNanos(minVisibleMillis);
+    }
+
+    /**
+     * Tracks the view for the Decision, replacing the Decision it was tracked for (ie. when a list binds another
+     * ad to a recycled view). Visible time is counted from zero.
+     */
+    void track(View view, Decision decision) {
+        int index = indexOf(view);
+        if (index >= 0) {
+            Slot slot = slots.get(index);
+            slot.decision = decision;
+            slot.visibleNanos = 0;
+        } else {
+            slots.add(new Slot(view, decision));
+        }
+        if (!running) {
+            running = true;
+            lastFrameNanos = 0;
+            postFrame();
+        }
+    }
+
+    void untrack(View view) {
+        int index = indexOf(view);
+        if (index >= 0) {
+            removeAt(index);
+        }
+    }
+
+    int size() {
+        return slots.size();
+    }
+
+    void doFrame(long frameTimeNanos) {
+        long elapsed = (lastFrameNanos == 0) ? 0 : frameTimeNanos - lastFrameNanos;
+        lastFrameNanos = frameTimeNanos;
+        // views weren't sampled during a long gap between frames (ie. the app was in the background), so it isn't
+        // counted as visible time and the count restarts
+        boolean gap = elapsed > maxFrameGapNanos;
+        for (int i = slots.size() - 1; i >= 0; i--) {
+            Slot slot = slots.get(i);
+            View view = slot.view.get();
+            if (view == null) {
+                removeAt(i);
+            } else if (gap || !isVisible(view)) {
+                slot.visibleNanos = 0;
+            } else if ((slot.visibleNanos += elapsed) >= minVisibleNanos) {
+                removeAt(i);
+                slot.decision.fireEvent(Event.ID_VISIBLE);
+                if (listener != null) {
+                    listener.visible(slot.decision);
+                }
+            }
+        }
+        if (slots.isEmpty()) {
+            running = false;
+        } else {
+            postFrame();
+        }
+    }
+
+    boolean isVisible(View view) {
+        if (!view.isShown() || view.getWindowVisibility() != View.VISIBLE || !view.getGlobalVisibleRect(rect)) {
+            return false;
+        }
+        long area = (long) view.getWidth() * view.getHeight();
+        return area > 0 && (long) rect.width() * rect.height() >= minVisibleFraction * area;
+    }
+
+    void postFrame() {
+        if (VERSION.SDK_INT >= VERSION_CODES.JELLY_BEAN) {
+            if (frameCallback == null) {
+                frameCallback = new FrameCallback(this);
+            }
+            frameCallback.post();
+        } else {
+            if (handler == null) {
+                handler = new Handler(Looper.getMainLooper());
+            }
+            handler.postDelayed(this, FRAME_MILLIS);
+        }
+    }
+
+    // Frame callback before API 16
+    @Override
+    public void run() {
+        doFrame(System.nanoTime());
+    }
+
+    int indexOf(View view) {
+        for (int i = 0; i < slots.size(); i++) {
+            if (slots.get(i).view.get() == view) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Swaps the last slot in; slots are unordered
+    void removeAt(int index) {
+        int last = slots.size() - 1;
+        slots.set(index, slots.get(last));
+        slots.remove(last);
+    }
+}
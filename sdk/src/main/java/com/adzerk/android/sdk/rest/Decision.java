@@ -1,5 +1,6 @@
 package com.adzerk.android.sdk.rest;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -7,6 +8,10 @@ import java.util.List;
  * <p>
  * A {@link DecisionResponse} will contain zero or more Decisions, one per Placement that was sent in on the requestPlacement.
  * If no ad was selected for a given Placement, the corresponding Decision entry will be undefined (null).
+ * <p>
+ * Decisions are decoded by {@link DecisionTypeAdapter} into a compact form: events are kept as parallel arrays of
+ * ids and urls, and short repeated strings (content types, templates and creative data keys) are shared between
+ * Decisions.
  */
 public class Decision {
 
@@ -28,8 +33,16 @@ public class Decision {
     // list of ad contents
     List<Content> contents;
 
-    // list if Events - the IDs and tracking URLs of custom events
-    List<Event> events;
+    // the IDs and tracking URLs of custom events, sorted by id so that an event is found by binary search; null if
+    // there are no events
+    int[] eventIds;
+    String[] eventUrls;
+
+    // fires events through the SDK that decoded the Decision; null if it wasn't decoded by an SDK
+    EventTracker tracker;
+
+    // events fired by fireEvent(), by index in eventIds
+    long fired;
 
     // url endpoint that, using a GET, triggers the recording of the impression
     String impressionUrl;
@@ -91,11 +104,92 @@ public class Decision {
     }
 
     /**
-     * Returns list of {@link Event}s; the IDs and tracking URLs of custom events
+     * Returns list of {@link Event}s; the IDs and tracking URLs of custom events. The events are sorted by id, not
+     * kept in the order of the decision response. The list is created on each call; use {@link #getEventUrl(int)}
+     * or {@link #fireEvent(int)} to look up a single event.
      * @return event list
      */
     public List<Event> getEvents() {
+        if (eventIds == null) {
+            return null;
+        }
+        List<Event> events = new ArrayList<>(eventIds.length);
+        for (int i = 0; i < eventIds.length; i++) {
+            events.add(new Event(eventIds[i], eventUrls[i]));
+        }
         return events;
     }
 
+    /**
+     * Returns the number of custom events, without allocating {@link #getEvents()}. Not intended for API consumers.
+     * @return event count
+     */
+    public int getEventCount() {
+        return (eventIds != null) ? eventIds.length : 0;
+    }
+
+    /**
+     * Returns the tracking url of the event at the given index of the events sorted by id, without allocating
+     * {@link #getEvents()}. Not intended for API consumers.
+     * @param index     index from 0 to {@link #getEventCount()}
+     * @return tracking url
+     */
+    public String getEventUrlAt(int index) {
+        return eventUrls[index];
+    }
+
+    /**
+     * Returns the tracking url of the event with the given id, without scanning or allocating
+     * @param eventId   event identifier, ie. {@link Event#ID_LIKE}
+     * @return tracking url, or null if the Decision has no such event
+     */
+    public String getEventUrl(int eventId) {
+        int index = indexOfEvent(eventId);
+        return (index >= 0) ? eventUrls[index] : null;
+    }
+
+    /**
+     * Fires the tracking url of the event with the given id on the SDK's background pixel pipeline, as
+     * {@code AdzerkSdk.event(Decision, int)}. Repeated fires of the same event for this Decision are ignored, except
+     * for player events that can happen several times while the ad is shown (ie. {@link Event#ID_PAUSE}).
+     *
+     * @param eventId   event identifier, ie. {@link Event#ID_LIKE}
+     * @return true if the event was fired; false if the Decision has no such event, it was already fired, or the
+     *         Decision wasn't received from an SDK
+     */
+    public boolean fireEvent(int eventId) {
+        int index = indexOfEvent(eventId);
+        if (index < 0 || tracker == null) {
+            return false;
+        }
+        if (!Event.isRepeatable(eventId) && index < Long.SIZE) {
+            synchronized (this) {
+                if ((fired & (1L << index)) != 0) {
+                    return false;
+                }
+                fired |= 1L << index;
+            }
+        }
+        return tracker.event(this, eventId);
+    }
+
+    int indexOfEvent(int eventId) {
+        if (eventIds == null) {
+            return -1;
+        }
+        int low = 0;
+        int high = eventIds.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int id = eventIds[middle];
+            if (id < eventId) {
+                low = middle + 1;
+            } else if (id > eventId) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
 }
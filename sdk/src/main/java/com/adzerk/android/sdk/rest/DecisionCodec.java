@@ -0,0 +1,308 @@
+package com.adzerk.android.sdk.rest;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes {@link Decision}s in a compact binary form, and reads them back, to keep Decisions on disk without
+ * serializing them to JSON again. Ids and lengths are variable-length ints; strings are UTF-8 and may be longer
+ * than 64K. Not intended for API consumers.
+ */
+public class DecisionCodec {
+
+    // tags of the values in a Content's creative data and custom data
+    static final int TAG_NULL = 0;
+    static final int TAG_STRING = 1;
+    static final int TAG_NUMBER = 2;
+    static final int TAG_TRUE = 3;
+    static final int TAG_FALSE = 4;
+    static final int TAG_OBJECT = 5;
+    static final int TAG_ARRAY = 6;
+
+    // short strings repeated across Decisions are shared, as when decoding a response
+    static final StringPool pool = StringPool.SHARED;
+
+    /**
+     * Writes the Decision
+     * @param out       stream to write to
+     * @param decision  the Decision to write
+     * @throws IOException if the stream can't be written
+     */
+    public static void write(DataOutput out, Decision decision) throws IOException {
+        writeVarInt(out, decision.adId);
+        writeVarInt(out, decision.creativeId);
+        writeVarInt(out, decision.flightId);
+        writeVarInt(out, decision.campaignId);
+        writeString(out, decision.clickUrl);
+        writeString(out, decision.impressionUrl);
+
+        writeVarInt(out, (decision.contents != null) ? decision.contents.size() + 1 : 0);
+        if (decision.contents != null) {
+            for (Content content : decision.contents) {
+                writeContent(out, content);
+            }
+        }
+        writeVarInt(out, (decision.eventIds != null) ? decision.eventIds.length + 1 : 0);
+        if (decision.eventIds != null) {
+            for (int i = 0; i < decision.eventIds.length; i++) {
+                writeVarInt(out, decision.eventIds[i]);
+                writeString(out, decision.eventUrls[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads a Decision written by {@link #write(DataOutput, Decision)}
+     * @param in    stream to read from
+     * @return the Decision
+     * @throws IOException if the stream can't be read or is malformed
+     */
+    public static Decision read(DataInput in) throws IOException {
+        return read(in, null);
+    }
+
+    /**
+     * Reads a Decision written by {@link #write(DataOutput, Decision)} that fires its events through the tracker
+     * @param in        stream to read from
+     * @param tracker   fires the events of the Decision, or null
+     * @return the Decision
+     * @throws IOException if the stream can't be read or is malformed
+     */
+    public static Decision read(DataInput in, EventTracker tracker) throws IOException {
+        Decision decision = new Decision();
+        decision.tracker = tracker;
+        decision.adId = readVarInt(in);
+        decision.creativeId = readVarInt(in);
+        decision.flightId = readVarInt(in);
+        decision.campaignId = readVarInt(in);
+        decision.clickUrl = readString(in);
+        decision.impressionUrl = readString(in);
+
+        int contents = readVarInt(in) - 1;
+        if (contents >= 0) {
+            decision.contents = new ArrayList<>(contents);
+            for (int i = 0; i < contents; i++) {
+                decision.contents.add(readContent(in));
+            }
+        }
+        int events = readVarInt(in) - 1;
+        if (events >= 0) {
+            decision.eventIds = new int[events];
+            decision.eventUrls = new String[events];
+            for (int i = 0; i < events; i++) {
+                decision.eventIds[i] = readVarInt(in);
+                decision.eventUrls[i] = readString(in);
+            }
+        }
+        return decision;
+    }
+
+    static void writeContent(DataOutput out, Content content) throws IOException {
+        writeString(out, content.type);
+        writeString(out, content.template);
+        writeString(out, content.customTemplate);
+        writeString(out, content.body);
+        ContentData data = content.contentData;
+        out.writeBoolean(data != null);
+        if (data != null) {
+            writeValue(out, data.creativeData);
+            writeJson(out, data.creativeMetadataJson);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static Content readContent(DataInput in) throws IOException {
+        Content content = new Content();
+        content.type = pool.intern(readString(in));
+        content.template = pool.intern(readString(in));
+        content.customTemplate = readString(in);
+        content.body = readString(in);
+        if (in.readBoolean()) {
+            Map<String, Object> creativeData = (Map<String, Object>) readValue(in);
+            JsonElement customData = readJson(in);
+            content.contentData = new ContentData(creativeData,
+                    customData.isJsonObject() ? customData.getAsJsonObject() : null);
+        }
+        return content;
+    }
+
+    // Values of maps deserialized by Gson: strings, doubles, booleans, maps and lists
+    static void writeValue(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(TAG_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Number) {
+            out.writeByte(TAG_NUMBER);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(TAG_OBJECT);
+            writeVarInt(out, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeString(out, String.valueOf(entry.getKey()));
+                writeValue(out, entry.getValue());
+            }
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.writeByte(TAG_ARRAY);
+            writeVarInt(out, list.size());
+            for (Object item : list) {
+                writeValue(out, item);
+            }
+        } else {
+            out.writeByte(TAG_STRING);
+            writeString(out, value.toString());
+        }
+    }
+
+    static Object readValue(DataInput in) throws IOException {
+        int tag = in.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return pool.intern(readString(in));
+            case TAG_NUMBER:
+                return in.readDouble();
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_OBJECT:
+                int size = readVarInt(in);
+                Map<String, Object> map = new LinkedHashMap<>(size * 4 / 3 + 1);
+                for (int i = 0; i < size; i++) {
+                    map.put(pool.intern(readString(in)), readValue(in));
+                }
+                return map;
+            case TAG_ARRAY:
+                int length = readVarInt(in);
+                List<Object> list = new ArrayList<>(length);
+                for (int i = 0; i < length; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            default:
+                throw new IOException("Unknown tag " + tag);
+        }
+    }
+
+    // Numbers are kept exactly, whatever their type in the app's customData
+    static void writeJson(DataOutput out, JsonElement json) throws IOException {
+        if (json == null || json.isJsonNull()) {
+            out.writeByte(TAG_NULL);
+        } else if (json.isJsonObject()) {
+            out.writeByte(TAG_OBJECT);
+            writeVarInt(out, json.getAsJsonObject().entrySet().size());
+            for (Map.Entry<String, JsonElement> entry : json.getAsJsonObject().entrySet()) {
+                writeString(out, entry.getKey());
+                writeJson(out, entry.getValue());
+            }
+        } else if (json.isJsonArray()) {
+            JsonArray array = json.getAsJsonArray();
+            out.writeByte(TAG_ARRAY);
+            writeVarInt(out, array.size());
+            for (JsonElement item : array) {
+                writeJson(out, item);
+            }
+        } else {
+            JsonPrimitive primitive = json.getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                out.writeByte(primitive.getAsBoolean() ? TAG_TRUE : TAG_FALSE);
+            } else {
+                out.writeByte(primitive.isNumber() ? TAG_NUMBER : TAG_STRING);
+                writeString(out, primitive.getAsString());
+            }
+        }
+    }
+
+    static JsonElement readJson(DataInput in) throws IOException {
+        int tag = in.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return JsonNull.INSTANCE;
+            case TAG_STRING:
+                return new JsonPrimitive(pool.intern(readString(in)));
+            case TAG_NUMBER:
+                return new JsonPrimitive(new BigDecimal(readString(in)));
+            case TAG_TRUE:
+                return new JsonPrimitive(true);
+            case TAG_FALSE:
+                return new JsonPrimitive(false);
+            case TAG_OBJECT:
+                JsonObject object = new JsonObject();
+                int size = readVarInt(in);
+                for (int i = 0; i < size; i++) {
+                    object.add(pool.intern(readString(in)), readJson(in));
+                }
+                return object;
+            case TAG_ARRAY:
+                JsonArray array = new JsonArray();
+                int length = readVarInt(in);
+                for (int i = 0; i < length; i++) {
+                    array.add(readJson(in));
+                }
+                return array;
+            default:
+                throw new IOException("Unknown tag " + tag);
+        }
+    }
+
+    // Length + 1 of the UTF-8 bytes, 0 for null
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes("UTF-8");
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = readVarInt(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    // 7 bits per byte, low bits first
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed int");
+    }
+}
@@ -16,6 +16,23 @@ public class DecisionResponse {
     // each Decision represents the ad that was selected to be served for a given Placement
     Map<String, Decision> decisions;
 
+    // true if the Decisions were made by the SDK from ads fetched earlier
+    transient boolean offline;
+
+    public DecisionResponse() {
+    }
+
+    /**
+     * Creates a response with Decisions made by the SDK, without a request to the engine.
+     *
+     * @param decisions Decisions by placement name
+     * @param offline   true if the Decisions were made from ads fetched earlier, while the engine was unreachable
+     */
+    public DecisionResponse(Map<String, Decision> decisions, boolean offline) {
+        this.decisions = decisions;
+        this.offline = offline;
+    }
+
     /**
      * Returns the User key which uniquely identifies the user that places the requestPlacement
      * @return user key
@@ -40,4 +57,13 @@ public class DecisionResponse {
         return decisions.get(name);
     }
 
+    /**
+     * Returns true if the Decisions were made by the SDK from ads fetched earlier, because the engine could not be
+     * reached. Impressions of these Decisions are delivered once the network is available again.
+     * @return true if served offline
+     */
+    public boolean isOffline() {
+        return offline;
+    }
+
 }
@@ -0,0 +1,203 @@
+package com.adzerk.android.sdk.rest;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streams a {@link Decision} in the same form as Gson's reflective adapter, decoding its events straight into
+ * parallel arrays of ids and urls sorted by id (no Event objects), and sharing the type and template strings of its
+ * Contents through the {@link StringPool}. Decoded Decisions fire their events through the {@link EventTracker}.
+ */
+class DecisionTypeAdapter extends TypeAdapter<Decision> {
+
+    static class Factory implements TypeAdapterFactory {
+        final EventTracker tracker;
+
+        Factory(EventTracker tracker) {
+            this.tracker = tracker;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (type.getRawType() != Decision.class) {
+                return null;
+            }
+            return (TypeAdapter<T>) new DecisionTypeAdapter(gson, tracker);
+        }
+    }
+
+    static final int[] NO_IDS = new int[0];
+    static final String[] NO_URLS = new String[0];
+
+    final TypeAdapter<List<Content>> contentsAdapter;
+    final StringPool pool = StringPool.SHARED;
+    final EventTracker tracker;
+
+    DecisionTypeAdapter(Gson gson, EventTracker tracker) {
+        this.contentsAdapter = gson.getAdapter(new TypeToken<List<Content>>() {});
+        this.tracker = tracker;
+    }
+
+    @Override
+    public void write(JsonWriter out, Decision decision) throws IOException {
+        if (decision == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        out.name("adId").value(decision.adId);
+        out.name("creativeId").value(decision.creativeId);
+        out.name("flightId").value(decision.flightId);
+        out.name("campaignId").value(decision.campaignId);
+        if (decision.clickUrl != null) {
+            out.name("clickUrl").value(decision.clickUrl);
+        }
+        if (decision.contents != null) {
+            contentsAdapter.write(out.name("contents"), decision.contents);
+        }
+        if (decision.eventIds != null) {
+            out.name("events").beginArray();
+            for (int i = 0; i < decision.eventIds.length; i++) {
+                out.beginObject();
+                out.name("id").value(decision.eventIds[i]);
+                if (decision.eventUrls[i] != null) {
+                    out.name("url").value(decision.eventUrls[i]);
+                }
+                out.endObject();
+            }
+            out.endArray();
+        }
+        if (decision.impressionUrl != null) {
+            out.name("impressionUrl").value(decision.impressionUrl);
+        }
+        out.endObject();
+    }
+
+    @Override
+    public Decision read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        Decision decision = new Decision();
+        decision.tracker = tracker;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "adId":
+                    decision.adId = in.nextInt();
+                    break;
+                case "creativeId":
+                    decision.creativeId = in.nextInt();
+                    break;
+                case "flightId":
+                    decision.flightId = in.nextInt();
+                    break;
+                case "campaignId":
+                    decision.campaignId = in.nextInt();
+                    break;
+                case "clickUrl":
+                    decision.clickUrl = in.nextString();
+                    break;
+                case "impressionUrl":
+                    decision.impressionUrl = in.nextString();
+                    break;
+                case "contents":
+                    decision.contents = readContents(in);
+                    break;
+                case "events":
+                    readEvents(in, decision);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return decision;
+    }
+
+    List<Content> readContents(JsonReader in) throws IOException {
+        List<Content> contents = contentsAdapter.read(in);
+        if (contents != null) {
+            for (Content content : contents) {
+                if (content != null) {
+                    content.type = pool.intern(content.type);
+                    content.template = pool.intern(content.template);
+                }
+            }
+        }
+        return contents;
+    }
+
+    void readEvents(JsonReader in, Decision decision) throws IOException {
+        int[] ids = NO_IDS;
+        String[] urls = NO_URLS;
+        int count = 0;
+        in.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            int id = 0;
+            String url = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                } else if (name.equals("id")) {
+                    id = in.nextInt();
+                } else if (name.equals("url")) {
+                    url = in.nextString();
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(4, count * 2));
+                urls = Arrays.copyOf(urls, ids.length);
+            }
+            ids[count] = id;
+            urls[count++] = url;
+        }
+        in.endArray();
+        decision.eventIds = (count == ids.length) ? ids : Arrays.copyOf(ids, count);
+        decision.eventUrls = (count == urls.length) ? urls : Arrays.copyOf(urls, count);
+        sortEvents(decision.eventIds, decision.eventUrls);
+    }
+
+    // Insertion sort by id, keeping the order of equal ids; events usually arrive sorted already
+    static void sortEvents(int[] ids, String[] urls) {
+        for (int i = 1; i < ids.length; i++) {
+            int id = ids[i];
+            String url = urls[i];
+            int j = i - 1;
+            while (j >= 0 && ids[j] > id) {
+                ids[j + 1] = ids[j];
+                urls[j + 1] = urls[j];
+                j--;
+            }
+            ids[j + 1] = id;
+            urls[j + 1] = url;
+        }
+    }
+}
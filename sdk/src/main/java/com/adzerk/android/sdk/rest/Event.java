@@ -59,12 +59,24 @@ public class Event {
     public static final int ID_CUSTOM_07 = 110;
 
 
+    // player events that can happen several times while an ad is shown
+    static final int FIRST_REPEATABLE = ID_MUTE;
+    static final int LAST_REPEATABLE = ID_COLLAPSE;
+
     // event identifier
     int id;
 
     // url to call to track an event
     String url;
 
+    public Event() {
+    }
+
+    Event(int id, String url) {
+        this.id = id;
+        this.url = url;
+    }
+
     /**
      * Returns an event identifier
      * @return numeric event id
@@ -81,4 +93,12 @@ public class Event {
         return url;
     }
 
+    /**
+     * Returns true for events that can be tracked several times for one ad view, ie. {@link #ID_PAUSE}
+     * @param eventId   event identifier
+     * @return true for player events from {@link #ID_MUTE} to {@link #ID_COLLAPSE}
+     */
+    public static boolean isRepeatable(int eventId) {
+        return eventId >= FIRST_REPEATABLE && eventId <= LAST_REPEATABLE;
+    }
 }
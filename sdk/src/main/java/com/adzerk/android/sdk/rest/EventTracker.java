@@ -0,0 +1,17 @@
+package com.adzerk.android.sdk.rest;
+
+/**
+ * Fires the tracking urls of a Decision's events for {@link Decision#fireEvent(int)}; given to Decisions as they
+ * are decoded. Not intended for API consumers.
+ */
+public interface EventTracker {
+
+    /**
+     * Fires the tracking url of the Decision's event with the given id.
+     *
+     * @param decision  the Decision whose ad the user interacted with
+     * @param eventId   event identifier
+     * @return false if the Decision has no event with the id, or its url is malformed
+     */
+    boolean event(Decision decision, int eventId);
+}
@@ -0,0 +1,133 @@
+package com.adzerk.android.sdk.rest;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates the {@link Gson} instance used to serialize Requests and deserialize responses of the Adzerk API.
+ * Not intended for API consumers.
+ */
+public class GsonFactory {
+
+    /**
+     * Returns a new Gson configured for the Adzerk API model classes.
+     * @return gson instance
+     */
+    public static Gson create() {
+        return create(null);
+    }
+
+    /**
+     * Returns a new Gson configured for the Adzerk API model classes, that adds the decorator's state to every
+     * serialized {@link Request}.
+     * @param decorator SDK state to add to Requests, or null
+     * @return gson instance
+     */
+    public static Gson create(RequestDecorator decorator) {
+        return create(decorator, null);
+    }
+
+    /**
+     * Returns a new Gson configured for the Adzerk API model classes, that adds the decorator's state to every
+     * serialized {@link Request} and gives decoded Decisions the tracker that fires their events.
+     * @param decorator SDK state to add to Requests, or null
+     * @param tracker   fires the events of decoded Decisions, or null
+     * @return gson instance
+     */
+    public static Gson create(RequestDecorator decorator, EventTracker tracker) {
+        return new GsonBuilder()
+              .registerTypeAdapter(ContentData.class, new ContentDataDeserializer())
+              .registerTypeAdapter(UserProperties.class, new UserPropertiesDeserializer())
+              .registerTypeAdapterFactory(new RequestTypeAdapter.Factory(decorator))
+              .registerTypeAdapterFactory(new DecisionTypeAdapter.Factory(tracker))
+              .create();
+    }
+
+    // Capture the default deserialization and JsonObject for the 'data.customData' element. The map and the
+    // JsonObject share their keys and string values, and short strings are shared between Contents.
+    static class ContentDataDeserializer implements JsonDeserializer<ContentData> {
+        final StringPool pool = StringPool.SHARED;
+
+        @Override
+        public ContentData deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
+            JsonObject dataObject = (JsonObject) share(json.getAsJsonObject());
+            @SuppressWarnings("unchecked")
+            Map<String, Object> map = (Map<String, Object>) toValue(dataObject);
+            JsonObject customDataObject = dataObject.getAsJsonObject("customData");
+
+            return new ContentData(map, customDataObject);
+        }
+
+        // Copies the tree with pooled keys and short strings
+        JsonElement share(JsonElement json) {
+            if (json.isJsonObject()) {
+                JsonObject object = new JsonObject();
+                for (Map.Entry<String, JsonElement> entry : json.getAsJsonObject().entrySet()) {
+                    object.add(pool.intern(entry.getKey()), share(entry.getValue()));
+                }
+                return object;
+            } else if (json.isJsonArray()) {
+                JsonArray array = new JsonArray();
+                for (JsonElement item : json.getAsJsonArray()) {
+                    array.add(share(item));
+                }
+                return array;
+            } else if (json.isJsonPrimitive() && json.getAsJsonPrimitive().isString()) {
+                String value = json.getAsString();
+                String pooled = pool.intern(value);
+                return (pooled == value) ? json : new JsonPrimitive(pooled);
+            }
+            return json;
+        }
+
+        // The same values as Gson's Map deserialization, reusing the tree's strings
+        Object toValue(JsonElement json) {
+            if (json.isJsonObject()) {
+                Map<String, Object> map = new LinkedHashMap<>();
+                for (Map.Entry<String, JsonElement> entry : json.getAsJsonObject().entrySet()) {
+                    map.put(entry.getKey(), toValue(entry.getValue()));
+                }
+                return map;
+            } else if (json.isJsonArray()) {
+                List<Object> list = new ArrayList<>();
+                for (JsonElement item : json.getAsJsonArray()) {
+                    list.add(toValue(item));
+                }
+                return list;
+            } else if (json.isJsonNull()) {
+                return null;
+            }
+            JsonPrimitive primitive = json.getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                return primitive.getAsBoolean();
+            } else if (primitive.isNumber()) {
+                return primitive.getAsDouble();
+            }
+            return primitive.getAsString();
+        }
+    }
+
+    // Capture the default deserialization and JsonObject for the 'custom' element
+    static class UserPropertiesDeserializer implements JsonDeserializer<UserProperties> {
+
+        @Override
+        public UserProperties deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
+            JsonObject dataObject = json.getAsJsonObject();
+            Map<String, Object> map = context.deserialize(dataObject, Map.class);
+            return new UserProperties(map, dataObject);
+        }
+    }
+}
@@ -61,6 +61,9 @@ public class Placement {
     Set<Integer> eventIds;
 
 
+    private Placement() {
+    }
+
     /**
      * Creates a Placement with all required fields. A Placement identifies a place where an ad can be served
      * and has a unique divName. To request multiple ads using a single Request you specify multiple Placements.
@@ -206,10 +209,10 @@ public class Placement {
     /**
      * Returns the campaign id used for selections ads
      *
-     * @return numeric campaign id
+     * @return numeric campaign id, or 0 if not specified
      */
     public int getCampaignId() {
-        return campaignId;
+        return (campaignId != null) ? campaignId : 0;
     }
 
     /**
@@ -226,10 +229,10 @@ public class Placement {
     /**
      * Returns the numeric flight id; if specified, only consider ads in that flight
      *
-     * @return  numeric flight id
+     * @return  numeric flight id, or 0 if not specified
      */
     public int getFlightId() {
-        return flightId;
+        return (flightId != null) ? flightId : 0;
     }
 
     /**
@@ -246,10 +249,10 @@ public class Placement {
     /**
      * Returns the numeric ad id; if specified, only serve that ad if possible
      *
-     * @return numeric ad id
+     * @return numeric ad id, or 0 if not specified
      */
     public int getAdId() {
-        return adId;
+        return (adId != null) ? adId : 0;
     }
 
     /**
@@ -356,4 +359,26 @@ public class Placement {
         }
         return this;
     }
+
+    /**
+     * Returns a copy of this Placement with another name; its remaining parameters are shared with this Placement.
+     *
+     * @param divName   unique name for the copy
+     * @return the copy
+     */
+    public Placement withDivName(@NonNull String divName) {
+        Placement copy = new Placement();
+        copy.divName = divName;
+        copy.networkId = networkId;
+        copy.siteId = siteId;
+        copy.adTypes = adTypes;
+        copy.zoneIds = zoneIds;
+        copy.campaignId = campaignId;
+        copy.flightId = flightId;
+        copy.adId = adId;
+        copy.clickUrl = clickUrl;
+        copy.properties = properties;
+        copy.eventIds = eventIds;
+        return copy;
+    }
 }
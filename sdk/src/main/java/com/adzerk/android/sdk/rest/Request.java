@@ -452,4 +452,23 @@ public class Request {
     private void setAllFlightViewTimes(Map<Integer, List<Long>> flightViewTimes) {
         this.flightViewTimes = flightViewTimes;
     }
+
+    /**
+     * Returns a copy of this Request with other Placements; its remaining parameters are shared with this Request.
+     *
+     * @param placements list of placements where an ad can be served (required)
+     * @return  the copy
+     */
+    public Request withPlacements(@NonNull List<Placement> placements) {
+        Request copy = new Builder(placements).build();
+        copy.user = user;
+        copy.keywords = keywords;
+        copy.referrer = referrer;
+        copy.url = url;
+        copy.time = time;
+        copy.ip = ip;
+        copy.blockedCreatives = blockedCreatives;
+        copy.flightViewTimes = flightViewTimes;
+        return copy;
+    }
 }
@@ -0,0 +1,39 @@
+package com.adzerk.android.sdk.rest;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Adds state kept by the SDK (ie. flight view times recorded from impressions) to every {@link Request} as it is
+ * serialized. Not intended for API consumers.
+ */
+public interface RequestDecorator {
+
+    /**
+     * Returns true if {@link #writeBlockedCreatives(JsonWriter, Set)} would write any creatives
+     */
+    boolean hasBlockedCreatives();
+
+    /**
+     * Writes creative ids into the open blockedCreatives array.
+     *
+     * @param out       writer positioned inside the blockedCreatives array
+     * @param skip      creatives already blocked on the Request; may be null
+     */
+    void writeBlockedCreatives(JsonWriter out, Set<Integer> skip) throws IOException;
+
+    /**
+     * Returns true if {@link #writeFlightViewTimes(JsonWriter, Set)} would write any flights
+     */
+    boolean hasFlightViewTimes();
+
+    /**
+     * Writes 'flightId': [ times... ] members into the open flightViewTimes object.
+     *
+     * @param out       writer positioned inside the flightViewTimes object
+     * @param skip      flights whose view times were set on the Request, which take precedence; may be null
+     */
+    void writeFlightViewTimes(JsonWriter out, Set<Integer> skip) throws IOException;
+}
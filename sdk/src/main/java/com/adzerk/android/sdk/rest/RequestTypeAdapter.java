@@ -0,0 +1,131 @@
+package com.adzerk.android.sdk.rest;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streams a {@link Request} in the same form as Gson's reflective adapter, adding the blocked creatives, view times
+ * and other state supplied by a {@link RequestDecorator}. Reading is left to the reflective adapter.
+ */
+class RequestTypeAdapter extends TypeAdapter<Request> {
+
+    static class Factory implements TypeAdapterFactory {
+        final RequestDecorator decorator;
+
+        Factory(RequestDecorator decorator) {
+            this.decorator = decorator;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (type.getRawType() != Request.class) {
+                return null;
+            }
+            TypeAdapter<Request> delegate = gson.getDelegateAdapter(this, TypeToken.get(Request.class));
+            return (TypeAdapter<T>) new RequestTypeAdapter(gson, delegate, decorator);
+        }
+    }
+
+    final TypeAdapter<Request> delegate;
+    final RequestDecorator decorator;
+    final TypeAdapter<List<Placement>> placementsAdapter;
+    final TypeAdapter<User> userAdapter;
+    final TypeAdapter<Set<String>> keywordsAdapter;
+
+    RequestTypeAdapter(Gson gson, TypeAdapter<Request> delegate, RequestDecorator decorator) {
+        this.delegate = delegate;
+        this.decorator = decorator;
+        this.placementsAdapter = gson.getAdapter(new TypeToken<List<Placement>>() {});
+        this.userAdapter = gson.getAdapter(User.class);
+        this.keywordsAdapter = gson.getAdapter(new TypeToken<Set<String>>() {});
+    }
+
+    @Override
+    public void write(JsonWriter out, Request request) throws IOException {
+        if (request == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        if (request.placements != null) {
+            placementsAdapter.write(out.name("placements"), request.placements);
+        }
+        if (request.user != null) {
+            userAdapter.write(out.name("user"), request.user);
+        }
+        if (request.keywords != null) {
+            keywordsAdapter.write(out.name("keywords"), request.keywords);
+        }
+        if (request.referrer != null) {
+            out.name("referrer").value(request.referrer);
+        }
+        if (request.url != null) {
+            out.name("url").value(request.url);
+        }
+        if (request.time != null) {
+            out.name("time").value(request.time.longValue());
+        }
+        if (request.ip != null) {
+            out.name("ip").value(request.ip);
+        }
+        writeBlockedCreatives(out, request.blockedCreatives);
+        writeFlightViewTimes(out, request.flightViewTimes);
+        out.endObject();
+    }
+
+    void writeBlockedCreatives(JsonWriter out, Set<Integer> blockedCreatives) throws IOException {
+        boolean decorated = decorator != null && decorator.hasBlockedCreatives();
+        if (blockedCreatives == null && !decorated) {
+            return;
+        }
+
+        out.name("blockedCreatives").beginArray();
+        if (blockedCreatives != null) {
+            for (Integer creativeId : blockedCreatives) {
+                out.value(creativeId);
+            }
+        }
+        if (decorated) {
+            decorator.writeBlockedCreatives(out, blockedCreatives);
+        }
+        out.endArray();
+    }
+
+    void writeFlightViewTimes(JsonWriter out, Map<Integer, List<Long>> flightViewTimes) throws IOException {
+        boolean decorated = decorator != null && decorator.hasFlightViewTimes();
+        if (flightViewTimes == null && !decorated) {
+            return;
+        }
+
+        out.name("flightViewTimes").beginObject();
+        if (flightViewTimes != null) {
+            for (Map.Entry<Integer, List<Long>> flight : flightViewTimes.entrySet()) {
+                out.name(String.valueOf(flight.getKey())).beginArray();
+                for (Long time : flight.getValue()) {
+                    out.value(time);
+                }
+                out.endArray();
+            }
+        }
+        if (decorated) {
+            decorator.writeFlightViewTimes(out, flightViewTimes != null ? flightViewTimes.keySet() : null);
+        }
+        out.endObject();
+    }
+
+    @Override
+    public Request read(JsonReader in) throws IOException {
+        return delegate.read(in);
+    }
+}
@@ -0,0 +1,34 @@
+package com.adzerk.android.sdk.rest;
+
+/**
+ * Shares the short strings that repeat across decoded Decisions (content types, templates, keys and small values
+ * of creative data), so that each is kept once instead of once per Decision.
+ * <p>
+ * A fixed table indexed by hash: a string replaces whatever was in its slot, so the pool never grows and needs no
+ * lock. Racing threads may each keep their own copy, which only costs the sharing.
+ */
+class StringPool {
+    static final int SIZE = 1024;
+    static final int MAX_LENGTH = 48;
+
+    static final StringPool SHARED = new StringPool();
+
+    final String[] table = new String[SIZE];
+
+    /**
+     * Returns an equal pooled string, or the string itself if it isn't pooled yet or is too long to be worth it
+     */
+    String intern(String value) {
+        if (value == null || value.length() > MAX_LENGTH) {
+            return value;
+        }
+        int hash = value.hashCode();
+        int index = (hash ^ (hash >>> 16)) & (SIZE - 1);
+        String pooled = table[index];
+        if (value.equals(pooled)) {
+            return pooled;
+        }
+        table[index] = value;
+        return value;
+    }
+}
@@ -0,0 +1,140 @@
+package com.adzerk.android.sdk;
+
+import android.os.SystemClock;
+
+import com.adzerk.android.sdk.rest.Decision;
+import com.adzerk.android.sdk.rest.Placement;
+import com.adzerk.android.sdk.rest.Request;
+import com.adzerk.android.sdk.rest.User;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk=25, constants=BuildConfig.class)
+public class AdPoolTest {
+
+    static long networkId = 9792L;
+    static long siteId = 306998L;
+
+    static final String RESPONSE = "{" +
+          "    \"decisions\": {" +
+          "        \"feed#0\": { \"adId\": 1, \"impressionUrl\": \"http://127.0.0.1:1/i.gif?a=1\" }, " +
+          "        \"feed#1\": { \"adId\": 2, \"impressionUrl\": \"http://127.0.0.1:1/i.gif?a=2\" }, " +
+          "        \"banner#0\": { \"adId\": 3, \"impressionUrl\": \"http://127.0.0.1:1/i.gif?a=3\" }, " +
+          "        \"banner#1\": null" +
+          "    }" +
+          "}";
+
+    MockClient client;
+    AdzerkSdk sdk;
+    AdPool pool;
+
+    @Before
+    public void setup() {
+        Executor direct = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        client = new MockClient(RESPONSE);
+        sdk = new AdzerkSdk.Builder()
+                .setClient(client)
+                .setHttpExecutor(direct)
+                .setCallbackExecutor(direct)
+                .build();
+        pool = new AdPool(sdk, 2, 60000)
+                .addPlacement(new Placement("feed", networkId, siteId, 5))
+                .addPlacement(new Placement("banner", networkId, siteId, 4));
+    }
+
+    @Test
+    public void itShouldFillAllPlacementsInOneRequest() throws IOException {
+        pool.fill();
+
+        assertThat(client.getRequests()).hasSize(1);
+        assertThat(sentBody(0)).contains("feed#0", "feed#1", "banner#0", "banner#1");
+        assertThat(pool.size("feed")).isEqualTo(2);
+        assertThat(pool.size("banner")).isEqualTo(1);
+    }
+
+    @Test
+    public void itShouldHandOutOldestDecisionAndRefill() throws IOException {
+        pool.fill();
+
+        Decision first = pool.poll("feed");
+
+        assertThat(first.getAdId()).isEqualTo(1);
+        assertThat(client.getRequests()).hasSize(2);
+        assertThat(sentBody(1)).contains("feed#0", "banner#0").doesNotContain("feed#1");
+        assertThat(pool.size("feed")).isEqualTo(2);
+        assertThat(pool.poll("feed").getAdId()).isEqualTo(2);
+    }
+
+    @Test
+    public void itShouldSendUserAndKeywordsOfRequestWithRefills() throws IOException {
+        pool.setRequest(new Request.Builder()
+                .addPlacement(new Placement("feed", networkId, siteId, 5))
+                .setUser(new User("ue1-abc"))
+                .addKeywords("sports")
+                .build());
+
+        pool.fill();
+        pool.poll("feed");
+
+        assertThat(sentBody(0)).contains("ue1-abc", "sports", "feed#0", "banner#0");
+        assertThat(sentBody(1)).contains("ue1-abc", "sports", "feed#0");
+    }
+
+    @Test
+    public void itShouldNotRefillWhileFull() {
+        pool = new AdPool(sdk, 2, 60000).addPlacement(new Placement("feed", networkId, siteId, 5));
+        pool.fill();
+        pool.fill();
+
+        assertThat(client.getRequests()).hasSize(1);
+    }
+
+    @Test
+    public void itShouldEvictExpiredDecisions() {
+        pool.fill();
+        SystemClock.sleep(60001);
+
+        assertThat(pool.size("feed")).isEqualTo(0);
+        assertThat(pool.poll("banner")).isNull();
+        assertThat(pool.size("feed")).isEqualTo(2);
+    }
+
+    @Test
+    public void itShouldRequestAgainAfterError() {
+        client.enqueue(MockClient.Fault.connectionReset());
+        pool.fill();
+        assertThat(pool.size("feed")).isEqualTo(0);
+
+        pool.fill();
+
+        assertThat(client.getRequests()).hasSize(2);
+        assertThat(pool.size("feed")).isEqualTo(2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void itShouldRejectUnknownPlacement() {
+        pool.poll("sidebar");
+    }
+
+    String sentBody(int index) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        client.getRequests().get(index).getBody().writeTo(body);
+        return body.toString("UTF-8");
+    }
+}
@@ -0,0 +1,117 @@
+package com.adzerk.android.sdk;
+
+import com.adzerk.android.sdk.AdzerkMetrics.Snapshot;
+import com.adzerk.android.sdk.AdzerkMetrics.TimerSnapshot;
+import com.adzerk.android.sdk.rest.AdzerkService;
+import com.adzerk.android.sdk.rest.Placement;
+import com.adzerk.android.sdk.rest.Request;
+import com.adzerk.android.sdk.rest.User;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.TimeUnit;
+
+import retrofit.Callback;
+import retrofit.RetrofitError;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk=25, constants=BuildConfig.class)
+public class AdzerkMetricsTest {
+
+    AdzerkSdk sdk;
+
+    @Mock AdzerkService api;
+
+    static String userKey = "ue1-d720342a233c4631a58dfb6b54f43480";
+    static long networkId = 9792L;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        sdk = AdzerkSdk.createInstance(api);
+    }
+
+    @Test
+    public void itShouldReportPercentilesWithinBucketResolution() {
+        AdzerkMetrics.Timer timer = new AdzerkMetrics.Timer();
+        for (int i = 1; i <= 1000; i++) {
+            timer.record(TimeUnit.MILLISECONDS.toNanos(i), true);
+        }
+
+        TimerSnapshot snapshot = timer.snapshot();
+        assertThat(snapshot.getCount()).isEqualTo(1000);
+        assertThat(snapshot.getErrorCount()).isEqualTo(0);
+        assertThat(snapshot.getMaxMicros()).isEqualTo(1000000);
+        assertThat(snapshot.getPercentileMicros(0.5)).isBetween(500000L, 562500L);
+        assertThat(snapshot.getPercentileMicros(0.99)).isBetween(990000L, 1000000L);
+    }
+
+    @Test
+    public void itShouldMapEveryBucketWithinItsBounds() {
+        for (long micros = 0; micros < 100000; micros += 7) {
+            int index = AdzerkMetrics.Timer.bucketIndex(micros);
+            assertThat(AdzerkMetrics.Timer.bucketUpperBound(index)).isGreaterThanOrEqualTo(micros);
+            if (index > 0) {
+                assertThat(AdzerkMetrics.Timer.bucketUpperBound(index - 1)).isLessThan(micros);
+            }
+        }
+    }
+
+    @Test
+    public void itShouldTimeSynchronousCalls() {
+        when(api.readUser(eq(networkId), eq(userKey))).thenReturn(new User(userKey));
+
+        sdk.readUserSynchronous(networkId, userKey);
+
+        TimerSnapshot timer = sdk.getMetrics().snapshot().getTimer(AdzerkMetrics.READ_USER);
+        assertThat(timer.getCount()).isEqualTo(1);
+        assertThat(timer.getSuccessCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void itShouldTimeAsynchronousCallsWhenCallbackCompletes() {
+        Request request = new Request.Builder().addPlacement(new Placement("div1", 9709L, 70464L, 5)).build();
+        sdk.requestPlacement(request, null);
+
+        ArgumentCaptor<Callback> captor = ArgumentCaptor.forClass(Callback.class);
+        verify(api).request(eq(request), captor.capture());
+        assertThat(sdk.getMetrics().snapshot().getTimer(AdzerkMetrics.REQUEST).getCount()).isEqualTo(0);
+
+        captor.getValue().failure(RetrofitError.unexpectedError("", new RuntimeException()));
+
+        TimerSnapshot timer = sdk.getMetrics().snapshot().getTimer(AdzerkMetrics.REQUEST);
+        assertThat(timer.getCount()).isEqualTo(1);
+        assertThat(timer.getErrorCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void itShouldTimeDeserialization() {
+        AdzerkSdk sdk = AdzerkSdk.createInstance(new MockClient("{ \"key\": \"" + userKey + "\" }"));
+        sdk.readUserSynchronous(networkId, userKey);
+
+        assertThat(sdk.getMetrics().snapshot().getTimer(AdzerkMetrics.DECODE_USER).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void itShouldResetAndExport() {
+        sdk.readUserSynchronous(networkId, userKey);
+        sdk.getMetrics().reset();
+
+        Snapshot snapshot = sdk.getMetrics().snapshot();
+        assertThat(snapshot.getTimer(AdzerkMetrics.READ_USER).getCount()).isEqualTo(0);
+        assertThat(snapshot.toJson()).contains("\"readUser\"").contains("p99_us");
+    }
+}
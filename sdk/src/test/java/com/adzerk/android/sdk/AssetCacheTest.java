@@ -0,0 +1,157 @@
+package com.adzerk.android.sdk;
+
+import com.adzerk.android.sdk.rest.DecisionResponse;
+import com.adzerk.android.sdk.rest.GsonFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk=25, constants=BuildConfig.class)
+public class AssetCacheTest {
+
+    Executor direct = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    File directory;
+    File source;
+
+    @Before
+    public void setup() {
+        directory = new File(RuntimeEnvironment.application.getCacheDir(), AssetCache.DIRECTORY);
+        source = new File(RuntimeEnvironment.application.getFilesDir(), "creatives");
+        source.mkdirs();
+    }
+
+    @Test
+    public void itShouldPrefetchImagesOfDecisions() throws IOException {
+        String url = asset("a.png", 100);
+        DecisionResponse response = GsonFactory.create().fromJson("{" +
+              "    \"decisions\": {" +
+              "        \"div1\": { \"adId\": 1, \"contents\": [ { \"type\": \"html\", \"template\": \"image\", " +
+              "                    \"data\": { \"imageUrl\": \"" + url + "\" } } ] }, " +
+              "        \"div2\": null" +
+              "    }" +
+              "}", DecisionResponse.class);
+        AssetCache cache = new AssetCache(directory, 1000, direct);
+
+        cache.prefetch(response);
+
+        File file = cache.get(url);
+        assertThat(file).isNotNull();
+        assertThat(file.getParentFile()).isEqualTo(directory);
+        assertThat(file.getName()).isEqualTo(AssetCache.key(url)).hasSize(40);
+        assertThat(file.length()).isEqualTo(100);
+    }
+
+    @Test
+    public void itShouldDeleteLeastRecentlyUsedAssets() throws IOException {
+        String a = asset("a.png", 400);
+        String b = asset("b.png", 400);
+        String c = asset("c.png", 400);
+        AssetCache cache = new AssetCache(directory, 1000, direct);
+
+        cache.prefetch(a);
+        cache.prefetch(b);
+        cache.get(a);
+        cache.prefetch(c);
+
+        assertThat(cache.get(a)).isNotNull();
+        assertThat(cache.get(b)).isNull();
+        assertThat(cache.get(c)).isNotNull();
+        assertThat(cache.size()).isEqualTo(800);
+        assertThat(new File(directory, AssetCache.key(b)).exists()).isFalse();
+    }
+
+    @Test
+    public void itShouldSkipAssetsLargerThanCache() throws IOException {
+        String url = asset("huge.png", 2000);
+        AssetCache cache = new AssetCache(directory, 1000, direct);
+
+        cache.prefetch(url);
+
+        assertThat(cache.get(url)).isNull();
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void itShouldKeepAssetsAcrossRestarts() throws IOException {
+        String url = asset("a.png", 100);
+        new AssetCache(directory, 1000, direct).prefetch(url);
+
+        AssetCache cache = new AssetCache(directory, 1000, direct);
+
+        assertThat(cache.get(url)).isNotNull();
+        assertThat(cache.size()).isEqualTo(100);
+    }
+
+    @Test
+    public void itShouldIndexStoredAssetsOnDownloadThreads() throws IOException {
+        String url = asset("a.png", 100);
+        new AssetCache(directory, 1000, direct).prefetch(url);
+        final List<Runnable> queued = new ArrayList<>();
+
+        AssetCache cache = new AssetCache(directory, 1000, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                queued.add(command);
+            }
+        });
+        assertThat(cache.size()).isEqualTo(0);
+
+        queued.get(0).run();
+        assertThat(cache.get(url)).isNotNull();
+        assertThat(cache.size()).isEqualTo(100);
+    }
+
+    @Test
+    public void itShouldNotDownloadStoredAssetAgain() throws IOException {
+        String url = asset("a.png", 100);
+        AssetCache cache = new AssetCache(directory, 1000, direct);
+        cache.prefetch(url);
+        new File(source, "a.png").delete();
+
+        cache.prefetch(url);
+
+        assertThat(cache.get(url)).isNotNull();
+    }
+
+    @Test
+    public void itShouldIgnoreMissingAsset() {
+        AssetCache cache = new AssetCache(directory, 1000, direct);
+        String url = new File(source, "missing.png").toURI().toString();
+
+        cache.prefetch(url);
+
+        assertThat(cache.get(url)).isNull();
+        assertThat(directory.list()).isEmpty();
+    }
+
+    String asset(String name, int size) throws IOException {
+        File file = new File(source, name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[size]);
+        } finally {
+            out.close();
+        }
+        return file.toURI().toString();
+    }
+}
@@ -0,0 +1,140 @@
+package com.adzerk.android.sdk;
+
+import com.adzerk.android.sdk.rest.Decision;
+import com.adzerk.android.sdk.rest.Event;
+import com.adzerk.android.sdk.rest.GsonFactory;
+import com.adzerk.android.sdk.rest.Placement;
+import com.adzerk.android.sdk.rest.Request;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk=25, constants=BuildConfig.class)
+public class BlockedCreativesTest {
+
+    static String userKey = "ue1-d720342a233c4631a58dfb6b54f43480";
+    static long networkId = 9792L;
+
+    static final String DECISION = "{" +
+          "    \"creativeId\": 1234, " +
+          "    \"events\": [" +
+          "        { \"id\": 11, \"url\": \"http://127.0.0.1:1/e.gif?id=11\" }, " +
+          "        { \"id\": 13, \"url\": \"http://127.0.0.1:1/e.gif?id=13\" }, " +
+          "        { \"id\": 20, \"url\": \"http://127.0.0.1:1/e.gif?id=20\" }" +
+          "    ]" +
+          "}";
+
+    MockClient client;
+    AdzerkSdk sdk;
+    Request request;
+    Decision decision;
+
+    @Before
+    public void setup() {
+        Executor direct = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        client = new MockClient("{ \"decisions\": {} }");
+        sdk = new AdzerkSdk.Builder()
+                .setClient(client)
+                .setHttpExecutor(direct)
+                .setCallbackExecutor(direct)
+                .build();
+        request = new Request.Builder()
+                .addPlacement(new Placement("div1", networkId, 306998L, 5))
+                .build();
+        decision = GsonFactory.create().fromJson(DECISION, Decision.class);
+    }
+
+    @Test
+    public void itShouldBlockCreativeOnDownvote() throws IOException {
+        assertThat(sdk.event(decision, Event.ID_DOWNVOTE_MISLEADING)).isTrue();
+
+        sdk.requestPlacementSynchronous(request);
+
+        assertThat(sentBody(0).getAsJsonArray("blockedCreatives").toString()).isEqualTo("[1234]");
+    }
+
+    @Test
+    public void itShouldNotBlockCreativeOnOtherEvents() throws IOException {
+        assertThat(sdk.event(decision, Event.ID_LIKE)).isTrue();
+        assertThat(sdk.event(decision, Event.ID_SHARE)).isFalse();
+
+        sdk.requestPlacementSynchronous(request);
+
+        assertThat(sentBody(0).has("blockedCreatives")).isFalse();
+    }
+
+    @Test
+    public void itShouldBlockCreativesOfUserRead() throws IOException {
+        client.setResponseString("{ \"key\": \"" + userKey + "\", " +
+                "\"blockedItems\": { \"creatives\": [ 55, 66 ] } }");
+        sdk.readUserSynchronous(networkId, userKey);
+        client.setResponseString("{ \"decisions\": {} }");
+
+        sdk.requestPlacementSynchronous(new Request.Builder()
+                .addPlacement(new Placement("div1", networkId, 306998L, 5))
+                .addBlockedCreatives(66, 77)
+                .build());
+
+        String blocked = sentBody(1).getAsJsonArray("blockedCreatives").toString();
+        assertThat(blocked).contains("66", "77", "55");
+        assertThat(blocked.indexOf("66")).isEqualTo(blocked.lastIndexOf("66"));
+    }
+
+    @Test
+    public void itShouldDropCreativeBlockedLongestAgo() {
+        BlockedCreatives store = new BlockedCreatives();
+        for (int i = 0; i < BlockedCreatives.MAX_CREATIVES; i++) {
+            store.add(i);
+        }
+        store.add(0);
+        store.add(1000);
+
+        assertThat(store.contains(0)).isFalse();
+        assertThat(store.contains(1)).isTrue();
+        assertThat(store.contains(1000)).isTrue();
+        assertThat(store.count).isEqualTo(BlockedCreatives.MAX_CREATIVES);
+    }
+
+    @Test
+    public void itShouldPersistBlockedCreatives() throws InterruptedException {
+        File directory = RuntimeEnvironment.application.getFilesDir();
+        BlockedCreatives store = new BlockedCreatives();
+        store.load(directory);
+        store.addAll(Arrays.asList(1, 2));
+        FlightViewTimesTest.awaitStorage();
+
+        BlockedCreatives restarted = new BlockedCreatives();
+        restarted.add(3);
+        restarted.load(directory);
+
+        assertThat(restarted.contains(1)).isTrue();
+        assertThat(restarted.contains(2)).isTrue();
+        assertThat(restarted.contains(3)).isTrue();
+    }
+
+    JsonObject sentBody(int index) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        client.getRequests().get(index).getBody().writeTo(body);
+        return new JsonParser().parse(body.toString("UTF-8")).getAsJsonObject();
+    }
+}
@@ -0,0 +1,141 @@
+package com.adzerk.android.sdk;
+
+import com.adzerk.android.sdk.AdzerkSdk.ClickListener;
+import com.adzerk.android.sdk.rest.Decision;
+import com.adzerk.android.sdk.rest.GsonFactory;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk=25, constants=BuildConfig.class)
+public class ClickResolverTest {
+
+    final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+    final List<String> opened = new ArrayList<>();
+
+    HttpServer server;
+    String base;
+    AdzerkSdk sdk;
+
+    @Before
+    public void setup() throws IOException {
+        // click url -> tracker -> landing page on another host
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().toString();
+                requests.add(exchange.getRequestMethod() + " " + path);
+                if (path.startsWith("/r")) {
+                    exchange.getResponseHeaders().add("Location", "/t?c=1");
+                    exchange.sendResponseHeaders(302, -1);
+                } else if (path.startsWith("/t")) {
+                    exchange.getResponseHeaders().add("Location", "http://localhost:" +
+                            server.getAddress().getPort() + "/landing");
+                    exchange.sendResponseHeaders(302, -1);
+                } else if (path.startsWith("/app")) {
+                    exchange.getResponseHeaders().add("Location", "market://details?id=com.example");
+                    exchange.sendResponseHeaders(302, -1);
+                } else {
+                    exchange.sendResponseHeaders(200, -1);
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        Executor direct = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        ClickResolver.executor = direct;
+        sdk = new AdzerkSdk.Builder()
+                .setClient(new MockClient(""))
+                .setHttpExecutor(direct)
+                .setCallbackExecutor(direct)
+                .build();
+    }
+
+    @After
+    public void teardown() {
+        server.stop(0);
+        ClickResolver.executor = null;
+    }
+
+    @Test
+    public void itShouldOpenLandingPageOfClick() {
+        assertThat(sdk.click(decision(base + "/r?e=1"), listener())).isTrue();
+
+        // the landing page is left to the browser
+        assertThat(opened).containsExactly("http://localhost:" + server.getAddress().getPort() + "/landing");
+        assertThat(requests).containsExactly("GET /r?e=1", "GET /t?c=1");
+        assertThat(sdk.getMetrics().snapshot().getTimer(AdzerkMetrics.CLICK).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void itShouldOpenClickUrlWhenItFails() {
+        server.stop(0);
+
+        sdk.click(decision(base + "/r?e=1"), listener());
+
+        // the browser records the click
+        assertThat(opened).containsExactly(base + "/r?e=1");
+    }
+
+    @Test
+    public void itShouldOpenAppLinks() {
+        sdk.click(decision(base + "/app"), listener());
+
+        assertThat(opened).containsExactly("market://details?id=com.example");
+    }
+
+    @Test
+    public void itShouldNotRecordClickWhenPrepared() {
+        sdk.prepareClick(decision(base + "/r?e=1"));
+
+        assertThat(requests).containsExactly("HEAD /");
+        assertThat(opened).isEmpty();
+    }
+
+    @Test
+    public void itShouldIgnoreDecisionWithoutClickUrl() {
+        assertThat(sdk.click(decision(null), listener())).isFalse();
+        sdk.prepareClick(decision(null));
+
+        assertThat(requests).isEmpty();
+    }
+
+    Decision decision(String clickUrl) {
+        String json = (clickUrl != null) ? "{ \"adId\": 1, \"clickUrl\": \"" + clickUrl + "\" }" : "{ \"adId\": 1 }";
+        return GsonFactory.create().fromJson(json, Decision.class);
+    }
+
+    ClickListener listener() {
+        return new ClickListener() {
+            @Override
+            public void open(String url) {
+                opened.add(url);
+            }
+        };
+    }
+}
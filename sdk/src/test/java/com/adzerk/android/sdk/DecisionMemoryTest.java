@@ -0,0 +1,136 @@
+package com.adzerk.android.sdk;
+
+import android.content.ComponentCallbacks2;
+
+import com.adzerk.android.sdk.rest.Decision;
+import com.adzerk.android.sdk.rest.DecisionResponse;
+import com.adzerk.android.sdk.rest.GsonFactory;
+import com.adzerk.android.sdk.rest.Placement;
+import com.adzerk.android.sdk.rest.Request;
+import com.google.gson.Gson;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk=25, constants=BuildConfig.class)
+public class DecisionMemoryTest {
+
+    static long networkId = 9792L;
+    static long siteId = 306998L;
+
+    Gson gson = GsonFactory.create();
+
+    @Test
+    public void itShouldWeighDecisionsByContent() {
+        Decision image = decision(1, "{ \"type\": \"html\", \"template\": \"image\", " +
+              "\"data\": { \"imageUrl\": \"http://static.adzerk.net/cat.jpg\" } }");
+        Decision html = decision(2, "{ \"type\": \"html\", \"body\": \"" + repeat("<p>ad.</p>", 1000) + "\", " +
+              "\"data\": { \"customData\": { \"text\": \"" + repeat("x", 5000) + "\" } } }");
+
+        assertThat(DecisionWeigher.weigh(image)).isBetween(200, 1000);
+        // the body, and customData held as both a map and a JsonObject
+        assertThat(DecisionWeigher.weigh(html)).isGreaterThan(2 * 10000 + 2 * 2 * 5000);
+    }
+
+    @Test
+    public void itShouldKeepDecisionsWithinBudget() {
+        Decision small = decision(1, "{ \"type\": \"html\", \"body\": \"" + repeat("a", 100) + "\" }");
+        OfflineDecisions offline = new OfflineDecisions(60000, 3, 5 * DecisionWeigher.weigh(small));
+
+        for (int i = 0; i < 10; i++) {
+            offline.add(request("div1", 5), response("div1", decision(i, "{ \"type\": \"html\", \"body\": \"" +
+                  repeat("a", 100) + "\" }")));
+        }
+
+        assertThat(offline.size()).isEqualTo(5);
+        assertThat(offline.bytes()).isEqualTo(5 * DecisionWeigher.weigh(small));
+        // the oldest were dropped
+        assertThat(offline.entries.get(0).decision.getAdId()).isEqualTo(5);
+    }
+
+    @Test
+    public void itShouldNotKeepDecisionLargerThanBudget() {
+        OfflineDecisions offline = new OfflineDecisions(60000, 3, 1000);
+
+        offline.add(request("div1", 5), response("div1", decision(1, "{ \"body\": \"" + repeat("a", 1000) + "\" }")));
+
+        assertThat(offline.size()).isEqualTo(0);
+        assertThat(offline.bytes()).isEqualTo(0);
+    }
+
+    @Test
+    public void itShouldNotFlushFrequentPlacementsForRareOne() {
+        Decision feed = decision(1, "{ \"body\": \"" + repeat("a", 100) + "\" }");
+        OfflineDecisions offline = new OfflineDecisions(60000, 3, 2 * DecisionWeigher.weigh(feed));
+        for (int i = 0; i < 5; i++) {
+            offline.add(request("feed", 5), response("feed", decision(i, "{ \"body\": \"" +
+                  repeat("a", 100) + "\" }")));
+        }
+
+        offline.add(request("sidebar", 9), response("sidebar", decision(99, "{ \"body\": \"" +
+              repeat("a", 100) + "\" }")));
+
+        assertThat(offline.size()).isEqualTo(2);
+        assertThat(offline.entries.get(1).decision.getAdId()).isEqualTo(4);
+    }
+
+    @Test
+    public void itShouldShedDecisionsInProportionToPressure() {
+        AdzerkSdk sdk = new AdzerkSdk.Builder()
+                .setClient(new MockClient("{ \"decisions\": {} }"))
+                .setContext(RuntimeEnvironment.application)
+                .build();
+        sdk.setOfflineDecisions(60000, 3);
+        OfflineDecisions offline = sdk.offlineDecisions;
+        for (int i = 0; i < 8; i++) {
+            offline.add(request("div" + i, 5), response("div" + i, decision(i, "{ \"body\": \"ad\" }")));
+        }
+
+        sdk.memoryCallbacks.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertThat(offline.size()).isEqualTo(8);
+
+        sdk.memoryCallbacks.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertThat(offline.size()).isEqualTo(4);
+
+        sdk.memoryCallbacks.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        assertThat(offline.size()).isEqualTo(3);
+
+        sdk.memoryCallbacks.onLowMemory();
+        assertThat(offline.size()).isEqualTo(0);
+        assertThat(offline.bytes()).isEqualTo(0);
+    }
+
+    Decision decision(int adId, String content) {
+        return gson.fromJson("{ \"adId\": " + adId + ", \"impressionUrl\": \"http://127.0.0.1:1/i.gif?a=" + adId +
+              "\", \"contents\": [ " + content + " ] }", Decision.class);
+    }
+
+    static Request request(String divName, int adType) {
+        return new Request.Builder()
+                .addPlacement(new Placement(divName, networkId, siteId, adType))
+                .build();
+    }
+
+    static DecisionResponse response(String divName, Decision decision) {
+        Map<String, Decision> decisions = new HashMap<>();
+        decisions.put(divName, decision);
+        return new DecisionResponse(decisions, false);
+    }
+
+    static String repeat(String value, int times) {
+        StringBuilder repeated = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            repeated.append(value);
+        }
+        return repeated.toString();
+    }
+}
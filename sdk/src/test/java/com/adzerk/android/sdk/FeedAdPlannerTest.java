@@ -0,0 +1,141 @@
+package com.adzerk.android.sdk;
+
+import android.os.SystemClock;
+
+import com.adzerk.android.sdk.rest.Decision;
+import com.adzerk.android.sdk.rest.Placement;
+import com.adzerk.android.sdk.rest.Request;
+import com.adzerk.android.sdk.rest.User;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk=25, constants=BuildConfig.class)
+public class FeedAdPlannerTest {
+
+    static long networkId = 9792L;
+    static long siteId = 306998L;
+
+    static final String RESPONSE = "{" +
+          "    \"decisions\": {" +
+          "        \"feed@4\": { \"adId\": 4 }, " +
+          "        \"feed@9\": { \"adId\": 9 }, " +
+          "        \"feed@14\": null, " +
+          "        \"feed@19\": { \"adId\": 19 }, " +
+          "        \"feed@24\": { \"adId\": 24 }" +
+          "    }" +
+          "}";
+
+    MockClient client;
+    AdzerkSdk sdk;
+    FeedAdPlanner planner;
+
+    @Before
+    public void setup() {
+        Executor direct = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        client = new MockClient(RESPONSE);
+        sdk = new AdzerkSdk.Builder()
+                .setClient(client)
+                .setHttpExecutor(direct)
+                .setCallbackExecutor(direct)
+                .build();
+
+        // an ad every 5th row
+        planner = new FeedAdPlanner(sdk, new FeedAdPlanner.SlotLayout() {
+            @Override
+            public Placement placementAt(int position) {
+                return (position + 1) % 5 == 0 ? new Placement("feed", networkId, siteId, 5) : null;
+            }
+        }, 10, 60000);
+    }
+
+    @Test
+    public void itShouldRequestUpcomingSlotsTogether() throws IOException {
+        planner.onScroll(0, 1, 0);
+
+        assertThat(client.getRequests()).hasSize(1);
+        assertThat(sentBody(0)).contains("feed@4", "feed@9").doesNotContain("feed@14");
+        assertThat(planner.isReady(4)).isTrue();
+        assertThat(planner.isReady(9)).isTrue();
+    }
+
+    @Test
+    public void itShouldSendUserAndKeywordsOfRequest() throws IOException {
+        planner.setRequest(new Request.Builder()
+                .addPlacement(new Placement("feed", networkId, siteId, 5))
+                .setUser(new User("ue1-abc"))
+                .addKeywords("sports")
+                .build());
+
+        planner.onScroll(0, 1, 0);
+
+        assertThat(sentBody(0)).contains("ue1-abc", "sports", "feed@4", "feed@9");
+    }
+
+    @Test
+    public void itShouldLookFurtherAheadWhenScrollingFast() throws IOException {
+        planner.onScroll(0, 1, 15);
+
+        assertThat(sentBody(0)).contains("feed@4", "feed@9", "feed@14", "feed@19", "feed@24");
+        assertThat(planner.isReady(24)).isTrue();
+    }
+
+    @Test
+    public void itShouldLookBehindWhenScrollingBack() throws IOException {
+        planner.onScroll(20, -1, 0);
+
+        assertThat(sentBody(0)).contains("feed@14", "feed@19").doesNotContain("feed@24").doesNotContain("feed@9");
+    }
+
+    @Test
+    public void itShouldOnlyRequestSlotsNotPlannedYet() throws IOException {
+        planner.onScroll(0, 1, 15);
+        planner.onScroll(3, 1, 15);
+        planner.onScroll(8, 1, 15);
+
+        // row 14 is unfilled and 29 appears
+        assertThat(client.getRequests()).hasSize(2);
+        assertThat(sentBody(1)).contains("feed@29").doesNotContain("feed@14").doesNotContain("feed@24");
+    }
+
+    @Test
+    public void itShouldHandOutDecisionOnce() {
+        planner.onScroll(0, 1, 0);
+
+        Decision decision = planner.take(4);
+
+        assertThat(decision.getAdId()).isEqualTo(4);
+        assertThat(planner.take(4)).isNull();
+        assertThat(planner.take(5)).isNull();
+    }
+
+    @Test
+    public void itShouldNotHandOutExpiredDecision() {
+        planner.onScroll(0, 1, 0);
+        SystemClock.sleep(60001);
+
+        assertThat(planner.isReady(4)).isFalse();
+        assertThat(planner.take(4)).isNull();
+    }
+
+    String sentBody(int index) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        client.getRequests().get(index).getBody().writeTo(body);
+        return body.toString("UTF-8");
+    }
+}
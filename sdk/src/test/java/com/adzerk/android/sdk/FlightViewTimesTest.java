@@ -0,0 +1,220 @@
+package com.adzerk.android.sdk;
+
+import com.adzerk.android.sdk.rest.Decision;
+import com.adzerk.android.sdk.rest.GsonFactory;
+import com.adzerk.android.sdk.rest.Placement;
+import com.adzerk.android.sdk.rest.Request;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk=25, constants=BuildConfig.class)
+public class FlightViewTimesTest {
+
+    // views are recorded at times from 0, on a clock that starts after them
+    static final long NOW = 100000;
+
+    long clock = NOW;
+    FlightViewTimes store;
+    Gson gson;
+    Request request;
+
+    @Before
+    public void setup() {
+        store = store();
+        gson = GsonFactory.create(new SdkRequestDecorator(new BlockedCreatives(), store));
+        request = new Request.Builder()
+                .addPlacement(new Placement("div1", 9792L, 306998L, 5))
+                .build();
+    }
+
+    @Test
+    public void itShouldDropExpiredViews() {
+        store.record(42, NOW - FlightViewTimes.MAX_AGE_SECONDS - 1);
+        store.record(7, NOW - FlightViewTimes.MAX_AGE_SECONDS - 1);
+        store.record(42, NOW - 60);
+
+        assertThat(store.get(42)).containsExactly(NOW - 60);
+        assertThat(store.get(7)).isEmpty();
+        assertThat(serialize(request).getAsJsonObject("flightViewTimes").entrySet()).hasSize(1);
+    }
+
+    @Test
+    public void itShouldNotSendViewsThatExpiredSinceRecorded() {
+        store.record(42, 1000);
+        clock = 1000 + FlightViewTimes.MAX_AGE_SECONDS + 1;
+
+        assertThat(serialize(request).has("flightViewTimes")).isFalse();
+    }
+
+    @Test
+    public void itShouldKeepMostRecentViews() {
+        for (int i = 0; i < FlightViewTimes.MAX_VIEWS + 3; i++) {
+            store.record(42, 1000 + i);
+        }
+
+        long[] times = store.get(42);
+        assertThat(times).hasSize(FlightViewTimes.MAX_VIEWS);
+        assertThat(times[0]).isEqualTo(1003);
+        assertThat(times[FlightViewTimes.MAX_VIEWS - 1]).isEqualTo(1000 + FlightViewTimes.MAX_VIEWS + 2);
+    }
+
+    @Test
+    public void itShouldDropFlightViewedLongestAgo() {
+        for (int i = 0; i < FlightViewTimes.MAX_FLIGHTS; i++) {
+            store.record(i, 1000 + i);
+        }
+        store.record(0, 5000);
+
+        store.record(1000, 6000);
+
+        assertThat(store.get(1)).isEmpty();
+        assertThat(store.get(0)).containsExactly(1000, 5000);
+        assertThat(store.get(1000)).containsExactly(6000);
+    }
+
+    @Test
+    public void itShouldAttachViewTimesToRequest() {
+        store.record(42, 1000);
+        store.record(42, 2000);
+        store.record(7, 3000);
+
+        JsonObject json = serialize(request);
+
+        JsonObject flightViewTimes = json.getAsJsonObject("flightViewTimes");
+        assertThat(flightViewTimes.entrySet()).hasSize(2);
+        assertThat(flightViewTimes.getAsJsonArray("42").toString()).isEqualTo("[1000,2000]");
+        assertThat(flightViewTimes.getAsJsonArray("7").toString()).isEqualTo("[3000]");
+    }
+
+    @Test
+    public void itShouldPreferViewTimesSetOnRequest() {
+        store.record(42, 1000);
+        store.record(7, 3000);
+        Request explicit = new Request.Builder()
+                .addPlacement(new Placement("div1", 9792L, 306998L, 5))
+                .setFlightViewTimes(42, 5000L)
+                .build();
+
+        JsonObject flightViewTimes = serialize(explicit).getAsJsonObject("flightViewTimes");
+
+        assertThat(flightViewTimes.getAsJsonArray("42").toString()).isEqualTo("[5000]");
+        assertThat(flightViewTimes.getAsJsonArray("7").toString()).isEqualTo("[3000]");
+    }
+
+    @Test
+    public void itShouldSerializeLikeGsonWithoutViewTimes() {
+        Request full = new Request.Builder()
+                .addPlacement(new Placement("div1", 9792L, 306998L, 5))
+                .addKeywords("cars")
+                .setUrl("http://adzerk.com")
+                .addBlockedCreatives(1, 2)
+                .setFlightViewTimes(42, 5000L)
+                .build();
+
+        assertThat(gson.toJson(full)).isEqualTo(new Gson().toJson(full));
+    }
+
+    @Test
+    public void itShouldPersistViewTimes() throws InterruptedException {
+        File directory = RuntimeEnvironment.application.getFilesDir();
+        store.load(directory);
+        store.record(42, 1000);
+        awaitStorage();
+
+        FlightViewTimes restarted = store();
+        restarted.record(42, 2000);
+        restarted.load(directory);
+
+        assertThat(restarted.get(42)).containsExactly(1000, 2000);
+    }
+
+    @Test
+    public void itShouldWriteBurstOfViewsOnce() {
+        final List<Runnable> queued = new ArrayList<>();
+        Storage.executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                queued.add(command);
+            }
+        };
+        try {
+            File directory = RuntimeEnvironment.application.getFilesDir();
+            store.record(7, 500);
+            store.load(directory);
+            store.record(42, 1000);
+            store.record(42, 2000);
+            store.record(43, 3000);
+
+            assertThat(queued).hasSize(1);
+            queued.get(0).run();
+
+            FlightViewTimes restarted = store();
+            restarted.load(directory);
+            assertThat(restarted.get(7)).containsExactly(500);
+            assertThat(restarted.get(42)).containsExactly(1000, 2000);
+            assertThat(restarted.get(43)).containsExactly(3000);
+        } finally {
+            Storage.executor = null;
+        }
+    }
+
+    @Test
+    public void itShouldRecordImpressionOfDecision() throws IOException {
+        MockClient client = new MockClient("{ \"decisions\": {} }");
+        AdzerkSdk sdk = AdzerkSdk.createInstance(client);
+        Decision decision = GsonFactory.create().fromJson(
+                "{ \"flightId\": 42, \"impressionUrl\": \"http://127.0.0.1:1/i.gif\" }", Decision.class);
+
+        assertThat(sdk.impression(decision)).isTrue();
+        sdk.requestPlacementSynchronous(request);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        client.getRequests().get(0).getBody().writeTo(body);
+        JsonObject json = new JsonParser().parse(body.toString("UTF-8")).getAsJsonObject();
+        assertThat(json.getAsJsonObject("flightViewTimes").getAsJsonArray("42").size()).isEqualTo(1);
+    }
+
+    FlightViewTimes store() {
+        return new FlightViewTimes() {
+            @Override
+            long now() {
+                return clock;
+            }
+        };
+    }
+
+    JsonObject serialize(Request request) {
+        return new JsonParser().parse(gson.toJson(request)).getAsJsonObject();
+    }
+
+    static void awaitStorage() throws InterruptedException {
+        final CountDownLatch written = new CountDownLatch(1);
+        Storage.executor().execute(new Runnable() {
+            @Override
+            public void run() {
+                written.countDown();
+            }
+        });
+        assertThat(written.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+}
@@ -1,19 +1,54 @@
 package com.adzerk.android.sdk;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 import retrofit.RetrofitError;
 import retrofit.client.Client;
+import retrofit.client.Header;
 import retrofit.client.Request;
 import retrofit.client.Response;
 import retrofit.mime.TypedByteArray;
+import retrofit.mime.TypedInput;
 
+/**
+ * Local stand-in for the HTTP transport. Returns a fixed body, optionally after a delay drawn from a
+ * {@link Latency} distribution and with {@link Fault}s injected into some of the calls:
+ * <pre>
+ * {@code
+ * MockClient client = new MockClient(json)
+ *     .setLatency(MockClient.Latency.exponential(40))
+ *     .addFault(MockClient.Fault.httpStatus(503, "Service Unavailable", 30), 0.05)
+ *     .addFault(MockClient.Fault.connectionReset(), 0.01);
+ *
+ * // or fail the next call only
+ * client.enqueue(MockClient.Fault.truncatedBody(100));
+ * }
+ * </pre>
+ * Shared by the unit tests and the benchmark harness, so it only depends on Retrofit.
+ */
 public class MockClient implements Client {
+    // calls recorded for getRequests(); later ones aren't, so that a long benchmark run doesn't hold every Request
+    static final int MAX_RECORDED_REQUESTS = 1000;
+
     int statusCode = 200;
     String reason = "OK";
     String responseString;
 
+    Latency latency;
+    final Random random = new Random();
+    final List<Fault> faults = new ArrayList<>();
+    final List<Double> faultRates = new ArrayList<>();
+    final LinkedList<Fault> queuedFaults = new LinkedList<>();
+    final List<Request> requests = Collections.synchronizedList(new ArrayList<Request>());
+
     public MockClient(String responseString) {
         this.responseString = responseString;
     }
@@ -24,16 +59,272 @@ public class MockClient implements Client {
         this.reason = reason;
     }
 
+    public void setResponseString(String responseString) {
+        this.responseString = responseString;
+    }
+
+    /**
+     * Delays every call by a value drawn from the distribution
+     */
+    public MockClient setLatency(Latency latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * Injects the fault into a random fraction of the calls
+     */
+    public synchronized MockClient addFault(Fault fault, double rate) {
+        faults.add(fault);
+        faultRates.add(rate);
+        return this;
+    }
+
+    /**
+     * Injects the fault into the next call that has no other queued fault
+     */
+    public synchronized MockClient enqueue(Fault fault) {
+        queuedFaults.add(fault);
+        return this;
+    }
+
+    /**
+     * Returns the requests executed so far, including failed ones, up to the first {@link #MAX_RECORDED_REQUESTS}
+     */
+    public List<Request> getRequests() {
+        synchronized (requests) {
+            return new ArrayList<>(requests);
+        }
+    }
+
     @Override
     public Response execute(Request request) throws IOException {
-        if (statusCode < 299) {
-            return new Response(request.getUrl(),
-                    statusCode,
-                    reason,
-                    Collections.EMPTY_LIST,
-                    new TypedByteArray("application/json", responseString.getBytes()));
+        synchronized (requests) {
+            if (requests.size() < MAX_RECORDED_REQUESTS) {
+                requests.add(request);
+            }
+        }
+        if (latency != null) {
+            sleep(latency.nextMillis(random));
+        }
+
+        if (statusCode >= 299) {
+            throw RetrofitError.networkError("", new IOException());
+        }
+
+        Response response = new Response(request.getUrl(),
+                statusCode,
+                reason,
+                Collections.EMPTY_LIST,
+                new TypedByteArray("application/json", responseString.getBytes()));
+
+        Fault fault = nextFault();
+        return (fault != null) ? fault.apply(response) : response;
+    }
+
+    synchronized Fault nextFault() {
+        if (!queuedFaults.isEmpty()) {
+            return queuedFaults.removeFirst();
+        }
+        double roll = random.nextDouble();
+        for (int i = 0; i < faults.size(); i++) {
+            roll -= faultRates.get(i);
+            if (roll < 0) {
+                return faults.get(i);
+            }
+        }
+        return null;
+    }
+
+    static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Per-call latency distribution
+     */
+    public abstract static class Latency {
+
+        abstract long nextMillis(Random random);
+
+        public static Latency fixed(final long millis) {
+            return new Latency() {
+                @Override
+                long nextMillis(Random random) {
+                    return millis;
+                }
+            };
+        }
+
+        public static Latency uniform(final long minMillis, final long maxMillis) {
+            return new Latency() {
+                @Override
+                long nextMillis(Random random) {
+                    return minMillis + (long) (random.nextDouble() * (maxMillis - minMillis + 1));
+                }
+            };
+        }
+
+        // long tail, as seen from mobile networks
+        public static Latency exponential(final double meanMillis) {
+            return new Latency() {
+                @Override
+                long nextMillis(Random random) {
+                    return (long) (-meanMillis * Math.log(1.0 - random.nextDouble()));
+                }
+            };
+        }
+    }
+
+    /**
+     * A failure injected into a single call
+     */
+    public abstract static class Fault {
+
+        abstract Response apply(Response response) throws IOException;
+
+        /**
+         * Responds with the status code and, if retryAfterSeconds is positive, a Retry-After header
+         */
+        public static Fault httpStatus(final int statusCode, final String reason, final int retryAfterSeconds) {
+            return new Fault() {
+                @Override
+                Response apply(Response response) {
+                    List<Header> headers = new ArrayList<>();
+                    if (retryAfterSeconds > 0) {
+                        headers.add(new Header("Retry-After", String.valueOf(retryAfterSeconds)));
+                    }
+                    return new Response(response.getUrl(), statusCode, reason, headers,
+                            new TypedByteArray("text/plain", new byte[0]));
+                }
+            };
+        }
+
+        /**
+         * Fails the call as if the server reset the connection
+         */
+        public static Fault connectionReset() {
+            return new Fault() {
+                @Override
+                Response apply(Response response) throws IOException {
+                    throw new SocketException("Connection reset");
+                }
+            };
+        }
+
+        /**
+         * Cuts the body off after the given number of bytes
+         */
+        public static Fault truncatedBody(final int bytes) {
+            return new Fault() {
+                @Override
+                Response apply(Response response) {
+                    byte[] body = body(response);
+                    byte[] truncated = new byte[Math.min(bytes, body.length)];
+                    System.arraycopy(body, 0, truncated, 0, truncated.length);
+                    return withBody(response, truncated);
+                }
+            };
+        }
+
+        /**
+         * Replaces the name separators so that the body is invalid JSON, even to a lenient parser
+         */
+        public static Fault malformedJson() {
+            return new Fault() {
+                @Override
+                Response apply(Response response) {
+                    byte[] body = body(response).clone();
+                    for (int i = 0; i < body.length; i++) {
+                        if (body[i] == ':') {
+                            body[i] = ';';
+                        }
+                    }
+                    return withBody(response, body);
+                }
+            };
         }
 
-        throw RetrofitError.networkError("", new IOException());
+        /**
+         * Delivers the body in chunks, sleeping before each one
+         */
+        public static Fault slowBody(final int chunkBytes, final long chunkDelayMillis) {
+            return new Fault() {
+                @Override
+                Response apply(Response response) {
+                    final byte[] body = body(response);
+                    TypedInput slowBody = new TypedInput() {
+                        @Override
+                        public String mimeType() {
+                            return "application/json";
+                        }
+
+                        @Override
+                        public long length() {
+                            return body.length;
+                        }
+
+                        @Override
+                        public InputStream in() {
+                            return new SlowInputStream(body, chunkBytes, chunkDelayMillis);
+                        }
+                    };
+                    return new Response(response.getUrl(), response.getStatus(), response.getReason(),
+                            response.getHeaders(), slowBody);
+                }
+            };
+        }
+
+        static byte[] body(Response response) {
+            return ((TypedByteArray) response.getBody()).getBytes();
+        }
+
+        static Response withBody(Response response, byte[] body) {
+            return new Response(response.getUrl(), response.getStatus(), response.getReason(),
+                    response.getHeaders(), new TypedByteArray("application/json", body));
+        }
+    }
+
+    static class SlowInputStream extends InputStream {
+        final byte[] body;
+        final int chunkBytes;
+        final long chunkDelayMillis;
+        int position;
+        int chunkRemaining;
+
+        SlowInputStream(byte[] body, int chunkBytes, long chunkDelayMillis) {
+            this.body = body;
+            this.chunkBytes = Math.max(1, chunkBytes);
+            this.chunkDelayMillis = chunkDelayMillis;
+        }
+
+        @Override
+        public int read() {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (position >= body.length) {
+                return -1;
+            }
+            if (chunkRemaining == 0) {
+                sleep(chunkDelayMillis);
+                chunkRemaining = chunkBytes;
+            }
+            int count = Math.min(length, Math.min(chunkRemaining, body.length - position));
+            System.arraycopy(body, position, buffer, offset, count);
+            position += count;
+            chunkRemaining -= count;
+            return count;
+        }
     }
 }
@@ -0,0 +1,120 @@
+package com.adzerk.android.sdk;
+
+import com.adzerk.android.sdk.AdzerkMetrics.TimerSnapshot;
+import com.adzerk.android.sdk.rest.User;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import retrofit.RetrofitError;
+import retrofit.client.Header;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk=25, constants=BuildConfig.class)
+public class MockClientTest {
+
+    static String userKey = "ue1-d720342a233c4631a58dfb6b54f43480";
+    static long networkId = 9792L;
+
+    MockClient client;
+    AdzerkSdk sdk;
+
+    @Before
+    public void setup() {
+        client = new MockClient("{ \"key\": \"" + userKey + "\", \"interests\": [ \"cars\" ] }");
+        sdk = AdzerkSdk.createInstance(client);
+    }
+
+    @Test
+    public void itShouldFailOnConnectionReset() {
+        client.enqueue(MockClient.Fault.connectionReset());
+
+        RetrofitError error = readUserExpectingError();
+        assertThat(error.getKind()).isEqualTo(RetrofitError.Kind.NETWORK);
+        assertThat(error.getCause().getMessage()).isEqualTo("Connection reset");
+
+        TimerSnapshot timer = sdk.getMetrics().snapshot().getTimer(AdzerkMetrics.READ_USER);
+        assertThat(timer.getErrorCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void itShouldReturnStatusWithRetryAfter() {
+        client.enqueue(MockClient.Fault.httpStatus(503, "Service Unavailable", 30));
+
+        RetrofitError error = readUserExpectingError();
+        assertThat(error.getKind()).isEqualTo(RetrofitError.Kind.HTTP);
+        assertThat(error.getResponse().getStatus()).isEqualTo(503);
+        assertThat(error.getResponse().getHeaders()).containsExactly(new Header("Retry-After", "30"));
+        assertThat(new AdzerkSdk.AdzerkError(error).getStatusCode()).isEqualTo(503);
+    }
+
+    @Test
+    public void itShouldFailToDecodeTruncatedBody() {
+        client.enqueue(MockClient.Fault.truncatedBody(20));
+
+        assertThat(readUserExpectingError().getKind()).isEqualTo(RetrofitError.Kind.CONVERSION);
+    }
+
+    @Test
+    public void itShouldFailToDecodeMalformedBody() {
+        client.enqueue(MockClient.Fault.malformedJson());
+
+        assertThat(readUserExpectingError().getKind()).isEqualTo(RetrofitError.Kind.CONVERSION);
+    }
+
+    @Test
+    public void itShouldDecodeSlowBody() {
+        client.enqueue(MockClient.Fault.slowBody(8, 1));
+
+        User user = sdk.readUserSynchronous(networkId, userKey);
+        assertThat(user.getKey()).isEqualTo(userKey);
+        assertThat(user.getInterests()).containsExactly("cars");
+    }
+
+    @Test
+    public void itShouldApplyQueuedFaultsOnceInOrder() {
+        client.enqueue(MockClient.Fault.connectionReset())
+              .enqueue(MockClient.Fault.httpStatus(500, "Internal Server Error", 0));
+
+        assertThat(readUserExpectingError().getKind()).isEqualTo(RetrofitError.Kind.NETWORK);
+        assertThat(readUserExpectingError().getResponse().getHeaders()).isEmpty();
+        assertThat(sdk.readUserSynchronous(networkId, userKey).getKey()).isEqualTo(userKey);
+        assertThat(client.getRequests()).hasSize(3);
+    }
+
+    @Test
+    public void itShouldInjectFaultsAtRate() {
+        client.addFault(MockClient.Fault.connectionReset(), 1.0);
+
+        for (int i = 0; i < 5; i++) {
+            readUserExpectingError();
+        }
+        assertThat(sdk.getMetrics().snapshot().getTimer(AdzerkMetrics.READ_USER).getErrorCount()).isEqualTo(5);
+    }
+
+    @Test
+    public void itShouldDelayByLatency() {
+        client.setLatency(MockClient.Latency.fixed(20));
+
+        sdk.readUserSynchronous(networkId, userKey);
+
+        TimerSnapshot timer = sdk.getMetrics().snapshot().getTimer(AdzerkMetrics.READ_USER);
+        assertThat(timer.getMaxMicros()).isGreaterThanOrEqualTo(20000);
+    }
+
+    RetrofitError readUserExpectingError() {
+        try {
+            sdk.readUserSynchronous(networkId, userKey);
+        } catch (RetrofitError e) {
+            return e;
+        }
+        fail("Expected RetrofitError");
+        return null;
+    }
+}
@@ -0,0 +1,96 @@
+package com.adzerk.android.sdk;
+
+import com.adzerk.android.sdk.NetworkEventListener.Phase;
+import com.adzerk.android.sdk.rest.AdzerkService;
+import com.adzerk.android.sdk.rest.User;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import retrofit.Callback;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk=25, constants=BuildConfig.class)
+public class NetworkEventListenerTest {
+
+    @Mock AdzerkService api;
+
+    RecordingListener listener;
+
+    static String userKey = "ue1-d720342a233c4631a58dfb6b54f43480";
+    static long networkId = 9792L;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        listener = new RecordingListener();
+    }
+
+    @Test
+    public void itShouldReportPhasesOfSynchronousCall() {
+        AdzerkSdk sdk = AdzerkSdk.createInstance(new MockClient("{ \"key\": \"" + userKey + "\" }"));
+        sdk.setNetworkEventListener(listener);
+
+        sdk.readUserSynchronous(networkId, userKey);
+
+        assertThat(listener.events).containsExactly("start:readUser", "FIRST_BYTE", "JSON_DECODE", "end:true");
+    }
+
+    @Test
+    public void itShouldReportDispatchOfAsynchronousCall() {
+        AdzerkSdk sdk = AdzerkSdk.createInstance(api);
+        sdk.setNetworkEventListener(listener);
+
+        sdk.readUser(networkId, userKey, null);
+
+        ArgumentCaptor<Callback> captor = ArgumentCaptor.forClass(Callback.class);
+        verify(api).readUser(eq(networkId), eq(userKey), captor.capture());
+        captor.getValue().success(new User(userKey), null);
+
+        assertThat(listener.events).containsExactly("start:readUser", "LISTENER_DISPATCH", "end:true");
+    }
+
+    @Test
+    public void itShouldNotReportWithoutListener() {
+        AdzerkSdk sdk = AdzerkSdk.createInstance(new MockClient("{ \"key\": \"" + userKey + "\" }"));
+        sdk.setNetworkEventListener(listener);
+        sdk.setNetworkEventListener(null);
+
+        sdk.readUserSynchronous(networkId, userKey);
+
+        assertThat(listener.events).isEmpty();
+    }
+
+    static class RecordingListener implements NetworkEventListener {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void callStart(long callId, String endpoint, long timestampNanos) {
+            events.add("start:" + endpoint);
+        }
+
+        @Override
+        public void phase(long callId, Phase phase, long startNanos, long endNanos) {
+            assertThat(endNanos).isGreaterThanOrEqualTo(startNanos);
+            events.add(phase.name());
+        }
+
+        @Override
+        public void callEnd(long callId, boolean success, long timestampNanos) {
+            events.add("end:" + success);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.adzerk.android.sdk;
+
+import android.os.SystemClock;
+
+import com.adzerk.android.sdk.AdzerkSdk.DecisionListener;
+import com.adzerk.android.sdk.rest.DecisionResponse;
+import com.adzerk.android.sdk.rest.Placement;
+import com.adzerk.android.sdk.rest.Request;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk=25, constants=BuildConfig.class)
+public class NoFillCacheTest {
+
+    static long networkId = 9792L;
+    static long siteId = 306998L;
+
+    static final String RESPONSE = "{" +
+          "    \"decisions\": {" +
+          "        \"div1\": { \"adId\": 111, \"creativeId\": 222, \"flightId\": 333, \"campaignId\": 444 }, " +
+          "        \"div2\": null" +
+          "    }" +
+          "}";
+
+    @Mock DecisionListener listener;
+
+    MockClient client;
+    AdzerkSdk sdk;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+
+        Executor direct = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        client = new MockClient(RESPONSE);
+        sdk = new AdzerkSdk.Builder()
+                .setClient(client)
+                .setHttpExecutor(direct)
+                .setCallbackExecutor(direct)
+                .build();
+        sdk.setNoFillCache(10000, 40000);
+    }
+
+    @Test
+    public void itShouldLeaveOutUnfilledPlacements() throws IOException {
+        sdk.requestPlacementSynchronous(request());
+
+        DecisionResponse response = sdk.requestPlacementSynchronous(request());
+
+        assertThat(client.getRequests()).hasSize(2);
+        assertThat(sentBody(1)).contains("div1").doesNotContain("div2");
+        assertThat(response.getDecision("div1")).isNotNull();
+        assertThat(response.getDecision("div2")).isNull();
+    }
+
+    @Test
+    public void itShouldCompleteWithoutRequestWhenAllPlacementsUnfilled() {
+        Request unfilled = new Request.Builder()
+                .addPlacement(new Placement("div2", networkId, siteId, 5))
+                .build();
+        sdk.requestPlacementSynchronous(unfilled);
+
+        sdk.requestPlacement(unfilled, listener);
+
+        ArgumentCaptor<DecisionResponse> response = ArgumentCaptor.forClass(DecisionResponse.class);
+        verify(listener).success(response.capture());
+        assertThat(response.getValue().getDecision("div2")).isNull();
+        assertThat(client.getRequests()).hasSize(1);
+    }
+
+    @Test
+    public void itShouldBackOffForChronicallyUnfilledPlacements() {
+        NoFillCache cache = sdk.noFillCache;
+
+        assertThat(cache.ttl(1)).isEqualTo(10000);
+        assertThat(cache.ttl(2)).isEqualTo(20000);
+        assertThat(cache.ttl(3)).isEqualTo(40000);
+        assertThat(cache.ttl(10)).isEqualTo(40000);
+
+        sdk.requestPlacementSynchronous(request());
+        SystemClock.sleep(10000);
+        sdk.requestPlacementSynchronous(request());
+        SystemClock.sleep(10000);
+        sdk.requestPlacementSynchronous(request());
+
+        // second no-fill skips the placement for 20 seconds
+        assertThat(client.getRequests()).hasSize(3);
+        assertThat(cache.filter(request())).hasSize(1);
+        SystemClock.sleep(10000);
+        assertThat(cache.filter(request())).hasSize(2);
+    }
+
+    @Test
+    public void itShouldForgetPlacementOnceFilled() {
+        NoFillCache cache = sdk.noFillCache;
+        sdk.requestPlacementSynchronous(request());
+        SystemClock.sleep(10000);
+
+        client.setResponseString("{ \"decisions\": { \"div1\": { \"adId\": 111 }, \"div2\": { \"adId\": 112 } } }");
+        sdk.requestPlacementSynchronous(request());
+
+        assertThat(cache.entries).isEmpty();
+    }
+
+    @Test
+    public void itShouldTellPlacementsApartBySelectionParameters() {
+        Placement placement = new Placement("div1", networkId, siteId, 5, 6);
+        String signature = NoFillCache.signature(placement, null);
+
+        assertThat(NoFillCache.signature(new Placement("div2", networkId, siteId, 6, 5), null)).isEqualTo(signature);
+        assertThat(NoFillCache.signature(new Placement("div1", networkId, siteId, 5), null)).isNotEqualTo(signature);
+        assertThat(NoFillCache.signature(new Placement("div1", networkId, siteId, 5, 6).addZoneIds(1), null))
+                .isNotEqualTo(signature);
+        assertThat(NoFillCache.signature(new Placement("div1", networkId, siteId, 5, 6).addProperty("a", 1), null))
+                .isNotEqualTo(signature);
+        assertThat(NoFillCache.signature(placement, Collections.singleton("cars")))
+                .isNotEqualTo(signature);
+    }
+
+    static Request request() {
+        return new Request.Builder()
+                .addPlacement(new Placement("div1", networkId, siteId, 5))
+                .addPlacement(new Placement("div2", networkId, siteId, 5).addZoneIds(7))
+                .build();
+    }
+
+    String sentBody(int index) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        client.getRequests().get(index).getBody().writeTo(body);
+        return body.toString("UTF-8");
+    }
+}
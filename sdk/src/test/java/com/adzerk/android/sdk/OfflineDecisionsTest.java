@@ -0,0 +1,287 @@
+package com.adzerk.android.sdk;
+
+import com.adzerk.android.sdk.AdzerkSdk.DecisionListener;
+import com.adzerk.android.sdk.rest.DecisionResponse;
+import com.adzerk.android.sdk.rest.Placement;
+import com.adzerk.android.sdk.rest.Request;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import retrofit.RetrofitError;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+import static org.mockito.Mockito.verify;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk=25, constants=BuildConfig.class)
+public class OfflineDecisionsTest {
+
+    static long networkId = 9792L;
+    static long siteId = 306998L;
+
+    static final String RESPONSE = "{" +
+          "    \"decisions\": {" +
+          "        \"div1\": {" +
+          "            \"adId\": 111, " +
+          "            \"creativeId\": 222, " +
+          "            \"flightId\": 333, " +
+          "            \"campaignId\": 444, " +
+          "            \"impressionUrl\": \"http://127.0.0.1:1/i.gif\"" +
+          "        }" +
+          "    }" +
+          "}";
+
+    @Mock DecisionListener listener;
+
+    MockClient client;
+    AdzerkSdk sdk;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+
+        Executor direct = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        client = new MockClient(RESPONSE);
+        sdk = new AdzerkSdk.Builder()
+                .setClient(client)
+                .setHttpExecutor(direct)
+                .setCallbackExecutor(direct)
+                .build();
+        sdk.setOfflineDecisions(60000, 3);
+    }
+
+    @Test
+    public void itShouldServeKeptDecisionWhenOffline() {
+        DecisionResponse online = sdk.requestPlacementSynchronous(request(new Placement("div1", networkId, siteId, 5)));
+        client.enqueue(MockClient.Fault.connectionReset());
+
+        Placement wider = new Placement("div2", networkId, siteId, 5, 6);
+        DecisionResponse offline = sdk.requestPlacementSynchronous(request(wider));
+
+        assertThat(online.isOffline()).isFalse();
+        assertThat(offline.isOffline()).isTrue();
+        assertThat(offline.getDecision("div2")).isSameAs(online.getDecision("div1"));
+    }
+
+    @Test
+    public void itShouldServeKeptDecisionOnce() {
+        sdk.requestPlacementSynchronous(request(new Placement("div1", networkId, siteId, 5)));
+        client.enqueue(MockClient.Fault.connectionReset());
+        client.enqueue(MockClient.Fault.connectionReset());
+
+        sdk.requestPlacementSynchronous(request(new Placement("div1", networkId, siteId, 5)));
+        assertFails(request(new Placement("div1", networkId, siteId, 5)));
+    }
+
+    @Test
+    public void itShouldNotServeShownDecision() {
+        DecisionResponse online = sdk.requestPlacementSynchronous(request(new Placement("div1", networkId, siteId, 5)));
+        sdk.impression(online.getDecision("div1"));
+        client.enqueue(MockClient.Fault.connectionReset());
+
+        assertFails(request(new Placement("div1", networkId, siteId, 5)));
+    }
+
+    @Test
+    public void itShouldNotServeDecisionShownByImpressionUrl() {
+        DecisionResponse online = sdk.requestPlacementSynchronous(request(new Placement("div1", networkId, siteId, 5)));
+        sdk.impression(online.getDecision("div1").getImpressionUrl());
+        client.enqueue(MockClient.Fault.connectionReset());
+
+        assertFails(request(new Placement("div1", networkId, siteId, 5)));
+    }
+
+    @Test
+    public void itShouldServeOfflineToListener() {
+        sdk.requestPlacementSynchronous(request(new Placement("div1", networkId, siteId, 5)));
+        client.enqueue(MockClient.Fault.connectionReset());
+
+        sdk.requestPlacement(request(new Placement("div1", networkId, siteId, 5)), listener);
+
+        ArgumentCaptor<DecisionResponse> response = ArgumentCaptor.forClass(DecisionResponse.class);
+        verify(listener).success(response.capture());
+        assertThat(response.getValue().isOffline()).isTrue();
+    }
+
+    @Test
+    public void itShouldMatchPlacementConstraints() {
+        sdk.requestPlacementSynchronous(request(new Placement("div1", networkId, siteId, 5, 6).addZoneIds(7)));
+        OfflineDecisions offline = sdk.offlineDecisions;
+
+        assertThat(decide(offline, new Placement("div1", networkId, siteId, 5))).isNull();
+        assertThat(decide(offline, new Placement("div1", networkId, 1L, 5, 6))).isNull();
+        assertThat(decide(offline, new Placement("div1", networkId, siteId, 5, 6).addZoneIds(8))).isNull();
+        assertThat(decide(offline, new Placement("div1", networkId, siteId, 5, 6).setFlightId(999))).isNull();
+        assertThat(decide(offline, new Placement("div1", networkId, siteId, 5, 6).setCampaignId(999))).isNull();
+        assertThat(decide(offline, new Placement("div1", networkId, siteId, 5, 6, 8)
+                .addZoneIds(7, 8)
+                .setFlightId(333)
+                .setCampaignId(444))).isNotNull();
+    }
+
+    @Test
+    public void itShouldSkipBlockedCreatives() {
+        sdk.requestPlacementSynchronous(request(new Placement("div1", networkId, siteId, 5)));
+        OfflineDecisions offline = sdk.offlineDecisions;
+
+        Request blocked = new Request.Builder()
+                .addPlacement(new Placement("div1", networkId, siteId, 5))
+                .addBlockedCreatives(222)
+                .build();
+        assertThat(offline.decide(blocked, sdk.blockedCreatives, sdk.flightViews)).isNull();
+
+        sdk.blockedCreatives.add(222);
+        assertThat(decide(offline, new Placement("div1", networkId, siteId, 5))).isNull();
+        assertThat(offline.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void itShouldSkipFlightsAtCap() {
+        sdk.requestPlacementSynchronous(request(new Placement("div1", networkId, siteId, 5)));
+        OfflineDecisions offline = sdk.offlineDecisions;
+        long now = System.currentTimeMillis() / 1000;
+        sdk.flightViews.record(333, now - OfflineDecisions.DAY_SECONDS - 60);
+        sdk.flightViews.record(333, now - 60);
+        sdk.flightViews.record(333, now - 30);
+
+        assertThat(decide(offline, new Placement("div1", networkId, siteId, 5))).isNotNull();
+
+        sdk.requestPlacementSynchronous(request(new Placement("div1", networkId, siteId, 5)));
+        sdk.flightViews.record(333, now);
+
+        assertThat(decide(offline, new Placement("div1", networkId, siteId, 5))).isNull();
+    }
+
+    @Test
+    public void itShouldQueueUndeliveredPixels() throws Exception {
+        PixelPipeline pipeline = new PixelPipeline(sdk.metrics);
+        URL unreachable = new URL("http://127.0.0.1:1/i.gif");
+        pipeline.enqueue(new PixelPipeline.Pixel(unreachable, AdzerkMetrics.IMPRESSION, 0));
+        pipeline.enqueue(new PixelPipeline.Pixel(unreachable, AdzerkMetrics.IMPRESSION, System.currentTimeMillis()));
+
+        pipeline.drain();
+
+        // the expired pixel is dropped, the other is kept for the next retry
+        assertThat(pipeline.queued()).isEqualTo(1);
+        assertThat(sdk.getMetrics().snapshot().getTimer(AdzerkMetrics.IMPRESSION).getErrorCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void itShouldServeStoredDecisionsAfterRestart() throws Exception {
+        File directory = RuntimeEnvironment.application.getFilesDir();
+        OfflineDecisions offline = new OfflineDecisions(60000, 3);
+        offline.load(directory);
+        Request request = request(new Placement("div1", networkId, siteId, 5));
+        offline.add(request, sdk.requestPlacementSynchronous(request));
+        FlightViewTimesTest.awaitStorage();
+
+        OfflineDecisions restarted = new OfflineDecisions(60000, 3);
+        restarted.load(directory);
+        FlightViewTimesTest.awaitStorage();
+
+        assertThat(restarted.size()).isEqualTo(1);
+        DecisionResponse response = decide(restarted, new Placement("div2", networkId, siteId, 5));
+        assertThat(response.isOffline()).isTrue();
+        assertThat(response.getDecision("div2").getAdId()).isEqualTo(111);
+        assertThat(response.getDecision("div2").getImpressionUrl()).isEqualTo("http://127.0.0.1:1/i.gif");
+    }
+
+    @Test
+    public void itShouldNotLoadExpiredDecisions() throws Exception {
+        File directory = RuntimeEnvironment.application.getFilesDir();
+        OfflineDecisions offline = new OfflineDecisions(60000, 3);
+        offline.load(directory);
+        Request request = request(new Placement("div1", networkId, siteId, 5));
+        offline.add(request, sdk.requestPlacementSynchronous(request));
+        FlightViewTimesTest.awaitStorage();
+
+        OfflineDecisions restarted = new OfflineDecisions(1, 3);
+        Thread.sleep(5);
+        restarted.load(directory);
+        FlightViewTimesTest.awaitStorage();
+
+        assertThat(restarted.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void itShouldWriteBurstOfChangesOnce() {
+        final List<Runnable> queued = new ArrayList<>();
+        Storage.executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                queued.add(command);
+            }
+        };
+        try {
+            File directory = RuntimeEnvironment.application.getFilesDir();
+            OfflineDecisions offline = new OfflineDecisions(60000, 3);
+            offline.load(directory);
+            assertThat(queued).hasSize(1);
+            queued.remove(0).run();
+
+            Request request = request(new Placement("div1", networkId, siteId, 5));
+            offline.add(request, sdk.requestPlacementSynchronous(request));
+            offline.add(request, sdk.requestPlacementSynchronous(request));
+            decide(offline, new Placement("div1", networkId, siteId, 5));
+
+            assertThat(queued).hasSize(1);
+            queued.remove(0).run();
+            OfflineDecisions restarted = new OfflineDecisions(60000, 3);
+            restarted.load(directory);
+            queued.remove(0).run();
+            assertThat(restarted.size()).isEqualTo(1);
+        } finally {
+            Storage.executor = null;
+        }
+    }
+
+    @Test
+    public void itShouldFillPlacementsFromCacheWithoutRequest() {
+        sdk.requestPlacementSynchronous(request(new Placement("div1", networkId, siteId, 5)));
+
+        DecisionResponse cached = sdk.getCachedDecisions(request(new Placement("div2", networkId, siteId, 5)));
+
+        assertThat(client.getRequests()).hasSize(1);
+        assertThat(cached.getDecision("div2").getAdId()).isEqualTo(111);
+        assertThat(sdk.getCachedDecisions(request(new Placement("div2", networkId, siteId, 5)))).isNull();
+    }
+
+    static Request request(Placement placement) {
+        return new Request.Builder()
+                .addPlacement(placement)
+                .build();
+    }
+
+    DecisionResponse decide(OfflineDecisions offline, Placement placement) {
+        return offline.decide(request(placement), sdk.blockedCreatives, sdk.flightViews);
+    }
+
+    void assertFails(Request request) {
+        try {
+            sdk.requestPlacementSynchronous(request);
+            fail("expected RetrofitError");
+        } catch (RetrofitError error) {
+            assertThat(error.getKind()).isEqualTo(RetrofitError.Kind.NETWORK);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.adzerk.android.sdk;
+
+import com.adzerk.android.sdk.AdzerkSdk.UserListener;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk=25, constants=BuildConfig.class)
+public class OptOutTest {
+
+    static String userKey = "ue1-d720342a233c4631a58dfb6b54f43480";
+    static long networkId = 9792L;
+
+    @Mock UserListener listener;
+
+    MockClient client;
+    AdzerkSdk sdk;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        client = new MockClient("{ \"key\": \"" + userKey + "\", \"optOut\": true }");
+        sdk = createSdk();
+    }
+
+    AdzerkSdk createSdk() {
+        Executor direct = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        return new AdzerkSdk.Builder()
+                .setClient(client)
+                .setHttpExecutor(direct)
+                .setCallbackExecutor(direct)
+                .setContext(RuntimeEnvironment.application)
+                .build();
+    }
+
+    @Test
+    public void itShouldSuppressWritesAfterOptout() {
+        sdk.setUserOptout(networkId, userKey, listener);
+        assertThat(sdk.isUserOptedOut(networkId, userKey)).isTrue();
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("age", 27);
+        sdk.setUserProperties(networkId, userKey, properties, listener);
+        sdk.setUserProperties(networkId, userKey, "{ \"age\": 27 }", listener);
+        sdk.setUserPropertiesSynchronous(networkId, userKey, properties);
+        sdk.setUserInterest(networkId, userKey, "cars", listener);
+        sdk.setUserInterestSynchronous(networkId, userKey, "cars");
+        sdk.setUserRetargeting(networkId, 1L, "segment", userKey, listener);
+        sdk.setUserRetargetingSynchronous(networkId, 1L, "segment", userKey);
+
+        assertThat(client.getRequests()).hasSize(1);
+        verify(listener, times(5)).success(null);
+    }
+
+    @Test
+    public void itShouldOptOutFromReadUser() {
+        sdk.readUserSynchronous(networkId, userKey);
+
+        sdk.setUserInterestSynchronous(networkId, userKey, "cars");
+
+        assertThat(sdk.isUserOptedOut(networkId, userKey)).isTrue();
+        assertThat(client.getRequests()).hasSize(1);
+    }
+
+    @Test
+    public void itShouldOnlyAffectOptedOutUser() {
+        sdk.setUserOptoutSynchronous(networkId, userKey);
+
+        sdk.setUserInterestSynchronous(networkId, "other", "cars");
+        sdk.setUserInterestSynchronous(1L, userKey, "cars");
+
+        assertThat(sdk.isUserOptedOut(networkId, "other")).isFalse();
+        assertThat(client.getRequests()).hasSize(3);
+    }
+
+    @Test
+    public void itShouldDropBufferedPropertiesOfOptedOutUser() {
+        sdk.setUserPropertiesBatching(60000, 10);
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("age", 27);
+        sdk.setUserProperties(networkId, userKey, properties, listener);
+
+        sdk.setUserOptoutSynchronous(networkId, userKey);
+        sdk.flushUserProperties();
+
+        assertThat(client.getRequests()).hasSize(1);
+        verify(listener).success(null);
+    }
+
+    @Test
+    public void itShouldPersistOptout() {
+        sdk.setUserOptoutSynchronous(networkId, userKey);
+
+        AdzerkSdk restarted = createSdk();
+
+        assertThat(restarted.isUserOptedOut(networkId, userKey)).isTrue();
+    }
+
+    @Test
+    public void itShouldNotPersistWithoutContext() {
+        AdzerkSdk memoryOnly = AdzerkSdk.createInstance(client);
+        memoryOnly.setUserOptoutSynchronous(networkId, "memory");
+
+        assertThat(memoryOnly.isUserOptedOut(networkId, "memory")).isTrue();
+        assertThat(createSdk().isUserOptedOut(networkId, "memory")).isFalse();
+    }
+}
@@ -0,0 +1,110 @@
+package com.adzerk.android.sdk;
+
+import android.os.SystemClock;
+
+import com.adzerk.android.sdk.rest.Decision;
+import com.adzerk.android.sdk.rest.Event;
+import com.adzerk.android.sdk.rest.GsonFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk=25, constants=BuildConfig.class)
+public class PixelFilterTest {
+
+    static final String DECISION = "{" +
+          "    \"adId\": 111, " +
+          "    \"flightId\": 42, " +
+          "    \"impressionUrl\": \"http://engine.adzerk.net/i.gif?e=1\", " +
+          "    \"events\": [" +
+          "        { \"id\": 20, \"url\": \"http://engine.adzerk.net/e.gif?id=20\" }, " +
+          "        { \"id\": 77, \"url\": \"http://engine.adzerk.net/e.gif?id=77\" }" +
+          "    ]" +
+          "}";
+
+    PixelFilter filter;
+
+    @Before
+    public void setup() {
+        filter = new PixelFilter(1000);
+    }
+
+    @Test
+    public void itShouldRejectUrlFiredWithinWindow() {
+        assertThat(filter.isRepeat("http://engine.adzerk.net/i.gif?e=1")).isFalse();
+
+        SystemClock.sleep(1500);
+        assertThat(filter.isRepeat("http://engine.adzerk.net/i.gif?e=1")).isTrue();
+    }
+
+    @Test
+    public void itShouldAcceptUrlAgainAfterWindow() {
+        filter.isRepeat("http://engine.adzerk.net/i.gif?e=1");
+
+        SystemClock.sleep(2001);
+        assertThat(filter.isRepeat("http://engine.adzerk.net/i.gif?e=1")).isFalse();
+    }
+
+    @Test
+    public void itShouldAcceptDistinctUrls() {
+        int repeats = 0;
+        for (int i = 0; i < PixelFilter.EXPECTED_URLS; i++) {
+            if (filter.isRepeat("http://engine.adzerk.net/i.gif?e=" + i)) {
+                repeats++;
+            }
+        }
+
+        // about 0.01% false positives
+        assertThat(repeats).isLessThan(PixelFilter.EXPECTED_URLS / 500);
+    }
+
+    @Test
+    public void itShouldAcceptDistinctUrlsWithBothGenerationsFull() {
+        for (int i = 0; i < PixelFilter.EXPECTED_URLS; i++) {
+            filter.isRepeat("http://engine.adzerk.net/i.gif?e=" + i);
+        }
+        SystemClock.sleep(1500);
+        for (int i = 0; i < PixelFilter.EXPECTED_URLS; i++) {
+            filter.isRepeat("http://engine.adzerk.net/e.gif?e=" + i);
+        }
+
+        int repeats = 0;
+        for (int i = 0; i < PixelFilter.EXPECTED_URLS; i++) {
+            if (filter.isRepeat("http://engine.adzerk.net/r?e=" + i)) {
+                repeats++;
+            }
+        }
+
+        assertThat(repeats).isLessThan(PixelFilter.EXPECTED_URLS / 500);
+    }
+
+    @Test
+    public void itShouldFireImpressionOfDecisionOnce() {
+        AdzerkSdk sdk = AdzerkSdk.createInstance(new MockClient(""));
+        sdk.setPixelDeduplication(60 * 1000);
+        Decision decision = GsonFactory.create().fromJson(DECISION, Decision.class);
+
+        assertThat(sdk.impression(decision)).isTrue();
+        assertThat(sdk.impression(decision)).isFalse();
+        assertThat(sdk.impression(decision.getImpressionUrl())).isFalse();
+        assertThat(sdk.flightViews.get(42)).hasSize(1);
+    }
+
+    @Test
+    public void itShouldFireRepeatablePlayerEvents() {
+        AdzerkSdk sdk = AdzerkSdk.createInstance(new MockClient(""));
+        sdk.setPixelDeduplication(60 * 1000);
+        Decision decision = GsonFactory.create().fromJson(DECISION, Decision.class);
+
+        assertThat(sdk.event(decision, Event.ID_LIKE)).isTrue();
+        assertThat(sdk.event(decision, Event.ID_LIKE)).isFalse();
+        assertThat(sdk.event(decision, Event.ID_PAUSE)).isTrue();
+        assertThat(sdk.event(decision, Event.ID_PAUSE)).isTrue();
+    }
+}
@@ -0,0 +1,104 @@
+package com.adzerk.android.sdk;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import retrofit.RetrofitError;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk=25, constants=BuildConfig.class)
+public class TrafficRecorderTest {
+
+    static String userKey = "ue1-d720342a233c4631a58dfb6b54f43480";
+    static long networkId = 9792L;
+    static String userJson = "{ \"key\": \"" + userKey + "\" }";
+
+    File file;
+    TrafficRecorder recorder;
+    MockClient client;
+    AdzerkSdk sdk;
+
+    @Before
+    public void setup() throws IOException {
+        file = File.createTempFile("traffic", ".bin");
+        recorder = new TrafficRecorder(file);
+        client = new MockClient(userJson);
+        sdk = new AdzerkSdk.Builder()
+                .setEndpoint("http://engine.test")
+                .setClient(client)
+                .setTrafficRecorder(recorder)
+                .build();
+    }
+
+    @After
+    public void teardown() throws IOException {
+        recorder.close();
+        file.delete();
+    }
+
+    @Test
+    public void itShouldRecordExchanges() throws IOException {
+        sdk.readUserSynchronous(networkId, userKey);
+        sdk.setUserPropertiesSynchronous(networkId, userKey, "{ \"age\": 27 }");
+        recorder.close();
+
+        TrafficRecorder.Reader reader = new TrafficRecorder.Reader(file);
+        TrafficRecorder.Entry read = reader.next();
+        assertThat(read.getMethod()).isEqualTo("GET");
+        assertThat(read.getPath()).isEqualTo("/udb/9792/read?userKey=" + userKey);
+        assertThat(read.getStatus()).isEqualTo(200);
+        assertThat(read.getRequestBody()).isEmpty();
+        assertThat(new String(read.getResponseBody(), "UTF-8")).isEqualTo(userJson);
+
+        TrafficRecorder.Entry post = reader.next();
+        assertThat(post.getMethod()).isEqualTo("POST");
+        assertThat(post.getPath()).isEqualTo("/udb/9792/custom?userKey=" + userKey);
+        assertThat(new String(post.getRequestBody(), "UTF-8")).isEqualTo("{ \"age\": 27 }");
+        assertThat(post.getOffsetMicros()).isGreaterThanOrEqualTo(read.getOffsetMicros() + read.getDurationMicros());
+
+        assertThat(reader.next()).isNull();
+        reader.close();
+    }
+
+    @Test
+    public void itShouldRecordFailedExchanges() throws IOException {
+        client.enqueue(MockClient.Fault.connectionReset());
+        try {
+            sdk.readUserSynchronous(networkId, userKey);
+        } catch (RetrofitError expected) {
+        }
+        recorder.close();
+
+        TrafficRecorder.Reader reader = new TrafficRecorder.Reader(file);
+        TrafficRecorder.Entry entry = reader.next();
+        assertThat(entry.getStatus()).isEqualTo(TrafficRecorder.NO_RESPONSE);
+        assertThat(entry.getResponseBody()).isEmpty();
+        reader.close();
+    }
+
+    @Test
+    public void itShouldReadUpToTruncatedBlock() throws IOException {
+        sdk.readUserSynchronous(networkId, userKey);
+        sdk.readUserSynchronous(networkId, userKey);
+        recorder.close();
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() - 5);
+        raf.close();
+
+        TrafficRecorder.Reader reader = new TrafficRecorder.Reader(file);
+        assertThat(reader.next()).isNotNull();
+        assertThat(reader.next()).isNull();
+        reader.close();
+    }
+}
@@ -0,0 +1,180 @@
+package com.adzerk.android.sdk;
+
+import android.os.SystemClock;
+
+import com.adzerk.android.sdk.AdzerkSdk.UserListener;
+import com.adzerk.android.sdk.rest.User;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.verify;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk=25, constants=BuildConfig.class)
+public class UserCacheTest {
+
+    static String userKey = "ue1-d720342a233c4631a58dfb6b54f43480";
+    static long networkId = 9792L;
+
+    @Mock UserListener listener;
+
+    Executor direct;
+    MockClient client;
+    AdzerkSdk sdk;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+
+        direct = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        client = new MockClient(userJson("cars"));
+        sdk = new AdzerkSdk.Builder()
+                .setClient(client)
+                .setHttpExecutor(direct)
+                .setCallbackExecutor(direct)
+                .build();
+        sdk.setUserCache(60000, 30000);
+    }
+
+    @Test
+    public void itShouldServeRepeatedReadsFromCache() {
+        User first = sdk.readUserSynchronous(networkId, userKey);
+        User second = sdk.readUserSynchronous(networkId, userKey);
+        sdk.readUser(networkId, userKey, listener);
+
+        assertThat(second).isSameAs(first);
+        verify(listener).success(first);
+        assertThat(client.getRequests()).hasSize(1);
+    }
+
+    @Test
+    public void itShouldCacheAsynchronousReads() {
+        sdk.readUser(networkId, userKey, listener);
+        User user = sdk.readUserSynchronous(networkId, userKey);
+
+        verify(listener).success(user);
+        assertThat(client.getRequests()).hasSize(1);
+    }
+
+    @Test
+    public void itShouldKeySeparateUsers() {
+        sdk.readUserSynchronous(networkId, userKey);
+        sdk.readUserSynchronous(networkId, "other");
+        sdk.readUserSynchronous(1L, userKey);
+
+        assertThat(client.getRequests()).hasSize(3);
+    }
+
+    @Test
+    public void itShouldServeStaleUserWhileRevalidating() {
+        User first = sdk.readUserSynchronous(networkId, userKey);
+        client.setResponseString(userJson("boats"));
+        SystemClock.sleep(70000);
+
+        // stale copy returned, refreshed in the background
+        assertThat(sdk.readUserSynchronous(networkId, userKey)).isSameAs(first);
+        assertThat(client.getRequests()).hasSize(2);
+
+        assertThat(sdk.readUserSynchronous(networkId, userKey).getInterests()).containsExactly("boats");
+        assertThat(client.getRequests()).hasSize(2);
+    }
+
+    @Test
+    public void itShouldReadAgainAfterStalePeriod() {
+        sdk.readUserSynchronous(networkId, userKey);
+        SystemClock.sleep(100000);
+
+        sdk.readUserSynchronous(networkId, userKey);
+
+        assertThat(client.getRequests()).hasSize(2);
+    }
+
+    @Test
+    public void itShouldInvalidateOnWrite() {
+        sdk.readUserSynchronous(networkId, userKey);
+        sdk.setUserInterestSynchronous(networkId, userKey, "boats");
+        client.setResponseString(userJson("cars", "boats"));
+
+        User user = sdk.readUserSynchronous(networkId, userKey);
+
+        assertThat(user.getInterests()).containsExactly("cars", "boats");
+        assertThat(client.getRequests()).hasSize(3);
+    }
+
+    @Test
+    public void itShouldInvalidateAgainWhenWriteCompletes() {
+        final List<Runnable> queued = new ArrayList<>();
+        sdk = new AdzerkSdk.Builder()
+                .setClient(client)
+                .setHttpExecutor(new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        queued.add(command);
+                    }
+                })
+                .setCallbackExecutor(direct)
+                .build();
+        sdk.setUserCache(60000, 30000);
+
+        // a read sent after the write, answered before the write is applied
+        sdk.setUserInterest(networkId, userKey, "boats", null);
+        sdk.readUser(networkId, userKey, listener);
+        queued.get(1).run();
+        queued.get(0).run();
+        client.setResponseString(userJson("cars", "boats"));
+
+        User user = sdk.readUserSynchronous(networkId, userKey);
+
+        assertThat(user.getInterests()).containsExactly("cars", "boats");
+        assertThat(client.getRequests()).hasSize(3);
+    }
+
+    @Test
+    public void itShouldInvalidateOnEveryWriteEndpoint() {
+        sdk.readUserSynchronous(networkId, userKey);
+        sdk.setUserRetargeting(networkId, 1L, "segment", userKey, null);
+        sdk.readUserSynchronous(networkId, userKey);
+        sdk.setUserProperties(networkId, userKey, "{ \"age\": 27 }", null);
+        sdk.readUserSynchronous(networkId, userKey);
+        sdk.setUserOptout(networkId, userKey, null);
+        sdk.readUserSynchronous(networkId, userKey);
+
+        assertThat(client.getRequests()).hasSize(7);
+    }
+
+    @Test
+    public void itShouldNotCacheWhenDisabled() {
+        sdk.setUserCache(0, 0);
+
+        sdk.readUserSynchronous(networkId, userKey);
+        sdk.readUser(networkId, userKey, listener);
+
+        verify(listener).success(any(User.class));
+        assertThat(client.getRequests()).hasSize(2);
+    }
+
+    static String userJson(String... interests) {
+        StringBuilder json = new StringBuilder("{ \"key\": \"" + userKey + "\", \"interests\": [");
+        for (int i = 0; i < interests.length; i++) {
+            json.append(i > 0 ? ", " : " ").append('"').append(interests[i]).append('"');
+        }
+        return json.append(" ] }").toString();
+    }
+}
@@ -0,0 +1,201 @@
+package com.adzerk.android.sdk;
+
+import com.adzerk.android.sdk.AdzerkSdk.AdzerkError;
+import com.adzerk.android.sdk.AdzerkSdk.UserListener;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import retrofit.client.Request;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk=25, constants=BuildConfig.class)
+public class UserPropertiesBatchingTest {
+
+    static String userKey = "ue1-d720342a233c4631a58dfb6b54f43480";
+    static long networkId = 9792L;
+
+    @Mock UserListener listener1;
+    @Mock UserListener listener2;
+
+    MockClient client;
+    AdzerkSdk sdk;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+
+        Executor direct = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        client = new MockClient("");
+        sdk = new AdzerkSdk.Builder()
+                .setClient(client)
+                .setHttpExecutor(direct)
+                .setCallbackExecutor(direct)
+                .build();
+        sdk.setUserPropertiesBatching(60000, 10);
+    }
+
+    @Test
+    public void itShouldMergeWritesUntilFlush() throws IOException {
+        sdk.setUserProperties(networkId, userKey, properties("age", 27, "gender", "male"), listener1);
+        sdk.setUserProperties(networkId, userKey, properties("age", 28), listener2);
+        assertThat(client.getRequests()).isEmpty();
+
+        sdk.flushUserProperties();
+
+        assertThat(client.getRequests()).hasSize(1);
+        JsonObject body = body(client.getRequests().get(0));
+        assertThat(body.get("age").getAsInt()).isEqualTo(28);
+        assertThat(body.get("gender").getAsString()).isEqualTo("male");
+        verify(listener1).success(null);
+        verify(listener2).success(null);
+    }
+
+    @Test
+    public void itShouldBatchPerUser() {
+        sdk.setUserProperties(networkId, userKey, properties("age", 27), listener1);
+        sdk.setUserProperties(networkId, "other", properties("age", 40), listener2);
+
+        sdk.flushUserProperties();
+
+        assertThat(client.getRequests()).hasSize(2);
+    }
+
+    @Test
+    public void itShouldPostWhenFull() throws IOException {
+        sdk.setUserPropertiesBatching(60000, 2);
+
+        sdk.setUserProperties(networkId, userKey, properties("age", 27), listener1);
+        assertThat(client.getRequests()).isEmpty();
+        sdk.setUserProperties(networkId, userKey, properties("gender", "male"), listener2);
+
+        assertThat(client.getRequests()).hasSize(1);
+        assertThat(body(client.getRequests().get(0)).entrySet()).hasSize(2);
+    }
+
+    @Test
+    public void itShouldCompleteAllListenersWithError() {
+        client.enqueue(MockClient.Fault.httpStatus(500, "Internal Server Error", 0));
+        sdk.setUserProperties(networkId, userKey, properties("age", 27), listener1);
+        sdk.setUserProperties(networkId, userKey, properties("age", 28), listener2);
+
+        sdk.flushUserProperties();
+
+        verify(listener1).error(any(AdzerkError.class));
+        verify(listener2).error(any(AdzerkError.class));
+        verify(listener1, never()).success(null);
+    }
+
+    @Test
+    public void itShouldMergePendingIntoSynchronousWrite() throws IOException {
+        sdk.setUserProperties(networkId, userKey, properties("age", 27, "gender", "male"), listener1);
+
+        sdk.setUserPropertiesSynchronous(networkId, userKey, properties("age", 30));
+
+        assertThat(client.getRequests()).hasSize(1);
+        JsonObject body = body(client.getRequests().get(0));
+        assertThat(body.get("age").getAsInt()).isEqualTo(30);
+        assertThat(body.get("gender").getAsString()).isEqualTo("male");
+        verify(listener1).success(null);
+
+        sdk.flushUserProperties();
+        assertThat(client.getRequests()).hasSize(1);
+    }
+
+    @Test
+    public void itShouldCompleteMergedListenersOnCallbackExecutor() {
+        final List<Runnable> callbacks = new ArrayList<>();
+        sdk = new AdzerkSdk.Builder()
+                .setClient(client)
+                .setCallbackExecutor(new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        callbacks.add(command);
+                    }
+                })
+                .build();
+        sdk.setUserPropertiesBatching(60000, 10);
+        sdk.setUserProperties(networkId, userKey, properties("age", 27), listener1);
+
+        sdk.setUserPropertiesSynchronous(networkId, userKey, properties("age", 30));
+
+        verify(listener1, never()).success(null);
+        assertThat(callbacks).hasSize(1);
+        callbacks.get(0).run();
+        verify(listener1).success(null);
+    }
+
+    @Test
+    public void itShouldPostPendingBeforeJsonWrite() throws IOException {
+        sdk.setUserProperties(networkId, userKey, properties("age", 27, "gender", "male"), listener1);
+
+        sdk.setUserProperties(networkId, userKey, "{ \"age\": 30 }", listener2);
+
+        assertThat(client.getRequests()).hasSize(2);
+        assertThat(body(client.getRequests().get(0)).get("age").getAsInt()).isEqualTo(27);
+        assertThat(body(client.getRequests().get(1)).get("age").getAsInt()).isEqualTo(30);
+        verify(listener1).success(null);
+        verify(listener2).success(null);
+    }
+
+    @Test
+    public void itShouldPostPendingBeforeSynchronousJsonWrite() throws IOException {
+        sdk.setUserProperties(networkId, userKey, properties("age", 27, "gender", "male"), listener1);
+
+        sdk.setUserPropertiesSynchronous(networkId, userKey, "{ \"age\": 30 }");
+
+        assertThat(client.getRequests()).hasSize(2);
+        assertThat(body(client.getRequests().get(0)).get("age").getAsInt()).isEqualTo(27);
+        assertThat(body(client.getRequests().get(1)).get("age").getAsInt()).isEqualTo(30);
+        verify(listener1).success(null);
+    }
+
+    @Test
+    public void itShouldPostImmediatelyWhenDisabled() {
+        sdk.setUserPropertiesBatching(0, 0);
+
+        sdk.setUserProperties(networkId, userKey, properties("age", 27), listener1);
+
+        assertThat(client.getRequests()).hasSize(1);
+        verify(listener1).success(null);
+    }
+
+    static Map<String, Object> properties(Object... keyValues) {
+        Map<String, Object> properties = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            properties.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return properties;
+    }
+
+    static JsonObject body(Request request) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        request.getBody().writeTo(out);
+        return new JsonParser().parse(out.toString("UTF-8")).getAsJsonObject();
+    }
+}
@@ -0,0 +1,134 @@
+package com.adzerk.android.sdk;
+
+import com.adzerk.android.sdk.AdzerkSdk.AdzerkError;
+import com.adzerk.android.sdk.AdzerkSdk.UserListener;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.Executor;
+
+import retrofit.RetrofitError;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk=25, constants=BuildConfig.class)
+public class UserSignalDeduplicationTest {
+
+    static String userKey = "ue1-d720342a233c4631a58dfb6b54f43480";
+    static long networkId = 9792L;
+
+    @Mock UserListener listener;
+
+    MockClient client;
+    AdzerkSdk sdk;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+
+        Executor direct = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        client = new MockClient("{ \"key\": \"" + userKey + "\", \"interests\": [ \"cars\" ] }");
+        sdk = new AdzerkSdk.Builder()
+                .setClient(client)
+                .setHttpExecutor(direct)
+                .setCallbackExecutor(direct)
+                .build();
+        sdk.setUserSignalDeduplication(true);
+    }
+
+    @Test
+    public void itShouldSkipRepeatedInterest() {
+        sdk.setUserInterest(networkId, userKey, "boats", listener);
+        sdk.setUserInterest(networkId, userKey, "boats", listener);
+        sdk.setUserInterestSynchronous(networkId, userKey, "boats");
+
+        assertThat(client.getRequests()).hasSize(1);
+        verify(listener, times(2)).success(null);
+    }
+
+    @Test
+    public void itShouldSkipRepeatedSegment() {
+        sdk.setUserRetargeting(networkId, 1L, "shoppers", userKey, listener);
+        sdk.setUserRetargetingSynchronous(networkId, 1L, "shoppers", userKey);
+        sdk.setUserRetargeting(networkId, 2L, "shoppers", userKey, listener);
+
+        assertThat(client.getRequests()).hasSize(2);
+    }
+
+    @Test
+    public void itShouldKeepUsersAndSignalTypesApart() {
+        sdk.setUserInterestSynchronous(networkId, userKey, "boats");
+        sdk.setUserInterestSynchronous(networkId, "other", "boats");
+        sdk.setUserRetargetingSynchronous(networkId, 1L, "boats", userKey);
+
+        assertThat(client.getRequests()).hasSize(3);
+    }
+
+    @Test
+    public void itShouldSeedFromReadUser() {
+        sdk.readUserSynchronous(networkId, userKey);
+
+        sdk.setUserInterest(networkId, userKey, "cars", listener);
+
+        assertThat(client.getRequests()).hasSize(1);
+        verify(listener).success(null);
+    }
+
+    @Test
+    public void itShouldRetryAfterFailure() {
+        client.enqueue(MockClient.Fault.connectionReset());
+        sdk.setUserInterest(networkId, userKey, "boats", listener);
+        verify(listener).error(any(AdzerkError.class));
+
+        client.enqueue(MockClient.Fault.connectionReset());
+        try {
+            sdk.setUserInterestSynchronous(networkId, userKey, "boats");
+        } catch (RetrofitError expected) {
+        }
+
+        sdk.setUserInterestSynchronous(networkId, userKey, "boats");
+        assertThat(client.getRequests()).hasSize(3);
+    }
+
+    @Test
+    public void itShouldSendEveryCallWhenDisabled() {
+        sdk.setUserSignalDeduplication(false);
+
+        sdk.setUserInterestSynchronous(networkId, userKey, "boats");
+        sdk.setUserInterestSynchronous(networkId, userKey, "boats");
+
+        assertThat(client.getRequests()).hasSize(2);
+    }
+
+    @Test
+    public void itShouldStoreSignalsSorted() {
+        UserSignalFilter filter = new UserSignalFilter();
+        UdbKey key = new UdbKey(networkId, userKey);
+        for (String interest : new String[] { "a", "b", "c", "d" }) {
+            assertThat(filter.claim(key, UserSignalFilter.interest(interest))).isTrue();
+        }
+        filter.release(key, UserSignalFilter.interest("b"));
+
+        long[] signals = filter.get(key);
+        assertThat(signals).hasSize(3);
+        assertThat(signals[0]).isLessThan(signals[1]);
+        assertThat(signals[1]).isLessThan(signals[2]);
+        assertThat(filter.claim(key, UserSignalFilter.interest("b"))).isTrue();
+        assertThat(filter.claim(key, UserSignalFilter.interest("c"))).isFalse();
+    }
+}
@@ -0,0 +1,173 @@
+package com.adzerk.android.sdk;
+
+import com.adzerk.android.sdk.AdzerkSdk.VideoPlayer;
+import com.adzerk.android.sdk.rest.Decision;
+import com.adzerk.android.sdk.rest.Event;
+import com.adzerk.android.sdk.rest.EventTracker;
+import com.adzerk.android.sdk.rest.GsonFactory;
+import com.google.gson.Gson;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk=25, constants=BuildConfig.class)
+public class VideoTrackerTest {
+
+    static final String DECISION = "{" +
+          "    \"adId\": 111, " +
+          "    \"events\": [" +
+          "        { \"id\": 70, \"url\": \"http://engine.adzerk.net/e.gif?id=70\" }, " +
+          "        { \"id\": 71, \"url\": \"http://engine.adzerk.net/e.gif?id=71\" }, " +
+          "        { \"id\": 72, \"url\": \"http://engine.adzerk.net/e.gif?id=72\" }, " +
+          "        { \"id\": 73, \"url\": \"http://engine.adzerk.net/e.gif?id=73\" }, " +
+          "        { \"id\": 74, \"url\": \"http://engine.adzerk.net/e.gif?id=74\" }, " +
+          "        { \"id\": 87, \"url\": \"http://engine.adzerk.net/e.gif?id=87\" }" +
+          "    ]" +
+          "}";
+
+    static class Player implements VideoPlayer {
+        long position;
+        long duration;
+        int reads;
+
+        Player(long duration) {
+            this.duration = duration;
+        }
+
+        @Override
+        public long getCurrentPosition() {
+            reads++;
+            return position;
+        }
+
+        @Override
+        public long getDuration() {
+            return duration;
+        }
+    }
+
+    final List<Integer> fired = new ArrayList<>();
+
+    VideoTracker tracker;
+    Gson gson;
+
+    @Before
+    public void setup() {
+        // ticks are driven by the test
+        tracker = new VideoTracker() {
+            @Override
+            void postTick() {
+            }
+        };
+        gson = GsonFactory.create(null, new EventTracker() {
+            @Override
+            public boolean event(Decision decision, int eventId) {
+                fired.add(eventId);
+                return true;
+            }
+        });
+    }
+
+    @Test
+    public void itShouldFireQuartilesAsVideoPlays() {
+        Player player = new Player(8000);
+        tracker.track(player, decision(), 0);
+
+        play(player, 4100);
+        assertThat(fired).containsExactly(Event.ID_START, Event.ID_FIRST_QUARTILE, Event.ID_MIDPOINT);
+
+        play(player, 4000);
+        assertThat(fired).containsExactly(Event.ID_START, Event.ID_FIRST_QUARTILE, Event.ID_MIDPOINT,
+                Event.ID_THIRD_QUARTILE, Event.ID_COMPLETE);
+        assertThat(tracker.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void itShouldFireProgressAtOffset() {
+        Player player = new Player(8000);
+        tracker.track(player, decision(), 3000);
+
+        play(player, 3100);
+
+        assertThat(fired).containsExactly(Event.ID_START, Event.ID_FIRST_QUARTILE, Event.ID_PROGRESS);
+    }
+
+    @Test
+    public void itShouldReadPositionOnlyWhenEventIsDue() {
+        Player player = new Player(60000);
+        tracker.track(player, decision(), 0);
+
+        play(player, 60000);
+
+        assertThat(fired).hasSize(5);
+        // about one read per event, not one per tick
+        assertThat(player.reads).isLessThan(20);
+    }
+
+    @Test
+    public void itShouldWaitForPausedAndUnpreparedPlayers() {
+        Player player = new Player(0);
+        tracker.track(player, decision(), 0);
+        ticks(10);
+
+        player.duration = 4000;
+        play(player, 500);
+        ticks(100);
+        assertThat(fired).containsExactly(Event.ID_START);
+
+        play(player, 600);
+        assertThat(fired).containsExactly(Event.ID_START, Event.ID_FIRST_QUARTILE);
+    }
+
+    @Test
+    public void itShouldStopTrackingUntrackedPlayer() {
+        Player player = new Player(8000);
+        tracker.track(player, decision(), 0);
+        play(player, 1000);
+
+        tracker.untrack(player);
+        play(player, 7000);
+
+        assertThat(fired).containsExactly(Event.ID_START);
+        assertThat(tracker.running).isFalse();
+    }
+
+    @Test
+    public void itShouldSkipEventsDecisionDoesNotHave() {
+        Player player = new Player(8000);
+        Decision decision = gson.fromJson("{ \"adId\": 1, \"events\": [ { \"id\": 72, \"url\": \"http://e.gif\" } ] }",
+                Decision.class);
+        tracker.track(player, decision, 0);
+
+        play(player, 8000);
+
+        assertThat(fired).containsExactly(Event.ID_MIDPOINT);
+    }
+
+    Decision decision() {
+        return gson.fromJson(DECISION, Decision.class);
+    }
+
+    // Advances the player by millis, ticking along
+    void play(Player player, long millis) {
+        for (long i = 0; i < millis; i += VideoTracker.TICK_MILLIS) {
+            player.position = Math.min(player.position + VideoTracker.TICK_MILLIS, player.duration);
+            tracker.tick();
+        }
+    }
+
+    void ticks(int count) {
+        for (int i = 0; i < count; i++) {
+            tracker.tick();
+        }
+    }
+}
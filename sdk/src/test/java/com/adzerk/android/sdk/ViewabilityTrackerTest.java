@@ -0,0 +1,187 @@
+package com.adzerk.android.sdk;
+
+import android.view.View;
+
+import com.adzerk.android.sdk.rest.Decision;
+import com.adzerk.android.sdk.rest.Event;
+import com.adzerk.android.sdk.rest.EventTracker;
+import com.adzerk.android.sdk.rest.GsonFactory;
+import com.google.gson.Gson;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk=25, constants=BuildConfig.class)
+public class ViewabilityTrackerTest {
+
+    static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    final List<Integer> fired = new ArrayList<>();
+    final Set<View> visible = new HashSet<>();
+
+    ViewabilityTracker tracker;
+    Gson gson;
+    View view;
+    long frameTime;
+    int frames;
+
+    @Before
+    public void setup() {
+        // frames are driven by the test, and visibility is set per view
+        tracker = new ViewabilityTracker() {
+            @Override
+            boolean isVisible(View view) {
+                return visible.contains(view);
+            }
+
+            @Override
+            void postFrame() {
+                frames++;
+            }
+        };
+        gson = GsonFactory.create(null, new EventTracker() {
+            @Override
+            public boolean event(Decision decision, int eventId) {
+                fired.add(decision.getAdId());
+                return true;
+            }
+        });
+        view = new View(RuntimeEnvironment.application);
+        frameTime = 1;
+    }
+
+    @Test
+    public void itShouldFireVisibleEventAfterThreshold() {
+        tracker.track(view, decision(1));
+        visible.add(view);
+
+        frames(10);
+        assertThat(fired).isEmpty();
+
+        frames(1);
+        assertThat(fired).containsExactly(1);
+        assertThat(tracker.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void itShouldRestartCountWhenViewIsHidden() {
+        tracker.track(view, decision(1));
+        visible.add(view);
+        frames(8);
+
+        visible.remove(view);
+        frames(1);
+        visible.add(view);
+        frames(8);
+
+        assertThat(fired).isEmpty();
+        frames(3);
+        assertThat(fired).containsExactly(1);
+    }
+
+    @Test
+    public void itShouldRestartCountAfterFrameGap() {
+        tracker.track(view, decision(1));
+        visible.add(view);
+        frames(8);
+
+        // no frames while the app is in the background
+        frameTime += TimeUnit.SECONDS.toNanos(10);
+        frames(1);
+        frames(8);
+
+        assertThat(fired).isEmpty();
+        frames(3);
+        assertThat(fired).containsExactly(1);
+    }
+
+    @Test
+    public void itShouldFireOncePerDecision() {
+        Decision decision = decision(1);
+        tracker.track(view, decision);
+        visible.add(view);
+        frames(11);
+
+        // bound again as the list scrolls back
+        tracker.track(view, decision);
+        frames(11);
+
+        assertThat(fired).containsExactly(1);
+    }
+
+    @Test
+    public void itShouldReplaceDecisionOfRecycledView() {
+        tracker.track(view, decision(1));
+        visible.add(view);
+        frames(5);
+
+        tracker.track(view, decision(2));
+        frames(11);
+
+        assertThat(fired).containsExactly(2);
+    }
+
+    @Test
+    public void itShouldSampleAllViewsInOneFrame() {
+        View other = new View(RuntimeEnvironment.application);
+        tracker.track(view, decision(1));
+        tracker.track(other, decision(2));
+        tracker.track(new View(RuntimeEnvironment.application), decision(3));
+        visible.add(view);
+        visible.add(other);
+
+        frames(11);
+
+        assertThat(fired).containsOnly(1, 2);
+        assertThat(tracker.size()).isEqualTo(1);
+        assertThat(frames).isEqualTo(12);
+    }
+
+    @Test
+    public void itShouldStopFramesWhenNoViewIsTracked() {
+        tracker.track(view, decision(1));
+        tracker.untrack(view);
+        frames(1);
+
+        assertThat(tracker.running).isFalse();
+        tracker.track(view, decision(1));
+        assertThat(tracker.running).isTrue();
+        assertThat(frames).isEqualTo(2);
+    }
+
+    @Test
+    public void itShouldApplyCriteria() {
+        tracker.setCriteria(.5f, 300);
+        tracker.track(view, decision(1));
+        visible.add(view);
+
+        frames(4);
+
+        assertThat(fired).containsExactly(1);
+    }
+
+    Decision decision(int adId) {
+        return gson.fromJson("{ \"adId\": " + adId + ", \"events\": [ { \"id\": 30, \"url\": \"http://e.gif\" } ] }",
+                Decision.class);
+    }
+
+    void frames(int count) {
+        for (int i = 0; i < count; i++) {
+            tracker.doFrame(frameTime);
+            frameTime += FRAME_NANOS;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.adzerk.android.sdk.rest;
+
+import com.adzerk.android.sdk.BuildConfig;
+import com.google.gson.Gson;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk=25, constants=BuildConfig.class)
+public class DecisionCodecTest {
+
+    static final String DECISION = "{" +
+          "    \"adId\": 111, " +
+          "    \"creativeId\": 222, " +
+          "    \"flightId\": 333, " +
+          "    \"campaignId\": 444, " +
+          "    \"clickUrl\": \"http://engine.adzerk.net/r?e=click\", " +
+          "    \"impressionUrl\": \"http://engine.adzerk.net/i.gif?e=impression\", " +
+          "    \"contents\": [" +
+          "        {" +
+          "            \"type\": \"html\", " +
+          "            \"template\": \"image\", " +
+          "            \"body\": \"<a href='http://engine.adzerk.net/r'><img src='http://static.adzerk.net/cat.jpg'></a>\", " +
+          "            \"data\": {" +
+          "                \"imageUrl\": \"http://static.adzerk.net/cat.jpg\", " +
+          "                \"height\": 250, " +
+          "                \"customData\": { \"heroColor\": \"blue\", \"ratio\": 1.50, \"tags\": [ 1, \"café\", null ], \"sponsored\": true }" +
+          "            }" +
+          "        }, " +
+          "        { \"type\": \"css\", \"body\": \".ad { color: red; }\" }" +
+          "    ], " +
+          "    \"events\": [ { \"id\": 30, \"url\": \"http://engine.adzerk.net/e.gif?id=30\" } ]" +
+          "}";
+
+    Gson gson = GsonFactory.create();
+
+    @Test
+    public void itShouldReadWrittenDecision() throws IOException {
+        Decision decision = gson.fromJson(DECISION, Decision.class);
+
+        Decision read = roundTrip(decision);
+
+        assertThat(gson.toJson(read)).isEqualTo(gson.toJson(decision));
+        assertThat(read.getContents().get(0).getImageUrl()).isEqualTo("http://static.adzerk.net/cat.jpg");
+        assertThat(read.getContents().get(0).getCreativeMetadataAsJson().toString())
+                .isEqualTo(decision.getContents().get(0).getCreativeMetadataAsJson().toString());
+        assertThat(read.getEvents().get(0).getId()).isEqualTo(30);
+    }
+
+    @Test
+    public void itShouldWriteLessThanJson() throws IOException {
+        Decision decision = gson.fromJson(DECISION, Decision.class);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DecisionCodec.write(new DataOutputStream(bytes), decision);
+
+        assertThat(bytes.size()).isLessThan(gson.toJson(decision).length());
+    }
+
+    @Test
+    public void itShouldKeepMissingFieldsNull() throws IOException {
+        Decision read = roundTrip(gson.fromJson("{ \"adId\": 1 }", Decision.class));
+
+        assertThat(read.getAdId()).isEqualTo(1);
+        assertThat(read.getClickUrl()).isNull();
+        assertThat(read.getContents()).isNull();
+        assertThat(read.getEvents()).isNull();
+    }
+
+    @Test
+    public void itShouldWriteLongStrings() throws IOException {
+        StringBuilder body = new StringBuilder();
+        while (body.length() < 100000) {
+            body.append("<p>sponsored</p>");
+        }
+        Decision decision = gson.fromJson("{ \"contents\": [ { \"type\": \"html\", \"body\": \"" + body + "\" } ] }",
+                Decision.class);
+
+        assertThat(roundTrip(decision).getContents().get(0).getBody()).isEqualTo(body.toString());
+    }
+
+    static Decision roundTrip(Decision decision) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DecisionCodec.write(new DataOutputStream(bytes), decision);
+        return DecisionCodec.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+}
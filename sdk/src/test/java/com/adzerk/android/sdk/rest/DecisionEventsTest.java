@@ -0,0 +1,107 @@
+package com.adzerk.android.sdk.rest;
+
+import com.adzerk.android.sdk.AdzerkSdk;
+import com.adzerk.android.sdk.BuildConfig;
+import com.adzerk.android.sdk.MockClient;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk=25, constants=BuildConfig.class)
+public class DecisionEventsTest {
+
+    static final String DECISION = "{" +
+          "    \"adId\": 111, " +
+          "    \"creativeId\": 1234, " +
+          "    \"events\": [" +
+          "        { \"id\": 21, \"url\": \"http://engine.adzerk.net/e.gif?id=21\" }, " +
+          "        { \"id\": 20, \"url\": \"http://engine.adzerk.net/e.gif?id=20\" }, " +
+          "        { \"id\": 77, \"url\": \"http://engine.adzerk.net/e.gif?id=77\" }, " +
+          "        { \"id\": 11, \"url\": \"http://engine.adzerk.net/e.gif?id=11\" }" +
+          "    ]" +
+          "}";
+
+    final List<Integer> fired = new ArrayList<>();
+
+    Decision decision;
+
+    @Before
+    public void setup() {
+        EventTracker tracker = new EventTracker() {
+            @Override
+            public boolean event(Decision decision, int eventId) {
+                fired.add(eventId);
+                return true;
+            }
+        };
+        decision = GsonFactory.create(null, tracker).fromJson(DECISION, Decision.class);
+    }
+
+    @Test
+    public void itShouldIndexEventsById() {
+        assertThat(decision.eventIds).containsExactly(11, 20, 21, 77);
+        assertThat(decision.getEventUrl(20)).isEqualTo("http://engine.adzerk.net/e.gif?id=20");
+        assertThat(decision.getEventUrl(11)).isEqualTo("http://engine.adzerk.net/e.gif?id=11");
+        assertThat(decision.getEventUrl(Event.ID_COMMENT)).isNull();
+        assertThat(GsonFactory.create().fromJson("{ \"adId\": 1 }", Decision.class).getEventUrl(20)).isNull();
+    }
+
+    @Test
+    public void itShouldFireEventThroughTracker() {
+        assertThat(decision.fireEvent(Event.ID_SHARE)).isTrue();
+        assertThat(decision.fireEvent(Event.ID_COMMENT)).isFalse();
+
+        assertThat(fired).containsExactly(Event.ID_SHARE);
+    }
+
+    @Test
+    public void itShouldIgnoreRepeatedFires() {
+        decision.fireEvent(Event.ID_LIKE);
+        decision.fireEvent(Event.ID_SHARE);
+
+        assertThat(decision.fireEvent(Event.ID_LIKE)).isFalse();
+        assertThat(fired).containsExactly(Event.ID_LIKE, Event.ID_SHARE);
+    }
+
+    @Test
+    public void itShouldFirePlayerEventsEachTime() {
+        decision.fireEvent(Event.ID_PAUSE);
+
+        assertThat(decision.fireEvent(Event.ID_PAUSE)).isTrue();
+        assertThat(fired).containsExactly(Event.ID_PAUSE, Event.ID_PAUSE);
+    }
+
+    @Test
+    public void itShouldNotFireEventsOfDecisionNotFromSdk() {
+        Decision parsed = GsonFactory.create().fromJson(DECISION, Decision.class);
+
+        assertThat(parsed.fireEvent(Event.ID_LIKE)).isFalse();
+    }
+
+    @Test
+    public void itShouldFireEventsThroughSdkThatDecodedDecision() throws IOException {
+        MockClient client = new MockClient("{ \"decisions\": { \"div1\": " + DECISION + " } }");
+        AdzerkSdk sdk = AdzerkSdk.createInstance(client);
+        Request request = new Request.Builder().addPlacement(new Placement("div1", 9792L, 306998L, 5)).build();
+        Decision decision = sdk.requestPlacementSynchronous(request).getDecision("div1");
+
+        assertThat(decision.fireEvent(Event.ID_DOWNVOTE)).isTrue();
+        sdk.requestPlacementSynchronous(request);
+
+        // the SDK blocked the downvoted creative
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        client.getRequests().get(1).getBody().writeTo(body);
+        assertThat(body.toString("UTF-8")).contains("\"blockedCreatives\":[1234]");
+    }
+}
@@ -0,0 +1,122 @@
+package com.adzerk.android.sdk.rest;
+
+import com.adzerk.android.sdk.BuildConfig;
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk=25, constants=BuildConfig.class)
+public class DecisionTypeAdapterTest {
+
+    static final String RESPONSE = "{" +
+          "    \"decisions\": {" +
+          "        \"div1\": {" +
+          "            \"adId\": 111, \"creativeId\": 222, \"flightId\": 333, \"campaignId\": 444, " +
+          "            \"clickUrl\": \"http://engine.adzerk.net/r?e=1\", " +
+          "            \"impressionUrl\": \"http://engine.adzerk.net/i.gif?e=1\", " +
+          "            \"contents\": [ { \"type\": \"html\", \"template\": \"image\", " +
+          "                \"data\": { \"imageUrl\": \"http://static.adzerk.net/a.jpg\", \"title\": \"A\", " +
+          "                            \"customData\": { \"heroColor\": \"blue\" } } } ], " +
+          "            \"events\": [ { \"id\": 20, \"url\": \"http://engine.adzerk.net/e.gif?id=20\" }, " +
+          "                          { \"id\": 21, \"url\": \"http://engine.adzerk.net/e.gif?id=21\" } ]" +
+          "        }, " +
+          "        \"div2\": {" +
+          "            \"adId\": 555, " +
+          "            \"contents\": [ { \"type\": \"html\", \"template\": \"image\", " +
+          "                \"data\": { \"imageUrl\": \"http://static.adzerk.net/b.jpg\", \"title\": \"B\", " +
+          "                            \"customData\": { \"heroColor\": \"blue\" } } } ], " +
+          "            \"events\": []" +
+          "        }, " +
+          "        \"div3\": null" +
+          "    }" +
+          "}";
+
+    Gson gson = GsonFactory.create();
+
+    @Test
+    public void itShouldDecodeEventsIntoArrays() {
+        Decision decision = gson.fromJson(RESPONSE, DecisionResponse.class).getDecision("div1");
+
+        assertThat(decision.eventIds).containsExactly(20, 21);
+        assertThat(decision.eventUrls).containsExactly("http://engine.adzerk.net/e.gif?id=20",
+                "http://engine.adzerk.net/e.gif?id=21");
+        assertThat(decision.getEvents()).hasSize(2);
+        assertThat(decision.getEvents().get(1).getId()).isEqualTo(21);
+        assertThat(decision.getEvents().get(1).getUrl()).isEqualTo("http://engine.adzerk.net/e.gif?id=21");
+    }
+
+    @Test
+    public void itShouldSortEventsById() {
+        Decision decision = gson.fromJson("{ \"adId\": 1, \"events\": [ " +
+                "{ \"id\": 30, \"url\": \"http://engine.adzerk.net/e.gif?id=30\" }, " +
+                "{ \"id\": 12, \"url\": \"http://engine.adzerk.net/e.gif?id=12\" } ] }", Decision.class);
+
+        assertThat(decision.getEventCount()).isEqualTo(2);
+        assertThat(decision.getEventUrlAt(0)).isEqualTo("http://engine.adzerk.net/e.gif?id=12");
+        assertThat(decision.getEvents().get(0).getId()).isEqualTo(12);
+        assertThat(decision.getEvents().get(1).getId()).isEqualTo(30);
+    }
+
+    @Test
+    public void itShouldKeepMissingAndEmptyEvents() {
+        DecisionResponse response = gson.fromJson(RESPONSE, DecisionResponse.class);
+
+        assertThat(response.getDecision("div2").getEvents()).isEmpty();
+        assertThat(response.getDecision("div3")).isNull();
+        assertThat(gson.fromJson("{ \"adId\": 1 }", Decision.class).getEvents()).isNull();
+    }
+
+    @Test
+    public void itShouldShareRepeatedStringsBetweenDecisions() {
+        DecisionResponse response = gson.fromJson(RESPONSE, DecisionResponse.class);
+        Content first = response.getDecision("div1").getContents().get(0);
+        Content second = response.getDecision("div2").getContents().get(0);
+
+        assertThat(first.getType()).isSameAs(second.getType());
+        assertThat(first.getTemplate()).isSameAs(second.getTemplate());
+        assertThat(key(first.getCreativeData(), "imageUrl")).isSameAs(key(second.getCreativeData(), "imageUrl"));
+        assertThat(first.getCreativeMetadata("heroColor")).isSameAs(second.getCreativeMetadata("heroColor"));
+        // the creative metadata map and its JsonObject share their strings
+        assertThat(first.getCreativeMetadataAsJson().get("heroColor").getAsString())
+                .isSameAs(first.getCreativeMetadata("heroColor"));
+    }
+
+    @Test
+    public void itShouldDecodeCreativeDataAsBefore() {
+        Content content = gson.fromJson(RESPONSE, DecisionResponse.class).getDecision("div1").getContents().get(0);
+
+        assertThat(content.getImageUrl()).isEqualTo("http://static.adzerk.net/a.jpg");
+        assertThat(content.getTitle()).isEqualTo("A");
+        assertThat(content.getCreativeMetadataAsString()).isEqualTo("{\"heroColor\":\"blue\"}");
+        assertThat(gson.fromJson("{ \"data\": { \"height\": 250 } }", Content.class).getCreativeData("height"))
+                .isEqualTo(250.0);
+    }
+
+    @Test
+    public void itShouldWriteDecisionAsReflectiveAdapter() {
+        String json = "{\"adId\":1,\"creativeId\":2,\"flightId\":3,\"campaignId\":4,\"clickUrl\":\"http://c\"," +
+              "\"events\":[{\"id\":20,\"url\":\"http://e\"}],\"impressionUrl\":\"http://i\"}";
+
+        Decision decision = gson.fromJson(json, Decision.class);
+
+        assertThat(new JsonParser().parse(gson.toJson(decision))).isEqualTo(new JsonParser().parse(json));
+    }
+
+    static String key(Map<String, Object> map, String key) {
+        for (String candidate : map.keySet()) {
+            if (candidate.equals(key)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+}